@@ -1,4 +1,9 @@
+import java.io.IOException;
+import java.util.Arrays;
+
 import javafx.application.Application;
+import server.GameServer;
+import simulation.SimulationEngine;
 import view.MinesweeperView;
 
 /**
@@ -11,9 +16,23 @@ public class Minesweeper {
 	/**
 	 * Launches the Minesweeper game
 	 * 
-	 * @param args None required.
+	 * @param args None required. A custom size for regular games can be given
+	 *             with --rows=R --cols=C and either --mines=M or --density=D.
+	 *             --renderer=canvas or --renderer=grid picks how the board is
+	 *             drawn. --headless plays games without a window instead; see
+	 *             SimulationEngine.main() for its options. --server serves
+	 *             games over HTTP instead; see GameServer.main() for its options.
+	 * @throws IOException if the server cannot bind its port
 	 */
-	public static void main(String[] args) {
-		Application.launch(MinesweeperView.class);
+	public static void main(String[] args) throws IOException {
+		if (Arrays.asList(args).contains("--server")) {
+			GameServer.main(args);
+			return;
+		}
+		if (Arrays.asList(args).contains("--headless")) {
+			SimulationEngine.main(args);
+			return;
+		}
+		Application.launch(MinesweeperView.class, args);
 	}
 }
\ No newline at end of file
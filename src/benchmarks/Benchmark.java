@@ -0,0 +1,79 @@
+package benchmarks;
+
+/**
+ * A single measured workload. The runner calls setUp() once, then repeatedly
+ * calls setUpInvocation() outside of the measured time followed by invoke()
+ * inside of it. The value returned by invoke() is consumed by the runner so
+ * that the work cannot be optimized away.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public abstract class Benchmark {
+
+	private String name;
+	private String params;
+
+	/**
+	 * Constructs a benchmark.
+	 * 
+	 * @param name   The name of the workload, such as "reveal.cascade"
+	 * @param params A description of its parameters, such as "size=100 shape=donut"
+	 */
+	protected Benchmark(String name, String params) {
+		this.name = name;
+		this.params = params;
+	}
+
+	/**
+	 * Returns the name of the workload.
+	 * 
+	 * @return The name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the description of the parameters of the workload.
+	 * 
+	 * @return The parameters
+	 */
+	public String getParams() {
+		return params;
+	}
+
+	/**
+	 * Prepares the state shared by every invocation. Not measured.
+	 * 
+	 * @throws Exception if the state cannot be prepared
+	 */
+	public void setUp() throws Exception {
+	}
+
+	/**
+	 * Prepares the state for the next invocation, such as a fresh copy of a board.
+	 * Not measured.
+	 * 
+	 * @throws Exception if the state cannot be prepared
+	 */
+	public void setUpInvocation() throws Exception {
+	}
+
+	/**
+	 * Runs the workload once. This is the measured part.
+	 * 
+	 * @return A value that depends on the work done
+	 * @throws Exception if the workload fails
+	 */
+	public abstract long invoke() throws Exception;
+
+	/**
+	 * Returns the number of operations a single invocation performs, so that
+	 * results are reported per operation.
+	 * 
+	 * @return The number of operations
+	 */
+	public long operationsPerInvocation() {
+		return 1;
+	}
+}
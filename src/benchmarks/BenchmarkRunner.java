@@ -0,0 +1,184 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks and prints the time per operation of each. Every
+ * benchmark first runs a number of warmup iterations, so that the JIT compiler
+ * has compiled the code being measured, followed by the measured iterations.
+ * An iteration calls the benchmark until it has spent the iteration time in
+ * invoke(); time spent preparing invocations is not counted.
+ * 
+ * Run from the project folder, so that ./shapes/ and ./replays/ are found. For
+ * stable results run with a fixed heap, for example java -Xms2g -Xmx2g.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class BenchmarkRunner {
+
+	private int warmup = 5;
+	private int iterations = 10;
+	private long iterationNanos = 200_000_000L;
+	// Consumes the results of the benchmarks, so that they cannot be optimized away
+	private static volatile long sink;
+
+	/**
+	 * Sets the number of iterations run before measuring.
+	 * 
+	 * @param warmup The number of warmup iterations
+	 */
+	public void setWarmup(int warmup) {
+		this.warmup = warmup;
+	}
+
+	/**
+	 * Sets the number of measured iterations.
+	 * 
+	 * @param iterations The number of measured iterations
+	 */
+	public void setIterations(int iterations) {
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Sets how long a single iteration runs.
+	 * 
+	 * @param millis The length of an iteration in milliseconds
+	 */
+	public void setIterationMillis(long millis) {
+		this.iterationNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * Runs a benchmark and returns the time per operation of every measured
+	 * iteration.
+	 * 
+	 * @param benchmark The benchmark to run
+	 * @return The nanoseconds per operation of each iteration
+	 * @throws Exception if the benchmark fails
+	 */
+	public double[] run(Benchmark benchmark) throws Exception {
+		benchmark.setUp();
+		for (int i = 0; i < warmup; i++) {
+			iteration(benchmark);
+		}
+		double[] results = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			results[i] = iteration(benchmark);
+		}
+		return results;
+	}
+
+	/**
+	 * Runs a single iteration of a benchmark.
+	 * 
+	 * @param benchmark The benchmark to run
+	 * @return The nanoseconds per operation of the iteration
+	 * @throws Exception if the benchmark fails
+	 */
+	private double iteration(Benchmark benchmark) throws Exception {
+		long elapsed = 0;
+		long operations = 0;
+		long result = 0;
+		while (elapsed < iterationNanos) {
+			benchmark.setUpInvocation();
+			long start = System.nanoTime();
+			result += benchmark.invoke();
+			elapsed += System.nanoTime() - start;
+			operations += benchmark.operationsPerInvocation();
+		}
+		sink += result;
+		return (double) elapsed / operations;
+	}
+
+	/**
+	 * Builds the list of benchmarks for the given parameters.
+	 * 
+	 * @param sizes     The sizes of the boards
+	 * @param shapes    The shapes of the boards
+	 * @param densities The densities to place mines at
+	 * @param corpus    The path of the replay corpus
+	 * @return The benchmarks
+	 */
+	public static List<Benchmark> benchmarks(int[] sizes, String[] shapes, double[] densities, String corpus) {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (int size : sizes) {
+			for (String shape : shapes) {
+				benchmarks.add(new ModelBenchmarks.FirstClick(shape, size));
+				benchmarks.add(new ModelBenchmarks.Cascade(shape, size));
+				for (double density : densities) {
+					benchmarks.add(new ModelBenchmarks.SetBombs(shape, size, density));
+				}
+				benchmarks.add(new ModelBenchmarks.NumMinesNearby(shape, size));
+				benchmarks.add(new PersistenceBenchmarks.SaveBoard(shape, size));
+				benchmarks.add(new PersistenceBenchmarks.LoadBoard(shape, size));
+				benchmarks.add(new PersistenceBenchmarks.LoadShape(shape, size));
+			}
+		}
+		benchmarks.add(new PersistenceBenchmarks.LeaderboardLoad());
+		benchmarks.add(new PersistenceBenchmarks.LeaderboardAddScore());
+		benchmarks.add(new ModelBenchmarks.Replay(corpus));
+		benchmarks.add(new ModelBenchmarks.VerifyReplays(2000, 1));
+		benchmarks.add(new ModelBenchmarks.VerifyReplays(2000, Runtime.getRuntime().availableProcessors()));
+		return benchmarks;
+	}
+
+	/**
+	 * Runs the benchmarks from the command line and prints a table of results.
+	 * Options are given as --name=value: --filter (only run benchmarks whose name
+	 * contains it), --sizes, --shapes and --densities (comma separated lists),
+	 * --corpus, --warmup, --iterations and --time (milliseconds per iteration).
+	 * 
+	 * @param args The options of the run
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			if (arg.startsWith("--") && arg.contains("=")) {
+				options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+			}
+		}
+		String[] sizeList = options.getOrDefault("sizes", "13,100,1000").split(",");
+		int[] sizes = new int[sizeList.length];
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = Integer.parseInt(sizeList[i]);
+		}
+		String[] densityList = options.getOrDefault("densities", "0.1,0.5,0.9").split(",");
+		double[] densities = new double[densityList.length];
+		for (int i = 0; i < densities.length; i++) {
+			densities[i] = Double.parseDouble(densityList[i]);
+		}
+		String[] shapes = options.getOrDefault("shapes", "full,triangle,donut").split(",");
+		String filter = options.getOrDefault("filter", "");
+
+		BenchmarkRunner runner = new BenchmarkRunner();
+		runner.setWarmup(Integer.parseInt(options.getOrDefault("warmup", "5")));
+		runner.setIterations(Integer.parseInt(options.getOrDefault("iterations", "10")));
+		runner.setIterationMillis(Long.parseLong(options.getOrDefault("time", "200")));
+
+		System.out.println(String.format(Locale.ROOT, "%-20s %-40s %14s %10s %14s", "Benchmark", "Params",
+				"ns/op", "error", "ops/s"));
+		for (Benchmark benchmark : benchmarks(sizes, shapes, densities,
+				options.getOrDefault("corpus", "replays/corpus.txt"))) {
+			if (!benchmark.getName().contains(filter)) {
+				continue;
+			}
+			double[] results = runner.run(benchmark);
+			double mean = 0;
+			for (double result : results) {
+				mean += result / results.length;
+			}
+			double variance = 0;
+			for (double result : results) {
+				variance += (result - mean) * (result - mean) / Math.max(1, results.length - 1);
+			}
+			System.out.println(String.format(Locale.ROOT, "%-20s %-40s %14.1f %10.1f %14.0f", benchmark.getName(),
+					benchmark.getParams(), mean, Math.sqrt(variance), 1e9 / mean));
+		}
+	}
+}
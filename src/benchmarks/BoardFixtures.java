@@ -0,0 +1,177 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+
+/**
+ * Builds the boards the benchmarks run on. Every board is described by a shape
+ * and a size: "full" is a size by size rectangle, and any other shape is a file
+ * in the ./shapes/ folder scaled to size by size. The scaled shape is written
+ * to a temporary shape file, so that it can be loaded like any other shape.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class BoardFixtures {
+
+	// Fraction of the tiles of a full board that hold a mine
+	public static final double DENSITY = 0.15;
+
+	private static File tempDir;
+	private static Map<String, String> shapeFiles = new HashMap<String, String>();
+
+	/**
+	 * Returns a temporary file for a benchmark to write to. The file is deleted
+	 * when the program exits.
+	 * 
+	 * @param name The name of the file
+	 * @return The path of the file
+	 * @throws IOException if the temporary folder cannot be created
+	 */
+	public static synchronized String tempFile(String name) throws IOException {
+		if (tempDir == null) {
+			tempDir = Files.createTempDirectory("minesweeper-bench").toFile();
+			tempDir.deleteOnExit();
+		}
+		File file = new File(tempDir, name);
+		file.deleteOnExit();
+		return file.getPath();
+	}
+
+	/**
+	 * Returns a shape file for a shape scaled to a size, writing it on first use.
+	 * The number of bombs is scaled with the number of in bounds tiles.
+	 * 
+	 * @param shape "full", or the name of a file in the ./shapes/ folder
+	 * @param size  The number of rows and columns of the board
+	 * @return The path of the shape file
+	 * @throws IOException if the shape cannot be read or written
+	 */
+	public static synchronized String shapeFile(String shape, int size) throws IOException {
+		String key = shape + "-" + size;
+		if (shapeFiles.containsKey(key)) {
+			return shapeFiles.get(key);
+		}
+		boolean[][] mask = readMask(shape);
+		int inBounds = 0;
+		int maskInBounds = 0;
+		for (int r = 0; r < mask.length; r++) {
+			for (int c = 0; c < mask[r].length; c++) {
+				maskInBounds += mask[r][c] ? 1 : 0;
+			}
+		}
+		StringBuilder text = new StringBuilder();
+		for (int r = 0; r < size; r++) {
+			boolean[] row = mask[r * mask.length / size];
+			for (int c = 0; c < size; c++) {
+				boolean in = row[c * row.length / size];
+				inBounds += in ? 1 : 0;
+				text.append(c == 0 ? "" : " ").append(in ? 'o' : '_');
+			}
+			text.append('\n');
+		}
+		int bombs = shape.equals("full") ? (int) Math.round(size * size * DENSITY)
+				: (int) Math.round((double) readBombs(shape) * inBounds / maskInBounds);
+		String fn = tempFile("shape-" + key + ".txt");
+		BufferedWriter writer = new BufferedWriter(new FileWriter(fn));
+		writer.write(bombs + "\n");
+		writer.write(text.toString());
+		writer.close();
+		shapeFiles.put(key, fn);
+		return fn;
+	}
+
+	/**
+	 * Constructs an empty board of a shape and size.
+	 * 
+	 * @param shape "full", or the name of a file in the ./shapes/ folder
+	 * @param size  The number of rows and columns of the board
+	 * @return An empty board
+	 * @throws IOException if the shape cannot be read or written
+	 */
+	public static MinesweeperBoard emptyBoard(String shape, int size) throws IOException {
+		return new MinesweeperBoard(shapeFile(shape, size));
+	}
+
+	/**
+	 * Constructs a board of a shape and size with its mines placed around the first
+	 * click, as they would be after the first move of a game. No tile is revealed.
+	 * 
+	 * @param shape "full", or the name of a file in the ./shapes/ folder
+	 * @param size  The number of rows and columns of the board
+	 * @param seed  A seed for placing the mines
+	 * @return A board with mines
+	 * @throws IOException if the shape cannot be read or written
+	 */
+	public static MinesweeperBoard minedBoard(String shape, int size, long seed) throws IOException {
+		MinesweeperBoard board = emptyBoard(shape, size);
+		MinesweeperModel model = new MinesweeperModel(board, seed);
+		int first = firstClick(board);
+		model.setBombs(board.bombCount, first / board.getCols(), first % board.getCols());
+		return board;
+	}
+
+	/**
+	 * Returns the tile a benchmark clicks first: the middle in bounds tile.
+	 * 
+	 * @param board A board
+	 * @return The index (row * cols + col) of the tile
+	 */
+	public static int firstClick(MinesweeperBoard board) {
+		return board.inBoundsCell(board.numInBounds() / 2);
+	}
+
+	/**
+	 * Reads which tiles of a shape are in bounds.
+	 * 
+	 * @param shape "full", or the name of a file in the ./shapes/ folder
+	 * @return A grid that is true for in bounds tiles
+	 * @throws IOException if the shape cannot be read
+	 */
+	private static boolean[][] readMask(String shape) throws IOException {
+		if (shape.equals("full")) {
+			return new boolean[][] { { true } };
+		}
+		List<boolean[]> rows = new ArrayList<boolean[]>();
+		Scanner scanner = new Scanner(new File("shapes/" + shape + ".txt"));
+		scanner.nextLine();
+		while (scanner.hasNextLine()) {
+			String line = scanner.nextLine().trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] tokens = line.split(" ");
+			boolean[] row = new boolean[tokens.length];
+			for (int c = 0; c < tokens.length; c++) {
+				row[c] = tokens[c].equals("o");
+			}
+			rows.add(row);
+		}
+		scanner.close();
+		return rows.toArray(new boolean[rows.size()][]);
+	}
+
+	/**
+	 * Reads the number of bombs of a shape file.
+	 * 
+	 * @param shape The name of a file in the ./shapes/ folder
+	 * @return The number of bombs
+	 * @throws IOException if the shape cannot be read
+	 */
+	private static int readBombs(String shape) throws IOException {
+		Scanner scanner = new Scanner(new File("shapes/" + shape + ".txt"));
+		int bombs = Integer.parseInt(scanner.nextLine().trim());
+		scanner.close();
+		return bombs;
+	}
+}
@@ -0,0 +1,305 @@
+package benchmarks;
+
+import java.util.List;
+
+import model.GameRecording;
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+import model.ReplayVerifier;
+import model.RevealResult;
+
+/**
+ * Benchmarks of the game logic: revealing tiles, placing mines, counting
+ * neighbours and replaying recorded games.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class ModelBenchmarks {
+
+	// Seed used for every board, so that runs can be compared
+	private static final long SEED = 42;
+
+	/**
+	 * The first click of a game on an empty board, which places the mines and
+	 * opens the cascade around the click.
+	 */
+	public static class FirstClick extends Benchmark {
+		private String shape;
+		private int size;
+		private MinesweeperBoard template;
+		private MinesweeperModel model;
+		private int row;
+		private int col;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape "full", or the name of a file in the ./shapes/ folder
+		 * @param size  The number of rows and columns of the board
+		 */
+		public FirstClick(String shape, int size) {
+			super("reveal.firstClick", "size=" + size + " shape=" + shape);
+			this.shape = shape;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			template = BoardFixtures.emptyBoard(shape, size);
+			int first = BoardFixtures.firstClick(template);
+			row = first / template.getCols();
+			col = first % template.getCols();
+		}
+
+		@Override
+		public void setUpInvocation() {
+			model = new MinesweeperModel(new MinesweeperBoard(template), SEED);
+		}
+
+		@Override
+		public long invoke() {
+			return model.revealSpace(row, col).getRevealed().length;
+		}
+	}
+
+	/**
+	 * A click on a tile with no mines nearby on a board whose mines are already
+	 * placed, which measures the cascade on its own.
+	 */
+	public static class Cascade extends Benchmark {
+		private String shape;
+		private int size;
+		private MinesweeperBoard template;
+		private MinesweeperModel model;
+		private int row;
+		private int col;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape "full", or the name of a file in the ./shapes/ folder
+		 * @param size  The number of rows and columns of the board
+		 */
+		public Cascade(String shape, int size) {
+			super("reveal.cascade", "size=" + size + " shape=" + shape);
+			this.shape = shape;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			template = BoardFixtures.minedBoard(shape, size, SEED);
+			int first = BoardFixtures.firstClick(template);
+			row = first / template.getCols();
+			col = first % template.getCols();
+		}
+
+		@Override
+		public void setUpInvocation() {
+			model = new MinesweeperModel(new MinesweeperBoard(template));
+		}
+
+		@Override
+		public long invoke() {
+			return model.revealSpace(row, col).getRevealed().length;
+		}
+	}
+
+	/**
+	 * Placing the mines of an empty board at a given density.
+	 */
+	public static class SetBombs extends Benchmark {
+		private String shape;
+		private int size;
+		private double density;
+		private MinesweeperBoard template;
+		private MinesweeperModel model;
+		private int mines;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape   "full", or the name of a file in the ./shapes/ folder
+		 * @param size    The number of rows and columns of the board
+		 * @param density The fraction of in bounds tiles that get a mine
+		 */
+		public SetBombs(String shape, int size, double density) {
+			super("setBombs", "size=" + size + " shape=" + shape + " density=" + density);
+			this.shape = shape;
+			this.size = size;
+			this.density = density;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			template = BoardFixtures.emptyBoard(shape, size);
+			mines = (int) Math.round(template.numInBounds() * density);
+		}
+
+		@Override
+		public void setUpInvocation() {
+			model = new MinesweeperModel(new MinesweeperBoard(template), SEED);
+		}
+
+		@Override
+		public long invoke() {
+			model.setBombs(mines);
+			return model.getBoard().numCovered();
+		}
+	}
+
+	/**
+	 * Counting the mines around every tile of a board with numMinesNearby(). One
+	 * operation is one tile.
+	 */
+	public static class NumMinesNearby extends Benchmark {
+		private String shape;
+		private int size;
+		private MinesweeperBoard board;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape "full", or the name of a file in the ./shapes/ folder
+		 * @param size  The number of rows and columns of the board
+		 */
+		public NumMinesNearby(String shape, int size) {
+			super("numMinesNearby", "size=" + size + " shape=" + shape);
+			this.shape = shape;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			board = BoardFixtures.minedBoard(shape, size, SEED);
+		}
+
+		@Override
+		public long invoke() {
+			long sum = 0;
+			for (int r = 0; r < board.getRows(); r++) {
+				for (int c = 0; c < board.getCols(); c++) {
+					sum += board.numMinesNearby(r, c);
+				}
+			}
+			return sum;
+		}
+
+		@Override
+		public long operationsPerInvocation() {
+			return (long) board.getRows() * board.getCols();
+		}
+	}
+
+	/**
+	 * Replaying every game of a recorded corpus. One operation is one game. Fails
+	 * if a game does not end with its recorded outcome, so the corpus doubles as a
+	 * regression test of the model.
+	 */
+	public static class Replay extends Benchmark {
+		private String fn;
+		private List<ReplayCorpus.Game> games;
+
+		/**
+		 * Constructs the benchmark for a corpus file.
+		 * 
+		 * @param fn The path of the corpus file
+		 */
+		public Replay(String fn) {
+			super("replay", "corpus=" + fn);
+			this.fn = fn;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			games = new ReplayCorpus(fn).getGames();
+		}
+
+		@Override
+		public long invoke() {
+			long moves = 0;
+			for (ReplayCorpus.Game game : games) {
+				RevealResult.Outcome outcome = game.replay().getOutcome();
+				if (outcome != game.getOutcome()) {
+					throw new IllegalStateException("Replay of " + game + " ended " + outcome);
+				}
+				moves += game.numMoves();
+			}
+			return moves;
+		}
+
+		@Override
+		public long operationsPerInvocation() {
+			return games.size();
+		}
+	}
+
+	/**
+	 * Checking the scores of won games by replaying their recordings with
+	 * ReplayVerifier.verifyAll(). One operation is one game. Fails if a game is
+	 * not accepted.
+	 */
+	public static class VerifyReplays extends Benchmark {
+		private int games;
+		private int threads;
+		private ReplayVerifier verifier;
+		private GameRecording[] recordings;
+		private int[] scores;
+
+		/**
+		 * Constructs the benchmark for a number of expert games (30 by 16 with 99
+		 * mines).
+		 * 
+		 * @param games   The number of games checked per invocation
+		 * @param threads The number of threads that replay them
+		 */
+		public VerifyReplays(int games, int threads) {
+			super("verifyReplays", "games=" + games + " threads=" + threads);
+			this.games = games;
+			this.threads = threads;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			verifier = new ReplayVerifier();
+			verifier.setThreads(threads);
+			// The games are won instantly, so only the replays are checked
+			verifier.setMinMoveMillis(0);
+			recordings = new GameRecording[games];
+			scores = new int[games];
+			for (int i = 0; i < games; i++) {
+				MinesweeperModel model = new MinesweeperModel(30, 16, 99);
+				GameRecording recording = new GameRecording(GameRecording.describe(model), SEED + i);
+				model.setSeed(SEED + i);
+				model.setRecording(recording);
+				model.revealSpace(15, 8);
+				MinesweeperBoard board = model.getBoard();
+				for (int r = 0; r < board.getRows(); r++) {
+					for (int c = 0; c < board.getCols(); c++) {
+						if (!board.hasMine(r, c) && board.isCovered(r, c)) {
+							model.revealSpace(r, c);
+						}
+					}
+				}
+				recordings[i] = GameRecording.fromByteArray(recording.toByteArray());
+				scores[i] = 999;
+			}
+		}
+
+		@Override
+		public long invoke() {
+			ReplayVerifier.Verdict[] verdicts = verifier.verifyAll(recordings, scores);
+			for (int i = 0; i < games; i++) {
+				if (verdicts[i] != ReplayVerifier.Verdict.VALID) {
+					throw new IllegalStateException("Game " + i + " was rejected: " + verdicts[i]);
+				}
+			}
+			return verdicts.length;
+		}
+
+		@Override
+		public long operationsPerInvocation() {
+			return games;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import model.Leaderboard;
+import model.MinesweeperBoard;
+
+/**
+ * Benchmarks of everything that reads or writes files: saving and loading games,
+ * the leaderboard and shape files. Every benchmark works on its own temporary
+ * files, so the save game and leaderboard of the player are never touched.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class PersistenceBenchmarks {
+
+	// Seed used for every board, so that runs can be compared
+	private static final long SEED = 42;
+
+	/**
+	 * Saving a game with saveBoard().
+	 */
+	public static class SaveBoard extends Benchmark {
+		private String shape;
+		private int size;
+		private MinesweeperBoard board;
+		private String fn;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape "full", or the name of a file in the ./shapes/ folder
+		 * @param size  The number of rows and columns of the board
+		 */
+		public SaveBoard(String shape, int size) {
+			super("saveBoard", "size=" + size + " shape=" + shape);
+			this.shape = shape;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			board = BoardFixtures.minedBoard(shape, size, SEED);
+			fn = BoardFixtures.tempFile("save-" + shape + "-" + size + ".dat");
+		}
+
+		@Override
+		public long invoke() {
+			board.saveBoard(12.5, "Bench", fn);
+			return new File(fn).length();
+		}
+	}
+
+	/**
+	 * Loading a game saved with saveBoard().
+	 */
+	public static class LoadBoard extends Benchmark {
+		private String shape;
+		private int size;
+		private String fn;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape "full", or the name of a file in the ./shapes/ folder
+		 * @param size  The number of rows and columns of the board
+		 */
+		public LoadBoard(String shape, int size) {
+			super("loadBoard", "size=" + size + " shape=" + shape);
+			this.shape = shape;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			fn = BoardFixtures.tempFile("load-" + shape + "-" + size + ".dat");
+			BoardFixtures.minedBoard(shape, size, SEED).saveBoard(12.5, "Bench", fn);
+		}
+
+		@Override
+		public long invoke() throws Exception {
+			return MinesweeperBoard.loadBoard(fn).numCovered();
+		}
+	}
+
+	/**
+	 * Loading a shape file into an empty board with loadShapeFromFile().
+	 */
+	public static class LoadShape extends Benchmark {
+		private String shape;
+		private int size;
+		private String fn;
+		private MinesweeperBoard board;
+
+		/**
+		 * Constructs the benchmark for a board.
+		 * 
+		 * @param shape "full", or the name of a file in the ./shapes/ folder
+		 * @param size  The number of rows and columns of the board
+		 */
+		public LoadShape(String shape, int size) {
+			super("loadShapeFromFile", "size=" + size + " shape=" + shape);
+			this.shape = shape;
+			this.size = size;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			fn = BoardFixtures.shapeFile(shape, size);
+		}
+
+		@Override
+		public void setUpInvocation() {
+			board = new MinesweeperBoard(size, size);
+		}
+
+		@Override
+		public long invoke() {
+			board.loadShapeFromFile(fn);
+			return board.numInBounds();
+		}
+	}
+
+	/**
+	 * Reading a full leaderboard of ten players.
+	 */
+	public static class LeaderboardLoad extends Benchmark {
+		private String fn;
+
+		/**
+		 * Constructs the benchmark.
+		 */
+		public LeaderboardLoad() {
+			super("leaderboard.load", "players=10");
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			fn = BoardFixtures.tempFile("leaderboard-load.txt");
+			writeLeaderboard(fn);
+		}
+
+		@Override
+		public long invoke() throws Exception {
+			return new Leaderboard(fn).getScore(1);
+		}
+	}
+
+	/**
+	 * Adding a score to a full leaderboard of ten players. The file is rewritten
+	 * before every invocation, so every score is added to the same leaderboard.
+	 */
+	public static class LeaderboardAddScore extends Benchmark {
+		private String fn;
+		private Leaderboard leaderboard;
+		private int score;
+
+		/**
+		 * Constructs the benchmark.
+		 */
+		public LeaderboardAddScore() {
+			super("leaderboard.addScore", "players=10");
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			fn = BoardFixtures.tempFile("leaderboard-add.txt");
+		}
+
+		@Override
+		public void setUpInvocation() throws Exception {
+			writeLeaderboard(fn);
+			leaderboard = new Leaderboard(fn);
+			score = (score + 7) % 200;
+		}
+
+		@Override
+		public long invoke() throws Exception {
+			leaderboard.addScore("Bench", score);
+			return leaderboard.getScore(1);
+		}
+	}
+
+	/**
+	 * Writes a leaderboard file holding ten players.
+	 * 
+	 * @param fn The path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void writeLeaderboard(String fn) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(fn));
+		for (int i = 1; i <= 10; i++) {
+			writer.write("Player" + i + " " + (i * 17));
+			writer.newLine();
+		}
+		writer.close();
+	}
+}
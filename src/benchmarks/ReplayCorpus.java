@@ -0,0 +1,203 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+import model.Move;
+import model.RevealResult;
+
+/**
+ * A corpus of recorded games that can be replayed against the model. Every line
+ * of a corpus file is one game:
+ * 
+ * <pre>
+ * board seed outcome move move ...
+ * </pre>
+ * 
+ * where board is either rows x cols x mines ("30x16x99") or "shape:" followed
+ * by the name of a file in the ./shapes/ folder, seed is the seed the mines were
+ * placed with, outcome is the outcome the game ended with (IN_PROGRESS, WON or
+ * LOST), and every move is "row,col" for a reveal, "frow,col" for a flag or
+ * "crow,col" for a chord. Empty lines and lines starting with # are ignored.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class ReplayCorpus {
+
+	/**
+	 * A single recorded game.
+	 */
+	public static class Game {
+		private String board;
+		private MinesweeperBoard template;
+		private long seed;
+		private RevealResult.Outcome outcome;
+		private int[] moves;
+
+		/**
+		 * Constructs a recorded game.
+		 * 
+		 * @param board    The description of the board
+		 * @param template An empty board matching the description
+		 * @param seed     The seed the mines were placed with
+		 * @param outcome  The recorded outcome of the game
+		 * @param moves    The moves of the game, encoded with Move
+		 */
+		public Game(String board, MinesweeperBoard template, long seed, RevealResult.Outcome outcome, int[] moves) {
+			this.board = board;
+			this.template = template;
+			this.seed = seed;
+			this.outcome = outcome;
+			this.moves = moves;
+		}
+
+		/**
+		 * Returns the recorded outcome of the game.
+		 * 
+		 * @return The outcome
+		 */
+		public RevealResult.Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * Returns the number of moves of the game.
+		 * 
+		 * @return The number of moves
+		 */
+		public int numMoves() {
+			return moves.length;
+		}
+
+		/**
+		 * Plays the moves of the game on a copy of its board.
+		 * 
+		 * @return The model after the last move
+		 */
+		public MinesweeperModel replay() {
+			MinesweeperModel model = new MinesweeperModel(new MinesweeperBoard(template), seed);
+			model.applyMoves(moves, 0, moves.length);
+			return model;
+		}
+
+		/**
+		 * Returns the game as a line of a corpus file.
+		 * 
+		 * @return The line, without a line break
+		 */
+		@Override
+		public String toString() {
+			StringBuilder line = new StringBuilder();
+			line.append(board).append(' ').append(seed).append(' ').append(outcome);
+			int cols = template.getCols();
+			for (int move : moves) {
+				int cell = Move.cell(move);
+				line.append(' ').append(Move.type(move) == Move.FLAG ? "f" : Move.type(move) == Move.CHORD ? "c" : "");
+				line.append(cell / cols).append(',').append(cell % cols);
+			}
+			return line.toString();
+		}
+	}
+
+	private List<Game> games = new ArrayList<Game>();
+	// Empty boards by description, so that games on the same board share one
+	private Map<String, MinesweeperBoard> templates = new HashMap<String, MinesweeperBoard>();
+
+	/**
+	 * Constructs an empty corpus.
+	 */
+	public ReplayCorpus() {
+	}
+
+	/**
+	 * Reads a corpus file.
+	 * 
+	 * @param fn The path of the corpus file
+	 * @throws IOException if the file cannot be read
+	 */
+	public ReplayCorpus(String fn) throws IOException {
+		Scanner scanner = new Scanner(new File(fn));
+		int lineNumber = 0;
+		while (scanner.hasNextLine()) {
+			String line = scanner.nextLine().trim();
+			lineNumber++;
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			try {
+				games.add(parse(line));
+			} catch (RuntimeException e) {
+				scanner.close();
+				throw new IOException(fn + ":" + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+		scanner.close();
+	}
+
+	/**
+	 * Returns the games of the corpus.
+	 * 
+	 * @return The games
+	 */
+	public List<Game> getGames() {
+		return games;
+	}
+
+	/**
+	 * Returns the empty board a description refers to, reading shapes once.
+	 * 
+	 * @param board A description such as "30x16x99" or "shape:donut"
+	 * @return An empty board, which must not be changed
+	 */
+	public MinesweeperBoard template(String board) {
+		MinesweeperBoard template = templates.get(board);
+		if (template == null) {
+			if (board.startsWith("shape:")) {
+				template = new MinesweeperBoard("shapes/" + board.substring(6) + ".txt");
+			} else {
+				String[] dims = board.split("x");
+				template = new MinesweeperModel(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]),
+						Integer.parseInt(dims[2])).getBoard();
+			}
+			templates.put(board, template);
+		}
+		return template;
+	}
+
+	/**
+	 * Parses a line of a corpus file.
+	 * 
+	 * @param line A line holding a game
+	 * @return The game
+	 */
+	private Game parse(String line) {
+		String[] tokens = line.split("\\s+");
+		if (tokens.length < 3) {
+			throw new IllegalArgumentException("expected board, seed and outcome");
+		}
+		MinesweeperBoard template = template(tokens[0]);
+		int[] moves = new int[tokens.length - 3];
+		for (int i = 3; i < tokens.length; i++) {
+			String token = tokens[i];
+			boolean flag = token.startsWith("f");
+			boolean chord = token.startsWith("c");
+			int comma = token.indexOf(',');
+			int r = Integer.parseInt(token.substring(flag || chord ? 1 : 0, comma));
+			int c = Integer.parseInt(token.substring(comma + 1));
+			if (!template.inBounds(r, c)) {
+				throw new IllegalArgumentException("move out of bounds: " + token);
+			}
+			int cell = r * template.getCols() + c;
+			moves[i - 3] = flag ? Move.flag(cell) : chord ? Move.chord(cell) : Move.reveal(cell);
+		}
+		return new Game(tokens[0], template, Long.parseLong(tokens[1]), RevealResult.Outcome.valueOf(tokens[2]),
+				moves);
+	}
+}
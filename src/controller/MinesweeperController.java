@@ -1,20 +1,28 @@
 package controller;
 
+import java.util.Arrays;
+
 import model.MinesweeperBoard;
 import model.MinesweeperModel;
+import model.MinesweeperSolver;
+import model.Move;
+import model.RevealResult;
 
 /**
  * A controller class for the minesweeeper game. Holds a model and board instance 
  * and offers methods to interact with the game model. Supports methods to reveal 
  * a tile, flag a tile, reveal all mines on the board, determine if a save exists,
  * determine if it's the first move, and determine if the game has been won or lost.
+ * It can also give hints and play the moves that need no guessing.
  * 
  * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
  */
 public class MinesweeperController {
 	
-	private static MinesweeperBoard board;
+	private MinesweeperBoard board;
 	private MinesweeperModel model;
+	// Created on the first hint, then kept up to date with every move
+	private MinesweeperSolver solver;
 
 	/**
 	 * Constructs an instance of this class given a model.
@@ -30,24 +38,43 @@ public class MinesweeperController {
 	 * Prints a string representation of the board. For convenience in testing only.
 	 */
 	public void printBoard() {
-		for (int i = 1; i <= 13; i++) {
-			System.out.println("  -----------------------------------------------------");
+		String divider = "  " + "----".repeat(board.getCols()) + "-";
+		for (int i = 1; i <= board.getRows(); i++) {
+			System.out.println(divider);
 			System.out.print(Integer.toString(i) + " | ");
-			for (int j = 1; j <= 13; j++) {
-				if (!board.getTile(i - 1, j - 1).inBounds) {
+			for (int j = 1; j <= board.getCols(); j++) {
+				if (!board.inBounds(i - 1, j - 1)) {
 					System.out.print("-" + " | ");
-				} else if (board.getTile(i - 1, j - 1).hasMine) {
+				} else if (board.hasMine(i - 1, j - 1)) {
 					System.out.print("x" + " | ");
-				} else if (board.getTile(i - 1, j - 1).displayNum != 0) {
-					System.out.print(board.getTile(i - 1, j - 1).displayNum + " | ");
+				} else if (board.getDisplayNum(i - 1, j - 1) != 0) {
+					System.out.print(board.getDisplayNum(i - 1, j - 1) + " | ");
 				} else {
 					System.out.print("o" + " | ");
 				}
 			}
 			System.out.println();
 		}
-		System.out.println("  -----------------------------------------------------");
-		System.out.println("    a   b   c   d   e   f   g   h   i   j   k   l   m");
+		System.out.println(divider);
+		StringBuilder columns = new StringBuilder("  ");
+		for (int j = 0; j < board.getCols(); j++) {
+			columns.append("  ").append(columnName(j)).append(" ");
+		}
+		System.out.println(columns);
+	}
+
+	/**
+	 * Returns the spreadsheet style name of a column (a, b, ..., z, aa, ab, ...).
+	 * 
+	 * @param col A column coordinate
+	 * @return The name of the column
+	 */
+	private static String columnName(int col) {
+		String name = "";
+		for (col++; col > 0; col = (col - 1) / 26) {
+			name = (char) ('a' + (col - 1) % 26) + name;
+		}
+		return name;
 	}
 
 	/**
@@ -56,30 +83,78 @@ public class MinesweeperController {
 	 * @return True if the game has been won, false otherwise
 	 */
 	public boolean hasWon() {
-		int tiles = 0;
-		for (int i = 0; i < 13; i++) {
-			for (int j = 0; j < 13; j++) {
-				if (board.getTile(i, j).isCovered && board.getTile(i, j).inBounds) {
-					tiles += 1;
-				}
-			}
-		}
-		return tiles == model.getMineCount();
+		return model.getWon();
 	}
 
 	/**
-	 * Calls the model's revealSpace method, which uses recursion to cave out the
-	 * area of blank spaces done by a click. It checks to make sure that it is in
-	 * range, and if not then it does nothing. It then checks if there is a bomb,
-	 * which prompts the end of the game. Next, if it is a covered spot and there
-	 * are 0 bombs nearby it clears itself and recursively calls again. The last
+	 * Calls the model's revealSpace method, which caves out the area of blank
+	 * spaces done by a click. It checks to make sure that it is in range, and if
+	 * not then it does nothing. It then checks if there is a bomb, which prompts
+	 * the end of the game. Next, if it is a covered spot and there are 0 bombs
+	 * nearby it clears itself and the area of blank spaces around it. The last
 	 * condition is if it touches a bomb, which is will just reveal the spot.
 	 * 
 	 * @param row A row coordinate
 	 * @param col A column coordinate
+	 * @return The state of the game and the tiles that were uncovered
+	 */
+	public RevealResult revealSpace(int row, int col) {
+		RevealResult result = model.revealSpace(row, col);
+		if (solver != null) {
+			solver.revealed(result.getRevealed());
+		}
+		return result;
+	}
+
+	/**
+	 * Chords on a revealed number, revealing its neighbors that are not flagged if
+	 * enough of them are. See MinesweeperModel.chordSpace().
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 * @return The state of the game and the tiles that were uncovered
+	 */
+	public RevealResult chordSpace(int row, int col) {
+		RevealResult result = model.chordSpace(row, col);
+		if (solver != null) {
+			solver.revealed(result.getRevealed());
+		}
+		return result;
+	}
+
+	/**
+	 * Makes a sequence of moves at once, such as those of a bot or a replay.
+	 * Listeners of the model hear about them once at the end, and the moves stop
+	 * as soon as the game is won or lost. See MinesweeperModel.applyMoves().
+	 * 
+	 * @param moves Moves encoded with Move
+	 * @return The state of the game after the last move made, every tile that
+	 *         was uncovered, and the number of moves made
 	 */
-	public void revealSpace(int row, int col) {
-		model.revealSpace(row, col);
+	public RevealResult applyMoves(int[] moves) {
+		return applyMoves(moves, 0, moves.length);
+	}
+
+	/**
+	 * Makes part of a sequence of moves at once. See applyMoves(int[]).
+	 * 
+	 * @param moves  Moves encoded with Move
+	 * @param offset The index of the first move to make
+	 * @param length The number of moves to make
+	 * @return The state of the game after the last move made, every tile that
+	 *         was uncovered, and the number of moves made
+	 */
+	public RevealResult applyMoves(int[] moves, int offset, int length) {
+		RevealResult result = model.applyMoves(moves, offset, length);
+		if (solver != null) {
+			for (int i = offset; i < offset + result.getMoves(); i++) {
+				if (Move.type(moves[i]) == Move.FLAG) {
+					solver.flagged(Move.cell(moves[i]) / board.getCols(), Move.cell(moves[i]) % board.getCols());
+				}
+			}
+			solver.revealed(result.getRevealed());
+		}
+		return result;
 	}
 
 	/**
@@ -90,6 +165,67 @@ public class MinesweeperController {
 	 */
 	public void flagSpace(int row, int col) {
 		model.flagSpace(row, col);
+		if (solver != null) {
+			solver.flagged(row, col);
+		}
+	}
+
+	/**
+	 * Returns a move that can be made without guessing: revealing a tile that is
+	 * certainly safe, or otherwise flagging a tile that is certainly a mine.
+	 * 
+	 * @return A move encoded with Move, or Move.NONE if the next move is a guess
+	 */
+	public int hint() {
+		if (model.getFirstMove() || model.getOutcome() != RevealResult.Outcome.IN_PROGRESS) {
+			return Move.NONE;
+		}
+		if (solver == null) {
+			solver = new MinesweeperSolver(board);
+		}
+		return solver.hint();
+	}
+
+	/**
+	 * Plays every move that can be made without guessing, until the game ends or
+	 * the next move would be a guess. The moves are made as one batch, so
+	 * listeners of the model hear about them once at the end.
+	 * 
+	 * @return The state of the game and every tile that was uncovered
+	 */
+	public RevealResult autoSolve() {
+		int[] revealed = new int[64];
+		int numRevealed = 0;
+		int moves = 0;
+		model.beginBatch();
+		try {
+			for (int move = hint(); move != Move.NONE; move = hint()) {
+				moves++;
+				int row = Move.cell(move) / board.getCols();
+				int col = Move.cell(move) % board.getCols();
+				if (Move.type(move) == Move.FLAG) {
+					boolean wasFlagged = board.isFlagged(row, col);
+					flagSpace(row, col);
+					// A move that changes nothing would be hinted again forever
+					if (board.isFlagged(row, col) == wasFlagged) {
+						break;
+					}
+				} else {
+					int[] cells = revealSpace(row, col).getRevealed();
+					if (cells.length == 0) {
+						break;
+					}
+					if (numRevealed + cells.length > revealed.length) {
+						revealed = Arrays.copyOf(revealed, Math.max(revealed.length * 2, numRevealed + cells.length));
+					}
+					System.arraycopy(cells, 0, revealed, numRevealed, cells.length);
+					numRevealed += cells.length;
+				}
+			}
+		} finally {
+			model.endBatch();
+		}
+		return new RevealResult(model.getOutcome(), Arrays.copyOf(revealed, numRevealed), moves);
 	}
 
 	/**
@@ -0,0 +1,679 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A pool of boards whose mines were placed ahead of time on a background
+ * thread, so that the first click of a game does not have to wait for them.
+ * Boards are kept per Key, which is made of the shape, size and mine count of
+ * the board, whether it needs no guessing, and the region of the board the
+ * first click falls in.
+ * 
+ * Regular boards do not depend on the first click: their mines are placed on
+ * the whole board, and the few mines that land around the first click are
+ * moved elsewhere when the board is used. No guess boards are generated for
+ * the middle tile of their region, and can be used for any first click inside
+ * the opening that tile reveals, since every such click reveals the same tiles.
+ * 
+ * Every key that is used is kept filled up to a number of boards. Keys that
+ * have not been used for a while are evicted, as are the least recently used
+ * keys once there are too many. The pool can be saved to disk and loaded on
+ * the next run.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class BoardPool {
+
+	// Number of bands the rows and columns are split into for no guess regions
+	private static final int REGION_BANDS = 3;
+	// Failed attempts after which no more boards are generated for a key
+	private static final int MAX_FAILURES = 3;
+	// Header of a saved pool: magic number and version
+	private static final int MAGIC = 0x4D534250;
+	private static final short VERSION = 1;
+
+	/**
+	 * Identifies the kind of board a pooled board can be used for.
+	 */
+	public static class Key {
+		private String shape;
+		private int rows;
+		private int cols;
+		private int mines;
+		private boolean noGuess;
+		private int region;
+
+		/**
+		 * Constructs a key.
+		 * 
+		 * @param shape   The name of a file in the ./shapes/ folder, or "" for a
+		 *                rectangular board
+		 * @param rows    The number of rows of the board
+		 * @param cols    The number of columns of the board
+		 * @param mines   The number of mines of the board
+		 * @param noGuess Whether the board must be solvable without guessing
+		 * @param region  The region of the first click, always 0 for regular boards
+		 */
+		public Key(String shape, int rows, int cols, int mines, boolean noGuess, int region) {
+			this.shape = shape;
+			this.rows = rows;
+			this.cols = cols;
+			this.mines = mines;
+			this.noGuess = noGuess;
+			this.region = noGuess ? region : 0;
+		}
+
+		/**
+		 * Constructs the key for a first click on a board.
+		 * 
+		 * @param shape   The name of the shape of the board, or "" if it is
+		 *                rectangular
+		 * @param board   The board
+		 * @param noGuess Whether the board must be solvable without guessing
+		 * @param row     A row coordinate of the first click
+		 * @param col     A column coordinate of the first click
+		 */
+		public Key(String shape, MinesweeperBoard board, boolean noGuess, int row, int col) {
+			this(shape, board.getRows(), board.getCols(), board.bombCount, noGuess,
+					row * REGION_BANDS / board.getRows() * REGION_BANDS + col * REGION_BANDS / board.getCols());
+		}
+
+		/**
+		 * Returns whether the board must be solvable without guessing.
+		 * 
+		 * @return True for no guess boards
+		 */
+		public boolean isNoGuess() {
+			return noGuess;
+		}
+
+		/**
+		 * Returns the number of tiles of the board.
+		 * 
+		 * @return rows * cols
+		 */
+		public long numCells() {
+			return (long) rows * cols;
+		}
+
+		/**
+		 * Constructs an empty board for the key.
+		 * 
+		 * @return An empty board
+		 */
+		public MinesweeperBoard emptyBoard() {
+			MinesweeperBoard board = shape.isEmpty() ? new MinesweeperBoard(rows, cols)
+					: new MinesweeperBoard("shapes/" + shape + ".txt");
+			board.bombCount = mines;
+			return board;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return shape.equals(other.shape) && rows == other.rows && cols == other.cols && mines == other.mines
+					&& noGuess == other.noGuess && region == other.region;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = shape.hashCode();
+			hash = hash * 31 + rows;
+			hash = hash * 31 + cols;
+			hash = hash * 31 + mines;
+			hash = hash * 31 + (noGuess ? 1 : 0);
+			return hash * 31 + region;
+		}
+
+		@Override
+		public String toString() {
+			return (shape.isEmpty() ? "" : shape + ":") + rows + "x" + cols + "x" + mines
+					+ (noGuess ? " no guess region " + region : "");
+		}
+	}
+
+	/**
+	 * A board in the pool, with its mines placed and every tile covered.
+	 */
+	public static class Entry {
+		private MinesweeperBoard board;
+		// For no guess boards, the tiles that reveal the same opening as the tile
+		// the board was generated for; null for regular boards
+		private BitSet opening;
+
+		/**
+		 * Constructs an entry.
+		 * 
+		 * @param board   A board with its mines placed
+		 * @param opening The first clicks the board can be used for, or null if the
+		 *                board can be used for any first click
+		 */
+		Entry(MinesweeperBoard board, BitSet opening) {
+			this.board = board;
+			this.opening = opening;
+		}
+
+		/**
+		 * Returns the board of the entry.
+		 * 
+		 * @return A board with its mines placed
+		 */
+		public MinesweeperBoard getBoard() {
+			return board;
+		}
+
+		/**
+		 * Returns whether the board can be used for a first click.
+		 * 
+		 * @param row A row coordinate
+		 * @param col A column coordinate
+		 * @return True if the board can be used
+		 */
+		public boolean accepts(int row, int col) {
+			return opening == null || opening.get(row * board.getCols() + col);
+		}
+	}
+
+	/**
+	 * The boards of a key and when the key was last used.
+	 */
+	private static class Slot {
+		private ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+		private long lastUsed = System.nanoTime();
+		// The tile no guess boards are generated for, -1 if the region is empty
+		private int target = -2;
+		private int failures;
+	}
+
+	private int perKey;
+	private int maxKeys;
+	private long idleNanos;
+	private long maxCells;
+	private long pooledCells;
+	private int threads = 1;
+	private long noGuessBudget = 2000;
+	private SplittableRandom rand = new SplittableRandom();
+	private Thread worker;
+	private boolean running;
+	// File the pool is loaded from when started and saved to when stopped
+	private String file;
+	// Keys in order of use, least recently used first
+	private LinkedHashMap<Key, Slot> slots = new LinkedHashMap<Key, Slot>(16, 0.75f, true);
+
+	/**
+	 * Constructs a pool that keeps 2 boards for each of at most 32 keys, evicts
+	 * keys after 10 minutes without use, and holds at most 50 million tiles.
+	 */
+	public BoardPool() {
+		this(2, 32, 10 * 60 * 1000L, 50_000_000L);
+	}
+
+	/**
+	 * Constructs a pool.
+	 * 
+	 * @param perKey     The number of boards to keep for each key
+	 * @param maxKeys    The number of keys to keep boards for
+	 * @param idleMillis How long a key may go unused before it is evicted
+	 * @param maxCells   The largest number of tiles of all pooled boards together
+	 */
+	public BoardPool(int perKey, int maxKeys, long idleMillis, long maxCells) {
+		this.perKey = perKey;
+		this.maxKeys = maxKeys;
+		this.idleNanos = idleMillis * 1_000_000L;
+		this.maxCells = maxCells;
+	}
+
+	/**
+	 * Sets the number of threads used to generate a single no guess board, and the
+	 * time budget for it.
+	 * 
+	 * @param threads      The number of threads
+	 * @param budgetMillis The time budget in milliseconds
+	 */
+	public synchronized void setNoGuess(int threads, long budgetMillis) {
+		this.threads = threads;
+		this.noGuessBudget = budgetMillis;
+	}
+
+	/**
+	 * Sets a file to keep the pool in between runs. The pool is loaded from it by
+	 * the background thread when started, and saved to it when stopped.
+	 * 
+	 * @param fn The path of the file, or null to not keep the pool
+	 */
+	public synchronized void setFile(String fn) {
+		this.file = fn;
+	}
+
+	/**
+	 * Starts the background thread that fills the pool.
+	 */
+	public synchronized void start() {
+		if (worker != null) {
+			return;
+		}
+		running = true;
+		worker = new Thread(this::fill, "board-pool");
+		worker.setDaemon(true);
+		worker.setPriority(Thread.MIN_PRIORITY);
+		worker.start();
+	}
+
+	/**
+	 * Stops the background thread, and saves the pool if it has a file. Boards
+	 * already in the pool are kept.
+	 */
+	public void stop() {
+		Thread stopping;
+		synchronized (this) {
+			running = false;
+			stopping = worker;
+			worker = null;
+			notifyAll();
+		}
+		if (stopping != null) {
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		String fn;
+		synchronized (this) {
+			fn = file;
+		}
+		if (fn != null) {
+			try {
+				save(fn);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Asks the pool to keep boards for every first click on a board, so that the
+	 * next game on it starts without waiting.
+	 * 
+	 * @param shape   The name of the shape of the board, or "" if it is
+	 *                rectangular
+	 * @param board   The board
+	 * @param noGuess Whether the board must be solvable without guessing
+	 */
+	public void prepare(String shape, MinesweeperBoard board, boolean noGuess) {
+		int regions = noGuess ? REGION_BANDS * REGION_BANDS : 1;
+		for (int region = 0; region < regions; region++) {
+			slot(new Key(shape, board.getRows(), board.getCols(), board.bombCount, noGuess, region));
+		}
+	}
+
+	/**
+	 * Removes a board from the pool that can be used for a first click, and asks
+	 * the pool to replace it.
+	 * 
+	 * @param key The key of the first click
+	 * @param row A row coordinate of the first click
+	 * @param col A column coordinate of the first click
+	 * @return A pooled board, or null if none can be used
+	 */
+	public synchronized Entry take(Key key, int row, int col) {
+		Slot slot = slot(key);
+		for (Iterator<Entry> it = slot.entries.iterator(); it.hasNext();) {
+			Entry entry = it.next();
+			if (entry.accepts(row, col)) {
+				it.remove();
+				pooledCells -= key.numCells();
+				notifyAll();
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of boards in the pool.
+	 * 
+	 * @return The number of boards
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (Slot slot : slots.values()) {
+			size += slot.entries.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the slot of a key, adding it if the pool has none, and marks it as
+	 * used.
+	 * 
+	 * @param key A key
+	 * @return The slot of the key
+	 */
+	private synchronized Slot slot(Key key) {
+		Slot slot = slots.get(key);
+		if (slot == null) {
+			slot = new Slot();
+			slots.put(key, slot);
+			while (slots.size() > maxKeys) {
+				evict(slots.keySet().iterator().next());
+			}
+		}
+		slot.lastUsed = System.nanoTime();
+		notifyAll();
+		return slot;
+	}
+
+	/**
+	 * Removes a key and its boards from the pool.
+	 * 
+	 * @param key A key in the pool
+	 */
+	private synchronized void evict(Key key) {
+		Slot slot = slots.remove(key);
+		pooledCells -= slot.entries.size() * key.numCells();
+	}
+
+	/**
+	 * Generates boards until the pool is stopped, waiting while every key is full.
+	 */
+	private void fill() {
+		String fn;
+		synchronized (this) {
+			fn = file;
+		}
+		if (fn != null && new File(fn).isFile()) {
+			try {
+				load(fn);
+			} catch (IOException e) {
+				// A damaged or outdated pool is simply generated again
+				e.printStackTrace();
+			}
+		}
+		while (true) {
+			Key key;
+			Slot slot;
+			long seed;
+			synchronized (this) {
+				key = null;
+				slot = null;
+				while (running && key == null) {
+					evictIdle();
+					for (Map.Entry<Key, Slot> e : slots.entrySet()) {
+						if (e.getValue().entries.size() < perKey && e.getValue().failures < MAX_FAILURES
+								&& pooledCells + e.getKey().numCells() <= maxCells) {
+							key = e.getKey();
+							slot = e.getValue();
+							break;
+						}
+					}
+					if (key == null) {
+						try {
+							wait(idleNanos / 1_000_000L + 1);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				if (!running) {
+					return;
+				}
+				seed = rand.nextLong();
+			}
+			Entry entry;
+			try {
+				entry = generate(key, slot, seed);
+			} catch (RuntimeException e) {
+				// Such as a key loaded from an old pool whose shape has changed since; the
+				// key counts as failed and the other keys are still filled
+				e.printStackTrace();
+				entry = null;
+			}
+			synchronized (this) {
+				// The key may have been evicted while the board was generated
+				if (entry != null && slots.get(key) == slot && slot.entries.size() < perKey) {
+					slot.entries.add(entry);
+					pooledCells += key.numCells();
+				} else if (entry == null) {
+					slot.failures++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts every key that has not been used for longer than the idle time.
+	 */
+	private synchronized void evictIdle() {
+		long now = System.nanoTime();
+		for (Iterator<Map.Entry<Key, Slot>> it = slots.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Key, Slot> e = it.next();
+			if (now - e.getValue().lastUsed > idleNanos) {
+				pooledCells -= e.getValue().entries.size() * e.getKey().numCells();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Generates a board for a key.
+	 * 
+	 * @param key  The key to generate a board for
+	 * @param slot The slot of the key
+	 * @param seed A seed for placing the mines
+	 * @return The entry, or null if no board can be generated for the key
+	 */
+	private Entry generate(Key key, Slot slot, long seed) {
+		MinesweeperBoard board = key.emptyBoard();
+		if (!key.isNoGuess()) {
+			new MinesweeperModel(board, seed).setBombs(board.bombCount);
+			return new Entry(board, null);
+		}
+		if (slot.target == -2) {
+			slot.target = regionTarget(board, key.region);
+		}
+		if (slot.target < 0) {
+			slot.failures = MAX_FAILURES;
+			return null;
+		}
+		int row = slot.target / board.getCols();
+		int col = slot.target % board.getCols();
+		NoGuessGenerator generator = new NoGuessGenerator(board);
+		synchronized (this) {
+			generator.setThreads(threads);
+			generator.setTimeBudget(noGuessBudget);
+		}
+		MinesweeperBoard layout = generator.generate(row, col, seed);
+		if (layout == null) {
+			return null;
+		}
+		slot.failures = 0;
+		return new Entry(layout, opening(layout, row, col));
+	}
+
+	/**
+	 * Finds the in bounds tile closest to the middle of a region.
+	 * 
+	 * @param board  An empty board
+	 * @param region A region, numbered row by row
+	 * @return The index (row * cols + col) of the tile, or -1 if the region has no
+	 *         in bounds tiles
+	 */
+	private static int regionTarget(MinesweeperBoard board, int region) {
+		int rows = board.getRows();
+		int cols = board.getCols();
+		int bandRow = region / REGION_BANDS;
+		int bandCol = region % REGION_BANDS;
+		int midRow = (2 * bandRow + 1) * rows / (2 * REGION_BANDS);
+		int midCol = (2 * bandCol + 1) * cols / (2 * REGION_BANDS);
+		int best = -1;
+		long bestDistance = Long.MAX_VALUE;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				if (r * REGION_BANDS / rows != bandRow || c * REGION_BANDS / cols != bandCol || !board.inBounds(r, c)) {
+					continue;
+				}
+				long distance = (long) (r - midRow) * (r - midRow) + (long) (c - midCol) * (c - midCol);
+				if (distance < bestDistance) {
+					best = r * cols + c;
+					bestDistance = distance;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the tiles without mines nearby that are connected to a tile, which
+	 * all reveal the same opening when clicked.
+	 * 
+	 * @param board A board with its mines placed
+	 * @param row   A row coordinate of a tile without mines nearby
+	 * @param col   A column coordinate of a tile without mines nearby
+	 * @return The tiles of the opening that have no mines nearby
+	 */
+	private static BitSet opening(MinesweeperBoard board, int row, int col) {
+		int cols = board.getCols();
+		BitSet opening = new BitSet();
+		int[] queue = new int[64];
+		int size = 0;
+		opening.set(row * cols + col);
+		queue[size++] = row * cols + col;
+		for (int head = 0; head < size; head++) {
+			int r = queue[head] / cols;
+			int c = queue[head] % cols;
+			for (int i = r - 1; i <= r + 1; i++) {
+				for (int j = c - 1; j <= c + 1; j++) {
+					if (board.inBounds(i, j) && !opening.get(i * cols + j) && !board.hasMine(i, j)
+							&& board.getDisplayNum(i, j) == 0) {
+						opening.set(i * cols + j);
+						if (size == queue.length) {
+							queue = Arrays.copyOf(queue, size * 2);
+						}
+						queue[size++] = i * cols + j;
+					}
+				}
+			}
+		}
+		return opening;
+	}
+
+	/**
+	 * Saves the boards of the pool to a file. Every board is written in the format
+	 * of a save file, followed by the opening of no guess boards.
+	 * 
+	 * @param fn The path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void save(String fn) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fn)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeInt(slots.size());
+			for (Map.Entry<Key, Slot> e : slots.entrySet()) {
+				Key key = e.getKey();
+				out.writeUTF(key.shape);
+				out.writeInt(key.rows);
+				out.writeInt(key.cols);
+				out.writeInt(key.mines);
+				out.writeBoolean(key.noGuess);
+				out.writeInt(key.region);
+				out.writeInt(e.getValue().entries.size());
+				for (Entry entry : e.getValue().entries) {
+					byte[] board = entry.board.toByteArray();
+					out.writeInt(board.length);
+					out.write(board);
+					long[] opening = entry.opening == null ? null : entry.opening.toLongArray();
+					out.writeInt(opening == null ? -1 : opening.length);
+					for (int i = 0; opening != null && i < opening.length; i++) {
+						out.writeLong(opening[i]);
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Adds the boards saved in a file to the pool, as far as the limits of the
+	 * pool allow. The keys count as used now. Every board is checked like a save
+	 * file, and must match its key.
+	 * 
+	 * @param fn The path of the file
+	 * @throws IOException if the file cannot be read or does not hold a valid pool
+	 */
+	public synchronized void load(String fn) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fn)));
+		try {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+				throw new IOException("Not a saved board pool: " + fn);
+			}
+			int keys = in.readInt();
+			for (int k = 0; k < keys; k++) {
+				Key key = new Key(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readBoolean(),
+						in.readInt());
+				if (key.rows < MinesweeperModel.MIN_SIZE || key.rows > MinesweeperModel.MAX_SIZE
+						|| key.cols < MinesweeperModel.MIN_SIZE || key.cols > MinesweeperModel.MAX_SIZE
+						|| key.mines < 0 || key.region < 0 || key.region >= REGION_BANDS * REGION_BANDS) {
+					throw new IOException("Invalid key in board pool: " + key);
+				}
+				// A board holds two tiles per byte, after a header and a name
+				long maxBoardBytes = (key.numCells() + 1) / 2 + 64 * 1024;
+				int entries = in.readInt();
+				if (entries < 0) {
+					throw new IOException("Invalid board count in board pool: " + entries);
+				}
+				Slot slot = slot(key);
+				for (int i = 0; i < entries; i++) {
+					int length = in.readInt();
+					if (length < 0 || length > maxBoardBytes) {
+						throw new IOException("Invalid board size in board pool: " + length);
+					}
+					byte[] data = new byte[length];
+					in.readFully(data);
+					MinesweeperBoard board = MinesweeperBoard.fromByteArray(data);
+					if (board.getRows() != key.rows || board.getCols() != key.cols || board.bombCount != key.mines) {
+						throw new IOException("Board does not match its key in board pool: " + key);
+					}
+					int words = in.readInt();
+					if (words < -1 || words > (key.numCells() + 63) / 64) {
+						throw new IOException("Invalid opening in board pool: " + words);
+					}
+					BitSet opening = null;
+					if (words >= 0) {
+						long[] bits = new long[words];
+						for (int w = 0; w < words; w++) {
+							bits[w] = in.readLong();
+						}
+						opening = BitSet.valueOf(bits);
+					}
+					if (slot.entries.size() < perKey && pooledCells + key.numCells() <= maxCells) {
+						slot.entries.add(new Entry(board, opening));
+						pooledCells += key.numCells();
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
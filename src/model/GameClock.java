@@ -0,0 +1,102 @@
+package model;
+
+/**
+ * The clock of a game. Rather than counting ticks, the clock keeps the
+ * System.nanoTime() at which it was last started and the time counted before
+ * that, so reading it is exact, never drifts and costs nothing while nobody
+ * looks. The model starts the clock with the first reveal and stops it when the
+ * game ends; saves keep the time counted so far.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class GameClock {
+
+	// Time counted up to the last pause, and when the clock was last started
+	private long pausedNanos;
+	private long startNanos;
+	// Read without locking, so that moves can check it cheaply
+	private volatile boolean running;
+
+	/**
+	 * Constructs a stopped clock at 0.
+	 */
+	public GameClock() {
+	}
+
+	/**
+	 * Constructs a stopped clock that goes on from a saved time.
+	 * 
+	 * @param seconds The time counted so far, in seconds
+	 */
+	public GameClock(double seconds) {
+		pausedNanos = Math.round(seconds * 1e9);
+	}
+
+	/**
+	 * Starts the clock, or does nothing if it is running.
+	 */
+	public synchronized void start() {
+		if (!running) {
+			startNanos = System.nanoTime();
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops the clock, keeping the time counted so far, or does nothing if it is
+	 * stopped.
+	 */
+	public synchronized void pause() {
+		if (running) {
+			pausedNanos += System.nanoTime() - startNanos;
+			running = false;
+		}
+	}
+
+	/**
+	 * Returns whether the clock is running.
+	 * 
+	 * @return True if the clock is running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Stops the clock and sets the time counted so far, such as the time of the
+	 * last move of a journal.
+	 * 
+	 * @param nanos The time in nanoseconds
+	 */
+	public synchronized void setNanos(long nanos) {
+		pausedNanos = nanos;
+		running = false;
+	}
+
+	/**
+	 * Returns the time counted so far.
+	 * 
+	 * @return The time in nanoseconds
+	 */
+	public synchronized long getNanos() {
+		return running ? pausedNanos + System.nanoTime() - startNanos : pausedNanos;
+	}
+
+	/**
+	 * Returns the time counted so far.
+	 * 
+	 * @return The time in milliseconds
+	 */
+	public long getMillis() {
+		return getNanos() / 1_000_000;
+	}
+
+	/**
+	 * Returns the time counted so far.
+	 * 
+	 * @return The time in seconds
+	 */
+	public double getSeconds() {
+		return getNanos() / 1e9;
+	}
+}
@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * Receives the events of a MinesweeperModel. Every kind of event has a method
+ * of its own with the data it carries, so nothing is allocated to describe an
+ * event and listeners do not have to cast. All methods do nothing by default,
+ * so a listener only implements the events it needs.
+ *
+ * Listeners are called on the thread that made the move, while the model is
+ * being changed, so they should not make moves themselves.
+ *
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public interface GameListener {
+
+	/**
+	 * Called when tiles are uncovered, by a reveal or when the mines are shown at
+	 * the end of a game.
+	 *
+	 * @param cells The indices (row * cols + col) of the uncovered tiles, which
+	 *              must not be changed
+	 */
+	default void cellsRevealed(int[] cells) {
+	}
+
+	/**
+	 * Called when a flag is placed or removed.
+	 *
+	 * @param cell    The index (row * cols + col) of the tile
+	 * @param flagged True if the tile is now flagged
+	 */
+	default void cellFlagged(int cell, boolean flagged) {
+	}
+
+	/**
+	 * Called when the last tile without a mine is revealed.
+	 *
+	 * @param seconds The time the game took
+	 */
+	default void gameWon(double seconds) {
+	}
+
+	/**
+	 * Called when a mine is revealed.
+	 *
+	 * @param cell The index (row * cols + col) of the mine
+	 */
+	default void gameLost(int cell) {
+	}
+
+	/**
+	 * Called when the whole board may have changed, such as when a game is loaded.
+	 */
+	default void boardChanged() {
+	}
+}
@@ -0,0 +1,465 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A recording of a game from its first move, compact enough to be sent along
+ * with every score. The mines are recorded as the seed they were placed with,
+ * and every move that changed the board is recorded with the time of the game
+ * in milliseconds, so that a ReplayVerifier can play the game again and check
+ * the score. Games whose mines were not placed from the seed alone, such as
+ * boards that need no guessing or boards from a BoardPool, record the positions
+ * of their mines instead.
+ * 
+ * In its binary form (see toByteArray()) every number is a varint: 7 bits per
+ * byte, lowest first, with the high bit set on every byte but the last. A move
+ * is its encoding from Move followed by the milliseconds since the move before
+ * it, which takes 2 to 4 bytes for a move on a board of up to 128 by 128.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class GameRecording {
+
+	// Header: magic number and version
+	private static final int MAGIC = 0x4D535250;
+	private static final int VERSION = 1;
+
+	private String board;
+	private long seed;
+	// Indices (row * cols + col) of the mines in increasing order, or null if
+	// they were placed from the seed
+	private int[] mines;
+	private int[] moves = new int[16];
+	private int[] millis = new int[16];
+	private int numMoves;
+
+	/**
+	 * Constructs an empty recording.
+	 * 
+	 * @param board The description of the board, see describe()
+	 * @param seed  The seed the mines are placed with
+	 */
+	public GameRecording(String board, long seed) {
+		this.board = board;
+		this.seed = seed;
+	}
+
+	/**
+	 * Starts recording a new game. The model is given a fresh random seed, so this
+	 * must be called before the first move.
+	 * 
+	 * @param model The game to record
+	 * @return The recording, which is also set on the model
+	 */
+	public static GameRecording start(MinesweeperModel model) {
+		GameRecording recording = new GameRecording(describe(model), new SplittableRandom().nextLong());
+		model.setSeed(recording.seed);
+		model.setRecording(recording);
+		return recording;
+	}
+
+	/**
+	 * Describes the empty board of a game, in the form ReplayVerifier.template()
+	 * reads: rows x cols x mines ("30x16x99"), or "shape:" followed by the name of
+	 * a file in the ./shapes/ folder.
+	 * 
+	 * @param model A game
+	 * @return The description of its board
+	 */
+	public static String describe(MinesweeperModel model) {
+		if (!model.getShape().isEmpty()) {
+			return "shape:" + model.getShape();
+		}
+		MinesweeperBoard b = model.getBoard();
+		return b.getRows() + "x" + b.getCols() + "x" + b.bombCount;
+	}
+
+	/**
+	 * Returns the file a recording is kept in next to a save file, for example
+	 * "save_game.rec" for "save_game.dat".
+	 * 
+	 * @param saveFile The name of the save file
+	 * @return The recording file
+	 */
+	public static File recordingFile(String saveFile) {
+		return new File(saveFile.endsWith(".dat") ? saveFile.substring(0, saveFile.length() - 4) + ".rec"
+				: saveFile + ".rec");
+	}
+
+	/**
+	 * Goes on recording a game that was saved and loaded again. Its moves are
+	 * timed by the clock of the game, which goes on from the time it was saved
+	 * with.
+	 * 
+	 * @param model The loaded game, which the recording is set on
+	 */
+	public void resume(MinesweeperModel model) {
+		model.setRecording(this);
+	}
+
+	/**
+	 * Records the positions of the mines, for a game whose mines were not placed
+	 * from the seed alone. Called by the model after the first move.
+	 * 
+	 * @param layout The board with its mines placed
+	 */
+	synchronized void setMines(MinesweeperBoard layout) {
+		int[] cells = new int[layout.bombCount];
+		int count = 0;
+		for (int k = 0; k < layout.numInBounds(); k++) {
+			int cell = layout.inBoundsCell(k);
+			if (layout.hasMine(cell / layout.getCols(), cell % layout.getCols())) {
+				if (count == cells.length) {
+					cells = Arrays.copyOf(cells, count * 2 + 1);
+				}
+				cells[count++] = cell;
+			}
+		}
+		cells = Arrays.copyOf(cells, count);
+		Arrays.sort(cells);
+		mines = cells;
+	}
+
+	/**
+	 * Records a move. Called by the model with the time of its clock.
+	 * 
+	 * @param move The encoded move, see Move
+	 * @param time The time of the game in milliseconds, no earlier than the time
+	 *             of the move before
+	 */
+	public synchronized void record(int move, long time) {
+		if (numMoves == moves.length) {
+			moves = Arrays.copyOf(moves, numMoves * 2);
+			millis = Arrays.copyOf(millis, numMoves * 2);
+		}
+		moves[numMoves] = move;
+		millis[numMoves] = (int) Math.min(Math.max(time, getMillis()), Integer.MAX_VALUE);
+		numMoves++;
+	}
+
+	/**
+	 * Drops the moves after the first ones, such as moves that a journal holds
+	 * again.
+	 * 
+	 * @param count The number of moves to keep
+	 * @return False if the recording has fewer moves than that
+	 */
+	synchronized boolean truncate(int count) {
+		if (count > numMoves) {
+			return false;
+		}
+		numMoves = count;
+		return true;
+	}
+
+	/**
+	 * Returns the description of the board, see describe().
+	 * 
+	 * @return The description of the board
+	 */
+	public String getBoard() {
+		return board;
+	}
+
+	/**
+	 * Returns the seed the mines are placed with.
+	 * 
+	 * @return The seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the positions of the mines, if they were not placed from the seed.
+	 * 
+	 * @return The indices (row * cols + col) of the mines in increasing order, or
+	 *         null
+	 */
+	public synchronized int[] getMines() {
+		return mines;
+	}
+
+	/**
+	 * Returns the number of moves recorded.
+	 * 
+	 * @return The number of moves
+	 */
+	public synchronized int numMoves() {
+		return numMoves;
+	}
+
+	/**
+	 * Returns a recorded move.
+	 * 
+	 * @param i The number of the move, from 0
+	 * @return The encoded move, see Move
+	 */
+	public synchronized int getMove(int i) {
+		return moves[i];
+	}
+
+	/**
+	 * Returns all recorded moves.
+	 * 
+	 * @return The encoded moves in order, see Move
+	 */
+	public synchronized int[] getMoves() {
+		return Arrays.copyOf(moves, numMoves);
+	}
+
+	/**
+	 * Returns the time of the game at a recorded move.
+	 * 
+	 * @param i The number of the move, from 0
+	 * @return The time in milliseconds
+	 */
+	public synchronized int getMillis(int i) {
+		return millis[i];
+	}
+
+	/**
+	 * Returns the time of the game at the last recorded move.
+	 * 
+	 * @return The time in milliseconds, or 0 if no move was recorded
+	 */
+	public synchronized int getMillis() {
+		return numMoves == 0 ? 0 : millis[numMoves - 1];
+	}
+
+	/**
+	 * Encodes the recording in its binary form.
+	 * 
+	 * @return The encoded recording
+	 */
+	public synchronized byte[] toByteArray() {
+		byte[] name = board.getBytes(StandardCharsets.UTF_8);
+		int mineCount = mines == null ? 0 : mines.length;
+		Writer out = new Writer(32 + name.length + 3 * mineCount + 6 * numMoves);
+		out.putInt(MAGIC);
+		out.putVarint(VERSION);
+		out.putVarint(name.length);
+		out.putBytes(name);
+		out.putLong(seed);
+		// The number of mines plus one, 0 if they were placed from the seed, and
+		// then the gaps between them
+		out.putVarint(mines == null ? 0 : mineCount + 1);
+		int last = 0;
+		for (int i = 0; i < mineCount; i++) {
+			out.putVarint(mines[i] - last);
+			last = mines[i];
+		}
+		out.putVarint(numMoves);
+		int time = 0;
+		for (int i = 0; i < numMoves; i++) {
+			out.putVarint(moves[i]);
+			out.putVarint(millis[i] - time);
+			time = millis[i];
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a recording from its binary form.
+	 * 
+	 * @param data The encoded recording
+	 * @return The recording
+	 * @throws IOException if the data is not a valid recording
+	 */
+	public static GameRecording fromByteArray(byte[] data) throws IOException {
+		Reader in = new Reader(data);
+		if (in.getInt() != MAGIC) {
+			throw new IOException("Not a game recording");
+		}
+		int version = in.getVarint();
+		if (version != VERSION) {
+			throw new IOException("Unsupported recording version " + version);
+		}
+		String board = new String(in.getBytes(in.getVarint()), StandardCharsets.UTF_8);
+		GameRecording recording = new GameRecording(board, in.getLong());
+		int mineCount = in.getVarint() - 1;
+		if (mineCount >= 0) {
+			// Every varint takes at least a byte, which bounds the counts read
+			int[] mines = new int[in.checkCount(mineCount)];
+			int last = 0;
+			for (int i = 0; i < mineCount; i++) {
+				last = in.add(last, in.getVarint());
+				mines[i] = last;
+			}
+			recording.mines = mines;
+		}
+		int numMoves = in.checkCount(in.getVarint());
+		recording.moves = new int[Math.max(numMoves, 16)];
+		recording.millis = new int[Math.max(numMoves, 16)];
+		int time = 0;
+		for (int i = 0; i < numMoves; i++) {
+			recording.moves[i] = in.getVarint();
+			time = in.add(time, in.getVarint());
+			recording.millis[i] = time;
+		}
+		recording.numMoves = numMoves;
+		if (!in.atEnd()) {
+			throw new IOException("Trailing data after game recording");
+		}
+		return recording;
+	}
+
+	/**
+	 * Writes the recording to a file.
+	 * 
+	 * @param file The file to write to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		write(file, toByteArray());
+	}
+
+	/**
+	 * Writes an encoded recording to a file, replacing the file only once the
+	 * whole recording is written.
+	 * 
+	 * @param file The file to write to
+	 * @param data The encoded recording, see toByteArray()
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(File file, byte[] data) throws IOException {
+		Path temp = Paths.get(file.getPath() + ".tmp");
+		Files.write(temp, data);
+		Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads a recording from a file.
+	 * 
+	 * @param file The file to read
+	 * @return The recording
+	 * @throws IOException if the file cannot be read or is not a valid recording
+	 */
+	public static GameRecording read(File file) throws IOException {
+		return fromByteArray(Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+	 * Appends numbers to a growing byte array.
+	 */
+	private static class Writer {
+		private byte[] data;
+		private int size;
+
+		private Writer(int capacity) {
+			data = new byte[capacity];
+		}
+
+		private void ensure(int more) {
+			if (size + more > data.length) {
+				data = Arrays.copyOf(data, Math.max(size + more, data.length * 2));
+			}
+		}
+
+		private void putVarint(int value) {
+			ensure(5);
+			while ((value & ~0x7F) != 0) {
+				data[size++] = (byte) (value & 0x7F | 0x80);
+				value >>>= 7;
+			}
+			data[size++] = (byte) value;
+		}
+
+		private void putInt(int value) {
+			ensure(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				data[size++] = (byte) (value >>> shift);
+			}
+		}
+
+		private void putLong(long value) {
+			putInt((int) (value >>> 32));
+			putInt((int) value);
+		}
+
+		private void putBytes(byte[] bytes) {
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, data, size, bytes.length);
+			size += bytes.length;
+		}
+
+		private byte[] toByteArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+
+	/**
+	 * Reads numbers from a byte array, throwing IOException rather than reading
+	 * past its end.
+	 */
+	private static class Reader {
+		private byte[] data;
+		private int pos;
+
+		private Reader(byte[] data) {
+			this.data = data;
+		}
+
+		private int getVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				if (pos == data.length) {
+					throw new IOException("Game recording is cut short");
+				}
+				int b = data[pos++];
+				value |= (b & 0x7F) << shift;
+				// Only positive ints are stored, which fit in 31 bits
+				if (shift == 28 && (b & 0xF8) != 0) {
+					break;
+				}
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("Invalid number in game recording");
+		}
+
+		private int getInt() throws IOException {
+			byte[] b = getBytes(4);
+			return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+		}
+
+		private long getLong() throws IOException {
+			return (long) getInt() << 32 | getInt() & 0xFFFFFFFFL;
+		}
+
+		private byte[] getBytes(int length) throws IOException {
+			if (length > data.length - pos) {
+				throw new IOException("Game recording is cut short");
+			}
+			pos += length;
+			return Arrays.copyOfRange(data, pos - length, pos);
+		}
+
+		private int checkCount(int count) throws IOException {
+			if (count > data.length - pos) {
+				throw new IOException("Game recording is cut short");
+			}
+			return count;
+		}
+
+		private int add(int total, int value) throws IOException {
+			if (total > Integer.MAX_VALUE - value) {
+				throw new IOException("Invalid number in game recording");
+			}
+			return total + value;
+		}
+
+		private boolean atEnd() {
+			return pos == data.length;
+		}
+	}
+}
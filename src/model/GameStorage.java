@@ -0,0 +1,164 @@
+package model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Runs saving, loading and other disk operations on a background thread, so
+ * that a slow disk or a large save never holds up the thread that draws the
+ * game. Every operation returns a CompletableFuture that is completed on a
+ * callback executor, such as Platform::runLater for the JavaFX thread, so
+ * whatever is chained to it may safely change the user interface. Operations
+ * run one at a time in the order they were submitted, so a save is never
+ * overtaken by a later save of the same file.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class GameStorage {
+
+	// Progress is reported again once it has grown by this much
+	private static final double PROGRESS_STEP = 0.01;
+
+	private ExecutorService io;
+	private Executor callbacks;
+
+	/**
+	 * Constructs a storage with its own background thread.
+	 * 
+	 * @param callbacks The executor that completes the returned futures
+	 */
+	public GameStorage(Executor callbacks) {
+		this.callbacks = callbacks;
+		this.io = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "game-io");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the executor of the background thread, for work that does not need
+	 * a future, such as the checkpoints of a MoveJournal.
+	 * 
+	 * @return The executor of the background thread
+	 */
+	public Executor getExecutor() {
+		return io;
+	}
+
+	/**
+	 * Runs an operation on the background thread.
+	 * 
+	 * @param <T>  The type of the result
+	 * @param task The operation
+	 * @return A future completed on the callback executor with the result of the
+	 *         operation, or with the exception it threw
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		io.execute(() -> {
+			try {
+				T value = task.call();
+				callbacks.execute(() -> result.complete(value));
+			} catch (Throwable e) {
+				callbacks.execute(() -> result.completeExceptionally(e));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Runs an operation without a result on the background thread.
+	 * 
+	 * @param task The operation
+	 * @return A future completed on the callback executor when the operation is
+	 *         done
+	 */
+	public CompletableFuture<Void> run(Runnable task) {
+		return submit(() -> {
+			task.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Loads a saved game on the background thread, and opens its journal so that
+	 * new moves are saved too. See MoveJournal.recover(). If the game has a
+	 * recording next to its save file, the recording goes on too.
+	 * 
+	 * @param saveFile The file that holds the checkpoint
+	 * @param progress Receives the fraction (0 to 1) of the game loaded so far on
+	 *                 the callback executor, or null
+	 * @return A future completed with the game, whose journal is set
+	 */
+	public CompletableFuture<MinesweeperModel> load(String saveFile, DoubleConsumer progress) {
+		DoubleConsumer report = progress == null ? p -> {
+		} : throttle(progress);
+		return submit(() -> {
+			MinesweeperModel model = MoveJournal.recover(saveFile, report);
+			MoveJournal journal = new MoveJournal(model, saveFile);
+			journal.setExecutor(io);
+			model.setJournal(journal);
+			return model;
+		});
+	}
+
+	/**
+	 * Saves a copy of a board on the background thread. The board may go on
+	 * changing while it is saved.
+	 * 
+	 * @param board The board to save
+	 * @param time  The time of the game
+	 * @param name  The name of the player
+	 * @param fn    The name of the file to save to
+	 * @return A future completed when the board is saved
+	 */
+	public CompletableFuture<Void> save(MinesweeperBoard board, double time, String name, String fn) {
+		MinesweeperBoard copy = new MinesweeperBoard(board);
+		return submit(() -> {
+			copy.writeBoard(time, name, fn);
+			return null;
+		});
+	}
+
+	/**
+	 * Finishes the operations already submitted, waiting at most a few seconds,
+	 * and stops the background thread.
+	 */
+	public void shutdown() {
+		io.shutdown();
+		try {
+			io.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Passes progress on to the callback executor, skipping steps smaller than
+	 * PROGRESS_STEP and any step reported while the last one is still waiting to
+	 * be delivered.
+	 * 
+	 * @param progress The receiver of the progress
+	 * @return A receiver that may be called from the background thread
+	 */
+	private DoubleConsumer throttle(DoubleConsumer progress) {
+		AtomicBoolean waiting = new AtomicBoolean();
+		double[] last = { -1 };
+		return fraction -> {
+			if ((fraction - last[0] >= PROGRESS_STEP || fraction >= 1) && waiting.compareAndSet(false, true)) {
+				last[0] = fraction;
+				callbacks.execute(() -> {
+					waiting.set(false);
+					progress.accept(fraction);
+				});
+			}
+		};
+	}
+}
@@ -1,32 +1,60 @@
 package model;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Scanner;
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- *  This class is used to read and write to a text file that 
+ *  This class is used to read and write to a text file that
  *  will be used to store the top 10 scores for the minesweeper
  *  game.
+ * 
+ *  Scores are stored in two files: a snapshot holding the top 10
+ *  (leaderboard.txt) and an append-only log of the scores added
+ *  since the snapshot was written (leaderboard.log). Adding a score
+ *  appends one line to the log, and once the log holds COMPACT_AFTER
+ *  lines the snapshot is rewritten and the log emptied. So startup
+ *  reads at most 10 + COMPACT_AFTER lines, however many games were
+ *  played. In memory the top 10 are kept in a bounded heap whose
+ *  root is the worst score kept, so a score is added in O(log K).
+ * 
+ *  Several threads and several processes may share the files. Every
+ *  change holds a lock on leaderboard.lock, first reads the scores
+ *  other processes logged since, and is forced to disk before the
+ *  lock is released. The snapshot is replaced by an atomic rename.
+ *  Both files start with a generation line ("# 3"): the snapshot
+ *  holds every score of the logs up to its generation, so a log is
+ *  never counted twice, even if a process stops between writing the
+ *  snapshot and emptying the log. Reading a rank never blocks.
  * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
  */
 public class Leaderboard {
 	/**
 	 * This class creates a player object that will be used
-	 * to help store a players name and score into the 
+	 * to help store a players name and score into the
 	 * leaderboard.
 	 * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
-	 *
+	 * 
 	 */
 	public class Player {
 		private String name;
 		private Integer score;
+		// Order in which the score was logged, earlier scores win ties
+		private long order;
 		/**
 		 * Constructor to create a player object with a name
 		 * and a score
@@ -36,6 +64,7 @@ public class Leaderboard {
 		public Player(String name, Integer score) {
 			this.name = name;
 			this.score = score;
+			this.order = nextOrder++;
 		}
 		/**
 		 * Getter method to return the name from a player.
@@ -53,50 +82,89 @@ public class Leaderboard {
 		}
 
 	}
-	
+
 	/**
 	 * This class creates a comparator for the player objects.
 	 * This allows collection methods to be used with the leaderboard
-	 * allowing it to be sorted.
+	 * allowing it to be sorted. Players with the same score are
+	 * ordered by who got it first.
 	 * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
-	 *
+	 * 
 	 */
 	public class playerSorter implements Comparator<Player> {
 
 		@Override
 		public int compare(Player o1, Player o2) {
-			// TODO Auto-generated method stub
-			return o1.getScore().compareTo(o2.getScore());
+			int result = o1.getScore().compareTo(o2.getScore());
+			return result != 0 ? result : Long.compare(o1.order, o2.order);
 		}
 
 	}
-	
-	// Arraylist to store the players on the leaderboard
-	private ArrayList<Player> leaderboard = new ArrayList<Player>();
-	
+
+	// Number of players kept on the leaderboard
+	public static final int SIZE = 10;
+	// Number of logged scores after which the snapshot is rewritten
+	private static final int COMPACT_AFTER = 100;
+	// One lock object per lock file, since a process can only lock a file once
+	private static final ConcurrentHashMap<String, Object> MUTEXES = new ConcurrentHashMap<String, Object>();
+
+	// Top players, with the worst score kept at the root
+	private PriorityQueue<Player> leaderboard = new PriorityQueue<Player>(SIZE + 1,
+			Collections.reverseOrder(new playerSorter()));
+	// Players sorted best first, replaced after every change
+	private volatile Player[] ranking = new Player[0];
+	// Snapshot of the top players, log of the scores added since, and lock
+	private File file;
+	private File log;
+	private File lock;
+	private Object mutex;
+	// Generations of the snapshot and log that were read, and how far
+	private long snapshotGeneration;
+	private long logGeneration;
+	private long logOffset;
+	private int logged;
+	private long nextOrder;
+
 	/**
 	 * Constructor method that reads in the text file and adds each
 	 * player to the arraylist.
 	 * @throws IOException
 	 */
 	public Leaderboard() throws IOException {
-		File file = new File("leaderboard/leaderboard.txt");
-		// Creates new file if one does not exist
-		if(!file.exists()) {
-			file.createNewFile();
-		}
-		// Reads file and adds players to array list
-		Scanner readFile = new Scanner(file);
-		while(readFile.hasNextLine()) {
-			String line = readFile.nextLine();
-			String[] lineArray = line.split(" ");
-			Player newPlayer = new Player(lineArray[0], Integer.parseInt(lineArray[1]));
-			leaderboard.add(newPlayer);
+		this("leaderboard/leaderboard.txt");
+	}
+
+	/**
+	 * Constructor method that reads in a given snapshot file and
+	 * the log next to it, and adds each player to the leaderboard.
+	 * @param fn: String that is the name of the snapshot file
+	 * @throws IOException
+	 */
+	public Leaderboard(String fn) throws IOException {
+		String base = fn.endsWith(".txt") ? fn.substring(0, fn.length() - 4) : fn;
+		file = new File(fn);
+		log = new File(base + ".log");
+		lock = new File(base + ".lock");
+		mutex = MUTEXES.computeIfAbsent(lock.getCanonicalPath(), path -> new Object());
+		synchronized (mutex) {
+			FileLock fileLock = lock();
+			try {
+				// Creates new file if one does not exist
+				if(!file.exists()) {
+					file.createNewFile();
+				}
+				if(reload()) {
+					// Older versions appended the whole leaderboard on every win
+					compact();
+				} else if(logged >= COMPACT_AFTER) {
+					compact();
+				}
+			} finally {
+				unlock(fileLock);
+			}
 		}
-		leaderboard.sort(new playerSorter());
-		readFile.close();
 	}
-	
+
 	/**
 	 * Getter method to return the name of a player at a given
 	 * rank.
@@ -104,12 +172,13 @@ public class Leaderboard {
 	 * @return String that is the name of the player
 	 */
 	public String getName(int rank) {
-		if(rank > leaderboard.size()) {
+		Player[] players = ranking;
+		if(rank > players.length) {
 			return "";
 		}
-		return leaderboard.get(rank-1).getName();
+		return players[rank-1].getName();
 	}
-	
+
 	/**
 	 * Getter method to return the score of a player at a given
 	 * rank.
@@ -117,43 +186,333 @@ public class Leaderboard {
 	 * @return int that is the score of the player
 	 */
 	public Integer getScore(int rank) {
-		if(rank > leaderboard.size()) {
+		Player[] players = ranking;
+		if(rank > players.length) {
 			return 0;
 		}
-		return leaderboard.get(rank-1).getScore();
+		return players[rank-1].getScore();
 	}
-	
+
 	/**
-	 * This method adds a players score to the text file and 
-	 * sorts the players. It will rewrite the entire text file and
-	 * maintain only 10 players stored at a time.
+	 * This method adds a players score to the leaderboard. The
+	 * score is appended to the log, and the snapshot is rewritten
+	 * once the log has grown long enough.
 	 * @param name: String that is the new players name
 	 * @param score: int that is the new players score
 	 * @throws IOException
 	 */
 	public void addScore(String name, int score) throws IOException {
-		// If no name was given
-		if (name.isEmpty()) {
-			name = "Anon.";
-		}
-		// Create player object
-		Player newScore = new Player(name, score);
-		// Adds and sorts leaderboard
-		leaderboard.add(newScore);
-		leaderboard.sort(new playerSorter());
-		if(leaderboard.size() > 10)
-			leaderboard.remove(leaderboard.size()-1);
-		// Writes players to a new file
-		File file = new File("leaderboard/leaderboard.txt");
-		BufferedWriter writer = new BufferedWriter(new FileWriter(file, true));
-		for(Player players:leaderboard) {
-			String playerScore = " ";
-			if(players.getScore() > 0)
-				playerScore = String.valueOf(players.getScore());
-			String line = (players.getName() + " " + playerScore);
-			writer.write(line);
-			writer.newLine();
-		}
-		writer.close();
+		addScores(new String[] { name }, new int[] { score });
+	}
+
+	/**
+	 * This method adds several scores at once, with a single write
+	 * and a single flush to disk.
+	 * @param names: String array of the players names
+	 * @param scores: int array of the players scores
+	 * @throws IOException
+	 */
+	public void addScores(String[] names, int[] scores) throws IOException {
+		synchronized (mutex) {
+			FileLock fileLock = lock();
+			try {
+				catchUp();
+				if(logGeneration <= snapshotGeneration || !log.exists()) {
+					startLog(snapshotGeneration + 1);
+				}
+				StringBuilder lines = new StringBuilder();
+				ArrayList<Player> added = new ArrayList<Player>();
+				for(int i = 0; i < names.length; i++) {
+					// If no name was given
+					String name = names[i].isEmpty() ? "Anon." : names[i];
+					Player newScore = new Player(name, scores[i]);
+					lines.append(format(newScore)).append('\n');
+					added.add(newScore);
+				}
+				byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+				FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.WRITE);
+				try {
+					channel.write(ByteBuffer.wrap(bytes), channel.size());
+					channel.force(false);
+				} finally {
+					channel.close();
+				}
+				logOffset += bytes.length;
+				logged += added.size();
+				for(Player player : added) {
+					offer(player);
+				}
+				publish();
+				if(logged >= COMPACT_AFTER) {
+					compact();
+				}
+			} finally {
+				unlock(fileLock);
+			}
+		}
+	}
+
+	/**
+	 * Reads the scores other processes added since the leaderboard
+	 * was read.
+	 * @throws IOException
+	 */
+	public void refresh() throws IOException {
+		synchronized (mutex) {
+			FileLock fileLock = lock();
+			try {
+				catchUp();
+			} finally {
+				unlock(fileLock);
+			}
+		}
+	}
+
+	/**
+	 * Reads the scores logged since the last read, or reads both
+	 * files again if another process rewrote them. Must hold the lock.
+	 * @throws IOException
+	 */
+	private void catchUp() throws IOException {
+		ArrayList<String> snapshotHeader = readLines(file, 0, true);
+		ArrayList<String> logHeader = log.exists() ? readLines(log, 0, true) : new ArrayList<String>();
+		if(generation(snapshotHeader, 0) != snapshotGeneration || !log.exists()
+				|| generation(logHeader, 1) != logGeneration || log.length() < logOffset) {
+			reload();
+			return;
+		}
+		for(String line : readLines(log, logOffset, false)) {
+			offer(parse(line));
+			logged++;
+		}
+		logOffset = log.length();
+		publish();
+	}
+
+	/**
+	 * Reads the snapshot and the log from the start. Must hold the lock.
+	 * @return boolean that is true if the snapshot was written by an
+	 * older version and should be compacted
+	 * @throws IOException
+	 */
+	private boolean reload() throws IOException {
+		leaderboard.clear();
+		ArrayList<String> snapshot = readLines(file, 0, false);
+		snapshotGeneration = generation(snapshot, 0);
+		boolean legacy = snapshot.size() > SIZE + 1;
+		if(legacy) {
+			snapshot = new ArrayList<String>(new LinkedHashSet<String>(snapshot));
+		}
+		for(String line : snapshot) {
+			if(!isHeader(line)) {
+				offer(parse(line));
+			}
+		}
+		logged = 0;
+		logOffset = 0;
+		logGeneration = snapshotGeneration;
+		if(log.exists()) {
+			ArrayList<String> logLines = readLines(log, 0, false);
+			logGeneration = generation(logLines, 1);
+			// A log the snapshot already holds is skipped
+			if(logGeneration > snapshotGeneration) {
+				for(String line : logLines) {
+					if(!isHeader(line)) {
+						offer(parse(line));
+						logged++;
+					}
+				}
+			}
+			logOffset = log.length();
+		}
+		publish();
+		return legacy;
+	}
+
+	/**
+	 * Writes the top players to a new snapshot, replaces the old
+	 * snapshot with it and starts a new log. Must hold the lock.
+	 * @throws IOException
+	 */
+	private void compact() throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		StringBuilder lines = new StringBuilder("# " + logGeneration + "\n");
+		for(Player player : ranking) {
+			lines.append(format(player)).append('\n');
+		}
+		write(temp, lines.toString());
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		snapshotGeneration = logGeneration;
+		startLog(logGeneration + 1);
+	}
+
+	/**
+	 * Empties the log and starts it with a generation line. Must
+	 * hold the lock.
+	 * @param generation: long that is the generation of the new log
+	 * @throws IOException
+	 */
+	private void startLog(long generation) throws IOException {
+		write(log, "# " + generation + "\n");
+		logGeneration = generation;
+		logOffset = log.length();
+		logged = 0;
+	}
+
+	/**
+	 * Adds a player to the heap, removing the worst player if
+	 * there are more than SIZE.
+	 * @param player: Player to add
+	 */
+	private void offer(Player player) {
+		leaderboard.add(player);
+		if(leaderboard.size() > SIZE) {
+			leaderboard.poll();
+		}
+	}
+
+	/**
+	 * Sorts the players of the heap and makes them visible to
+	 * readers.
+	 */
+	private void publish() {
+		Player[] players = leaderboard.toArray(new Player[0]);
+		Arrays.sort(players, new playerSorter());
+		ranking = players;
+	}
+
+	/**
+	 * Locks the lock file against other processes.
+	 * @return FileLock to release with unlock()
+	 * @throws IOException
+	 */
+	private FileLock lock() throws IOException {
+		if(lock.getParentFile() != null) {
+			lock.getParentFile().mkdirs();
+		}
+		FileChannel channel = FileChannel.open(lock.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			return channel.lock();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases a lock taken with lock().
+	 * @param fileLock: FileLock to release
+	 * @throws IOException
+	 */
+	private static void unlock(FileLock fileLock) throws IOException {
+		fileLock.release();
+		fileLock.channel().close();
+	}
+
+	/**
+	 * Replaces the contents of a file and forces them to disk.
+	 * @param target: File to write
+	 * @param text: String to write
+	 * @throws IOException
+	 */
+	private static void write(File target, String text) throws IOException {
+		FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads the complete lines of a file from an offset, skipping
+	 * empty lines.
+	 * @param source: File to read
+	 * @param from: long that is the byte offset to start at
+	 * @param firstOnly: boolean that is true to read only the first line
+	 * @return ArrayList of the lines
+	 * @throws IOException
+	 */
+	private static ArrayList<String> readLines(File source, long from, boolean firstOnly) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+		try {
+			long size = firstOnly ? Math.min(channel.size(), 64) : channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, size - from));
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer, from + buffer.position()) < 0) {
+					break;
+				}
+			}
+			String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+			for(String line : text.split("\n")) {
+				line = line.trim();
+				if(!line.isEmpty()) {
+					lines.add(line);
+				}
+				if(firstOnly) {
+					break;
+				}
+			}
+		} finally {
+			channel.close();
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns whether a line is a generation line.
+	 * @param line: String to check
+	 * @return boolean that is true for "# " followed by a number
+	 */
+	private static boolean isHeader(String line) {
+		return line.matches("# [0-9]+");
+	}
+
+	/**
+	 * Returns the generation of a file from its lines.
+	 * @param lines: ArrayList of the lines of the file
+	 * @param fallback: long that is the generation of a file without
+	 * a generation line, written by an older version
+	 * @return long that is the generation
+	 */
+	private static long generation(ArrayList<String> lines, long fallback) {
+		if(lines.isEmpty() || !isHeader(lines.get(0))) {
+			return fallback;
+		}
+		return Long.parseLong(lines.get(0).substring(2));
+	}
+
+	/**
+	 * Parses a line of "name score". The name may contain spaces,
+	 * and a missing score counts as 0.
+	 * @param line: String to parse
+	 * @return Player of the line
+	 */
+	private Player parse(String line) {
+		int space = line.lastIndexOf(' ');
+		if(space < 0) {
+			return new Player(line, 0);
+		}
+		try {
+			return new Player(line.substring(0, space), Integer.parseInt(line.substring(space + 1)));
+		} catch (NumberFormatException e) {
+			return new Player(line, 0);
+		}
+	}
+
+	/**
+	 * Formats a player as a line of "name score".
+	 * @param player: Player to format
+	 * @return String of the line
+	 */
+	private static String format(Player player) {
+		return player.getName() + " " + player.getScore();
 	}
 }
@@ -0,0 +1,276 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds scores to a Leaderboard from a background thread, so that a finished
+ * game never waits for the disk. Scores submitted close together are written
+ * as one batch: the thread waits a few milliseconds after the first score for
+ * more to arrive, and then adds all of them with a single write and a single
+ * flush to disk. Any number of threads may submit scores at once. If the
+ * service has a ReplayVerifier, every score must come with the recording of
+ * its game, and each batch is replayed before it is written so that only
+ * plausible scores reach the leaderboard.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class LeaderboardService {
+
+	/**
+	 * A score waiting to be written, and the future that is completed once it is.
+	 */
+	private static class Submission {
+		private String name;
+		private int score;
+		private GameRecording recording;
+		private CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+		private Submission(String name, int score, GameRecording recording) {
+			this.name = name;
+			this.score = score;
+			this.recording = recording;
+		}
+	}
+
+	// Largest number of scores written in one batch
+	private static final int MAX_BATCH = 1000;
+	// Queued by stop() to end the background thread
+	private static final Submission STOP = new Submission(null, 0, null);
+
+	private Leaderboard leaderboard;
+	private ReplayVerifier verifier;
+	private long lingerMillis;
+	private LinkedBlockingQueue<Submission> queue = new LinkedBlockingQueue<Submission>();
+	private Thread worker;
+	private long batches;
+
+	/**
+	 * Constructs a service that waits 5 milliseconds for more scores before
+	 * writing a batch.
+	 * 
+	 * @param leaderboard The leaderboard to add scores to
+	 */
+	public LeaderboardService(Leaderboard leaderboard) {
+		this(leaderboard, 5);
+	}
+
+	/**
+	 * Constructs a service.
+	 * 
+	 * @param leaderboard  The leaderboard to add scores to
+	 * @param lingerMillis How long to wait for more scores after the first one
+	 *                     of a batch
+	 */
+	public LeaderboardService(Leaderboard leaderboard, long lingerMillis) {
+		this.leaderboard = leaderboard;
+		this.lingerMillis = lingerMillis;
+	}
+
+	/**
+	 * Returns the leaderboard scores are added to. Reading it never waits for a
+	 * batch being written.
+	 * 
+	 * @return The leaderboard
+	 */
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}
+
+	/**
+	 * Makes the service check every score by replaying the recording of its game
+	 * before adding it. Call before start().
+	 * 
+	 * @param verifier A verifier, or null to accept every score
+	 */
+	public void setVerifier(ReplayVerifier verifier) {
+		this.verifier = verifier;
+	}
+
+	/**
+	 * Returns how many batches have been written.
+	 * 
+	 * @return The number of batches
+	 */
+	public synchronized long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Starts the background thread that writes scores.
+	 */
+	public synchronized void start() {
+		if (worker != null) {
+			return;
+		}
+		worker = new Thread(this::write, "leaderboard");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Writes the scores already submitted and stops the background thread.
+	 */
+	public void stop() {
+		Thread stopping;
+		synchronized (this) {
+			stopping = worker;
+			worker = null;
+		}
+		if (stopping == null) {
+			return;
+		}
+		queue.add(STOP);
+		try {
+			stopping.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Submits a score to be added to the leaderboard. If the service is not
+	 * started, the score is added right away by the calling thread.
+	 * 
+	 * @param name  The player's name
+	 * @param score The player's score
+	 * @return A future that is completed once the score is on disk, or completed
+	 *         exceptionally if it could not be written
+	 */
+	public CompletableFuture<Void> submit(String name, int score) {
+		return submit(name, score, null);
+	}
+
+	/**
+	 * Submits a score together with the recording of its game, which is replayed
+	 * to check the score if the service has a verifier. If the service is not
+	 * started, the score is checked and added right away by the calling thread.
+	 * 
+	 * @param name      The player's name
+	 * @param score     The player's score
+	 * @param recording The recording of the game, or null if it has none
+	 * @return A future that is completed once the score is on disk, or completed
+	 *         exceptionally if it was rejected or could not be written
+	 */
+	public CompletableFuture<Void> submit(String name, int score, GameRecording recording) {
+		Submission submission = new Submission(name, score, recording);
+		synchronized (this) {
+			if (worker != null) {
+				queue.add(submission);
+				return submission.done;
+			}
+		}
+		ArrayList<Submission> batch = new ArrayList<Submission>();
+		batch.add(submission);
+		write(batch);
+		return submission.done;
+	}
+
+	/**
+	 * Writes batches of scores until stop() is called.
+	 */
+	private void write() {
+		ArrayList<Submission> batch = new ArrayList<Submission>();
+		boolean stopping = false;
+		while (!stopping) {
+			try {
+				Submission first = queue.take();
+				long deadline = System.nanoTime() + lingerMillis * 1_000_000L;
+				for (Submission next = first; next != null; ) {
+					if (next == STOP) {
+						stopping = true;
+						break;
+					}
+					batch.add(next);
+					if (batch.size() == MAX_BATCH) {
+						break;
+					}
+					next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				}
+			} catch (InterruptedException e) {
+				stopping = true;
+			}
+			if (stopping) {
+				queue.drainTo(batch);
+				batch.remove(STOP);
+			}
+			if (!batch.isEmpty()) {
+				write(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Checks a batch of scores, adds the plausible ones to the leaderboard and
+	 * completes their futures. If checking or adding fails unexpectedly, the
+	 * futures of the batch fail with the error, and later batches are still
+	 * written.
+	 * 
+	 * @param batch The scores to add
+	 */
+	private void write(ArrayList<Submission> batch) {
+		try {
+			verifyAndAdd(batch);
+		} catch (RuntimeException e) {
+			// Futures that were already completed are left as they are
+			for (Submission submission : batch) {
+				submission.done.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Checks a batch of scores, adds the plausible ones to the leaderboard and
+	 * completes their futures.
+	 * 
+	 * @param batch The scores to add
+	 */
+	private void verifyAndAdd(ArrayList<Submission> batch) {
+		if (verifier != null) {
+			GameRecording[] recordings = new GameRecording[batch.size()];
+			int[] scores = new int[batch.size()];
+			for (int i = 0; i < batch.size(); i++) {
+				recordings[i] = batch.get(i).recording;
+				scores[i] = batch.get(i).score;
+			}
+			ReplayVerifier.Verdict[] verdicts = verifier.verifyAll(recordings, scores);
+			ArrayList<Submission> accepted = new ArrayList<Submission>();
+			for (int i = 0; i < verdicts.length; i++) {
+				Submission submission = batch.get(i);
+				if (verdicts[i] == ReplayVerifier.Verdict.VALID) {
+					accepted.add(submission);
+				} else {
+					submission.done.completeExceptionally(new IllegalArgumentException(
+							"Score " + submission.score + " of " + submission.name + " rejected: " + verdicts[i]));
+				}
+			}
+			if (accepted.isEmpty()) {
+				return;
+			}
+			batch = accepted;
+		}
+		String[] names = new String[batch.size()];
+		int[] scores = new int[batch.size()];
+		for (int i = 0; i < batch.size(); i++) {
+			names[i] = batch.get(i).name;
+			scores[i] = batch.get(i).score;
+		}
+		try {
+			leaderboard.addScores(names, scores);
+			synchronized (this) {
+				batches++;
+			}
+			for (Submission submission : batch) {
+				submission.done.complete(null);
+			}
+		} catch (IOException e) {
+			for (Submission submission : batch) {
+				submission.done.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -2,11 +2,23 @@ package model;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.DoubleConsumer;
+import java.util.zip.CRC32;
 
 /**
  * A class representing a board containing tiles for minesweeper. Supports
@@ -14,27 +26,124 @@ import java.util.Scanner;
  * 
  * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
  */
-public class MinesweeperBoard implements Serializable {
+public class MinesweeperBoard {
 
-	private Tile[][] board;
-	private int size;
+	// Bit layout of a packed cell. The low nibble holds the number of adjacent
+	// mines (0-8), the high nibble holds the state flags of the tile.
+	private static final int COUNT_MASK = 0x0F;
+	private static final int MINE = 0x10;
+	private static final int COVERED = 0x20;
+	private static final int FLAGGED = 0x40;
+	private static final int IN_BOUNDS = 0x80;
+
+	// One byte per tile, stored row by row (index = r * cols + c)
+	private byte[] cells;
+	private int rows;
+	private int cols;
 	public double time;
 	public int bombCount;
 	public String playerName;
-	static final long serialVersionUID = 1L;
+	// Reads and writes eight cells at once, and a 1 in every byte of a long
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final long EVERY_BYTE = 0x0101010101010101L;
+	// Header of a save file: magic number, version, rows, columns, mines, tripped
+	// mines, time and the length of the player's name, followed by the name and
+	// a checksum
+	private static final int SAVE_MAGIC = 0x4D535356;
+	private static final short SAVE_VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 2 + 4 * 4 + 8 + 2 + 4;
+	private static final int NO_NAME = 0xFFFF;
+	// Number of bytes of a save file read at a time
+	private static final int READ_CHUNK = 4 << 20;
+	// A saved tile is the high four bits of its cell, two tiles to a byte
+	private static final int SAVED_MINE = MINE >> 4;
+	private static final int SAVED_FLAGGED = FLAGGED >> 4;
+	private static final int SAVED_IN_BOUNDS = IN_BOUNDS >> 4;
+	private static final long EVERY_NIBBLE = 0x1111111111111111L;
+	private static final VarHandle SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	// The two cells that each saved byte unpacks to
+	private static final short[] UNPACK = new short[256];
+	static {
+		for (int b = 0; b < 256; b++) {
+			UNPACK[b] = (short) (((b << 4) & 0xF0) | ((b & 0xF0) << 8));
+		}
+	}
+	// Live counts kept up to date as tiles change, so that the state of the game
+	// can be checked without scanning the board
+	private int numCovered;
+	private int numFlagged;
+	private int numTripped;
+	// Indices of the in bounds tiles in row order, or null when every tile is in
+	// bounds. Rebuilt when first needed after the shape changes.
+	private int[] shapeCells;
+	private int shapeSize;
+	private boolean shapeIndexed;
+	// Checksum of the file the board was last saved to or loaded from
+	private int savedChecksum;
 
 	/**
-	 * Constructs a board given a size.
+	 * Constructs a square board given a size.
 	 * 
 	 * @param size The size (length and height) of the board.
 	 */
 	public MinesweeperBoard(int size) {
-		this.size = size;
-		this.board = new Tile[size][size];
+		this(size, size);
+	}
+
+	/**
+	 * Constructs a rectangular board given its dimensions.
+	 * 
+	 * @param rows The number of rows (height) of the board
+	 * @param cols The number of columns (width) of the board
+	 */
+	public MinesweeperBoard(int rows, int cols) {
+		this.rows = rows;
+		this.cols = cols;
+		this.cells = new byte[Math.multiplyExact(rows, cols)];
 		this.bombCount = 20;
+		this.numCovered = cells.length;
 		fillBoard();
 	}
 
+	/**
+	 * Constructs a copy of another board, including its shape, mines and the state
+	 * of every tile.
+	 * 
+	 * @param other The board to copy
+	 */
+	public MinesweeperBoard(MinesweeperBoard other) {
+		this.rows = other.rows;
+		this.cols = other.cols;
+		this.cells = other.cells.clone();
+		this.time = other.time;
+		this.bombCount = other.bombCount;
+		this.playerName = other.playerName;
+		this.numCovered = other.numCovered;
+		this.numFlagged = other.numFlagged;
+		this.numTripped = other.numTripped;
+		// The list of in bounds tiles is replaced rather than changed, so it can be
+		// shared until either board changes its shape
+		this.shapeCells = other.shapeCells;
+		this.shapeSize = other.shapeSize;
+		this.shapeIndexed = other.shapeIndexed;
+	}
+
+	/**
+	 * Constructs a board sized to fit a shape file and loads the shape into it. The
+	 * number of rows is the number of lines after the first, and the number of
+	 * columns is the length of the first of those lines. See loadShapeFromFile()
+	 * for the format of the file. Falls back to a 13 by 13 board if the file
+	 * cannot be read.
+	 * 
+	 * @param fn The filename to a shape file
+	 */
+	public MinesweeperBoard(String fn) {
+		this(shapeRows(fn), shapeCols(fn));
+		loadShapeFromFile(fn);
+	}
+
 	/**
 	 * Loads a shape into the board given a file containing "o" indicating in bounds
 	 * tiles and "_" indicating out of bound tiles, with the first line indicating
@@ -46,8 +155,8 @@ public class MinesweeperBoard implements Serializable {
 	 * that contains an "o" or "_" for every Tile within the grid, indicating in
 	 * bounds or out of bounds respectively.
 	 * 
-	 * The contents of the file must match the dimensions of the board. Does nothing
-	 * if the file does not exist.
+	 * The rows of the file must match the width of the board, and rows beyond the
+	 * height of the board are ignored. Does nothing if the file does not exist.
 	 * 
 	 * @param fn The filename to a shape file
 	 */
@@ -62,10 +171,10 @@ public class MinesweeperBoard implements Serializable {
 			while (scanner.hasNext()) {
 				line = scanner.nextLine();
 				String[] row = line.split(" ");
-				if (row.length != size) {
+				if (row.length != cols || r >= rows) {
 					break;
 				}
-				for (int c = 0; c < size; c++) {
+				for (int c = 0; c < cols; c++) {
 					if (row[c].equals("o")) {
 						setBounds(r, c, true);
 					} else if (row[c].equals("_")) {
@@ -83,44 +192,190 @@ public class MinesweeperBoard implements Serializable {
 	}
 
 	/**
-	 * Returns the tile at a given coordinate.
+	 * Returns the tile at a given coordinate. The tile is a snapshot of the packed
+	 * cell, so changing its fields does not change the board; use the setters on
+	 * this class instead.
 	 * 
 	 * @param r A row coordinate
 	 * @param c A column coordinate
 	 * @return A Tile object
 	 */
 	public Tile getTile(int r, int c) {
-		return board[r][c];
+		int cell = cells[r * cols + c];
+		Tile tile = new Tile((cell & IN_BOUNDS) != 0);
+		tile.isCovered = (cell & COVERED) != 0;
+		tile.isFlagged = (cell & FLAGGED) != 0;
+		tile.hasMine = (cell & MINE) != 0;
+		tile.displayNum = cell & COUNT_MASK;
+		return tile;
 	}
 
 	/**
-	 * Returns the size of the board.
+	 * Returns the size of the board. For rectangular boards this is the number of
+	 * rows; use getRows() and getCols() when the board may not be square.
 	 * 
 	 * @return Size of board
 	 */
 	public int getSize() {
-		return size;
+		return rows;
+	}
+
+	/**
+	 * Returns the number of rows (height) of the board.
+	 * 
+	 * @return Number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the number of columns (width) of the board.
+	 * 
+	 * @return Number of columns
+	 */
+	public int getCols() {
+		return cols;
 	}
 
 	/**
-	 * Places or removes a mine at a given coordinate in the board.
+	 * Returns the number of tiles that are part of the board.
+	 * 
+	 * @return Number of in bounds tiles
+	 */
+	public int numInBounds() {
+		indexShape();
+		return shapeSize;
+	}
+
+	/**
+	 * Returns the index (row * cols + col) of the k-th in bounds tile, counting in
+	 * row order.
+	 * 
+	 * @param k A position between 0 and numInBounds() - 1
+	 * @return The index of the tile
+	 */
+	public int inBoundsCell(int k) {
+		indexShape();
+		return shapeCells == null ? k : shapeCells[k];
+	}
+
+	/**
+	 * Returns the position of an in bounds tile among all in bounds tiles in row
+	 * order. This is the inverse of inBoundsCell().
+	 * 
+	 * @param cell The index (row * cols + col) of an in bounds tile
+	 * @return The position of the tile
+	 */
+	public int inBoundsPosition(int cell) {
+		indexShape();
+		return shapeCells == null ? cell : Arrays.binarySearch(shapeCells, cell);
+	}
+
+	/**
+	 * Returns whether the tile at a given coordinate contains a mine.
+	 * 
+	 * @param r A row coordinate
+	 * @param c A column coordinate
+	 * @return True if the tile has a mine
+	 */
+	public boolean hasMine(int r, int c) {
+		return (cells[r * cols + c] & MINE) != 0;
+	}
+
+	/**
+	 * Returns whether the tile at a given coordinate is still covered.
+	 * 
+	 * @param r A row coordinate
+	 * @param c A column coordinate
+	 * @return True if the tile is covered
+	 */
+	public boolean isCovered(int r, int c) {
+		return (cells[r * cols + c] & COVERED) != 0;
+	}
+
+	/**
+	 * Returns whether the tile at a given coordinate is flagged.
+	 * 
+	 * @param r A row coordinate
+	 * @param c A column coordinate
+	 * @return True if the tile is flagged
+	 */
+	public boolean isFlagged(int r, int c) {
+		return (cells[r * cols + c] & FLAGGED) != 0;
+	}
+
+	/**
+	 * Returns the number of mines adjacent to a tile, as displayed to the user.
+	 * 
+	 * @param r A row coordinate
+	 * @param c A column coordinate
+	 * @return The number of adjacent mines
+	 */
+	public int getDisplayNum(int r, int c) {
+		return cells[r * cols + c] & COUNT_MASK;
+	}
+
+	/**
+	 * Places or removes a mine at a given coordinate in the board. The display
+	 * numbers of the 8 adjacent tiles are kept up to date, so placing or removing a
+	 * mine costs the same no matter how large the board is.
 	 * 
 	 * @param r       A row coordinate
 	 * @param c       A column coordinate
 	 * @param hasMine Whether a mine should be placed (true) or removed (false)
 	 */
 	public void setMine(int r, int c, boolean hasMine) {
-		board[r][c].setHasMine(hasMine);
+		int i = r * cols + c;
+		if (((cells[i] & MINE) != 0) == hasMine) {
+			return;
+		}
+		setBit(i, MINE, hasMine);
+		// Counts stay within 0-8, so adding to the byte only changes the low nibble
+		int delta = hasMine ? 1 : -1;
+		for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1); nr++) {
+			for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, cols - 1); nc++) {
+				if (nr != r || nc != c) {
+					cells[nr * cols + nc] += delta;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places or removes a flag at a given coordinate in the board.
+	 * 
+	 * @param r       A row coordinate
+	 * @param c       A column coordinate
+	 * @param flagged Whether a flag should be placed (true) or removed (false)
+	 */
+	public void setFlagged(int r, int c, boolean flagged) {
+		int i = r * cols + c;
+		if (((cells[i] & FLAGGED) != 0) != flagged) {
+			numFlagged += flagged ? 1 : -1;
+			setBit(i, FLAGGED, flagged);
+		}
 	}
 
 	/**
-	 * Reveals a tile, possibly revealing a mine.
+	 * Reveals a tile, possibly revealing a mine. A revealed mine is counted as
+	 * tripped.
 	 * 
 	 * @param r A row coordinate
 	 * @param c A column coordinate
 	 */
 	public void reveal(int r, int c) {
-		board[r][c].isCovered = false;
+		int i = r * cols + c;
+		if ((cells[i] & COVERED) == 0) {
+			return;
+		}
+		cells[i] &= ~COVERED;
+		if ((cells[i] & IN_BOUNDS) != 0) {
+			numCovered--;
+		}
+		if ((cells[i] & MINE) != 0) {
+			numTripped++;
+		}
 	}
 
 	/**
@@ -131,62 +386,47 @@ public class MinesweeperBoard implements Serializable {
 	 * @param inBounds Whether the tile is in bounds (true) or out (false)
 	 */
 	public void setBounds(int r, int c, boolean inBounds) {
-		board[r][c].inBounds = inBounds;
+		int i = r * cols + c;
+		if (((cells[i] & IN_BOUNDS) != 0) != inBounds && (cells[i] & COVERED) != 0) {
+			numCovered += inBounds ? 1 : -1;
+		}
+		setBit(i, IN_BOUNDS, inBounds);
+		shapeIndexed = false;
 	}
 
 	/**
 	 * Sets the number indicating how many mines are adjacent to a tile to display
-	 * to the user.
+	 * to the user. setMine() already keeps this number up to date, so this is only
+	 * needed to override it.
 	 * 
 	 * @param r          A row coordinate
 	 * @param c          A column coordinate
 	 * @param displayNum The number of nearby mines to display
 	 */
 	public void setDisplayNum(int r, int c, Integer displayNum) {
-		board[r][c].displayNum = displayNum;
+		int i = r * cols + c;
+		cells[i] = (byte) ((cells[i] & ~COUNT_MASK) | (displayNum & COUNT_MASK));
 	}
 
 	/**
-	 * Returns the number of mines that are in the 8 adjacent squares of a tile.
+	 * Returns the number of mines that are in the 8 adjacent squares of a tile,
+	 * counted from the tiles themselves. getDisplayNum() returns the same number
+	 * without looking at the neighbors.
 	 * 
 	 * @param r A row coordinate
 	 * @param c A column coordinate
 	 * @return The number of mines
 	 */
 	public Integer numMinesNearby(int r, int c) {
-		Integer numMines = 0;
+		int numMines = 0;
 		// Check all eight directions
-		// Up
-		if (inBounds(r - 1, c) && board[r - 1][c].hasMine) {
-			numMines++;
-		}
-		// Down
-		if (inBounds(r + 1, c) && board[r + 1][c].hasMine) {
-			numMines++;
-		}
-		// Left
-		if (inBounds(r, c - 1) && board[r][c - 1].hasMine) {
-			numMines++;
-		}
-		// Right
-		if (inBounds(r, c + 1) && board[r][c + 1].hasMine) {
-			numMines++;
-		}
-		// Up left
-		if (inBounds(r - 1, c - 1) && board[r - 1][c - 1].hasMine) {
-			numMines++;
-		}
-		// Up right
-		if (inBounds(r - 1, c + 1) && board[r - 1][c + 1].hasMine) {
-			numMines++;
-		}
-		// Down left
-		if (inBounds(r + 1, c - 1) && board[r + 1][c - 1].hasMine) {
-			numMines++;
-		}
-		// Down right
-		if (inBounds(r + 1, c + 1) && board[r + 1][c + 1].hasMine) {
-			numMines++;
+		for (int dr = -1; dr <= 1; dr++) {
+			for (int dc = -1; dc <= 1; dc++) {
+				if ((dr != 0 || dc != 0) && inBounds(r + dr, c + dc)
+						&& (cells[(r + dr) * cols + c + dc] & MINE) != 0) {
+					numMines++;
+				}
+			}
 		}
 		return numMines;
 	}
@@ -198,24 +438,246 @@ public class MinesweeperBoard implements Serializable {
 	 * @param c A column coordinate
 	 * @return Where a coordinate is within the bounds of the board
 	 */
-	private boolean inBounds(int r, int c) {
-		if (r < 0 || r >= size || c < 0 || c >= size) {
+	public boolean inBounds(int r, int c) {
+		if (r < 0 || r >= rows || c < 0 || c >= cols) {
 			return false;
 		}
-		return board[r][c].inBounds;
+		return (cells[r * cols + c] & IN_BOUNDS) != 0;
 	}
 
 	/**
-	 * Fills the board with tiles. All tiles are in bounds by default.
+	 * Uncovers every mine on the board in a single pass over the cells. The mines
+	 * are not counted as tripped.
+	 * 
+	 * @return The indices (row * cols + col) of the mines that were uncovered
 	 */
-	private void fillBoard() {
-		for (int r = 0; r < size; r++) {
-			for (int c = 0; c < size; c++) {
-				board[r][c] = new Tile(true);
+	public int[] revealMines() {
+		int[] revealed = new int[bombCount];
+		int count = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if ((cells[i] & (MINE | COVERED)) == (MINE | COVERED)) {
+				cells[i] &= ~COVERED;
+				numCovered--;
+				if (count == revealed.length) {
+					revealed = Arrays.copyOf(revealed, count * 2 + 1);
+				}
+				revealed[count++] = i;
+			}
+		}
+		return Arrays.copyOf(revealed, count);
+	}
+
+	/**
+	 * Places or removes a mine without updating the display numbers of the
+	 * adjacent tiles. Used to place many mines at once, followed by a call to
+	 * recountMines().
+	 * 
+	 * @param cell    The index (row * cols + col) of a tile
+	 * @param hasMine Whether a mine should be placed (true) or removed (false)
+	 */
+	void setMineUncounted(int cell, boolean hasMine) {
+		setBit(cell, MINE, hasMine);
+	}
+
+	/**
+	 * Replaces the mines and display numbers of this board with those of another
+	 * board of the same shape. Flags and covered tiles are kept.
+	 * 
+	 * @param other A board with the same rows, columns and in bounds tiles
+	 */
+	void copyMines(MinesweeperBoard other) {
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = (byte) ((cells[i] & ~(MINE | COUNT_MASK)) | (other.cells[i] & (MINE | COUNT_MASK)));
+		}
+	}
+
+	/**
+	 * Places a mine on every in bounds tile without one and removes the mines that
+	 * were there, except on the given tiles which are left empty. Does not update
+	 * the display numbers; call recountMines() afterwards.
+	 * 
+	 * @param skip Indices (row * cols + col) of tiles to leave empty, in ascending
+	 *             order
+	 */
+	void invertMines(int[] skip) {
+		for (int i = 0, k = 0; i < cells.length; i++) {
+			if (k < skip.length && skip[k] == i) {
+				cells[i] &= ~MINE;
+				k++;
+			} else if ((cells[i] & IN_BOUNDS) != 0) {
+				cells[i] ^= MINE;
 			}
 		}
 	}
 
+	/**
+	 * Recomputes the display number of every tile in a single pass over the board.
+	 * For each row, the mines in every column of the 3 row band around it are
+	 * summed first, so each tile only adds up three column sums.
+	 */
+	public void recountMines() {
+		byte[] cells = this.cells;
+		int cols = this.cols;
+		byte[] band = new byte[cols + 2];
+		int wide = cols & ~7;
+		for (int r = 0; r < rows; r++) {
+			int row = r * cols;
+			int up = r > 0 ? row - cols : -1;
+			int down = r < rows - 1 ? row + cols : -1;
+			// Eight tiles are summed at once, one per byte of a long. No sum goes over
+			// 9, so the bytes never carry into each other.
+			int c = 0;
+			for (; c < wide; c += 8) {
+				long sum = mines((long) LONGS.get(cells, row + c));
+				if (up >= 0) {
+					sum += mines((long) LONGS.get(cells, up + c));
+				}
+				if (down >= 0) {
+					sum += mines((long) LONGS.get(cells, down + c));
+				}
+				LONGS.set(band, c + 1, sum);
+			}
+			for (; c < cols; c++) {
+				int sum = (cells[row + c] & MINE) >> 4;
+				if (up >= 0) {
+					sum += (cells[up + c] & MINE) >> 4;
+				}
+				if (down >= 0) {
+					sum += (cells[down + c] & MINE) >> 4;
+				}
+				band[c + 1] = (byte) sum;
+			}
+			c = 0;
+			for (; c < wide; c += 8) {
+				long packed = (long) LONGS.get(cells, row + c);
+				long count = (long) LONGS.get(band, c) + (long) LONGS.get(band, c + 1) + (long) LONGS.get(band, c + 2)
+						- mines(packed);
+				LONGS.set(cells, row + c, (packed & ~(COUNT_MASK * EVERY_BYTE)) | count);
+			}
+			for (; c < cols; c++) {
+				int count = band[c] + band[c + 1] + band[c + 2] - ((cells[row + c] & MINE) >> 4);
+				cells[row + c] = (byte) ((cells[row + c] & ~COUNT_MASK) | count);
+			}
+		}
+	}
+
+	/**
+	 * Returns a 1 in every byte of eight packed cells that holds a mine.
+	 * 
+	 * @param packed Eight packed cells read as a long
+	 * @return The mines of the cells, one per byte
+	 */
+	private static long mines(long packed) {
+		return (packed >>> 4) & EVERY_BYTE;
+	}
+
+	/**
+	 * Returns the number of in bounds tiles that are still covered.
+	 * 
+	 * @return The number of covered tiles
+	 */
+	public int numCovered() {
+		return numCovered;
+	}
+
+	/**
+	 * Returns the number of flags placed on the board.
+	 * 
+	 * @return The number of flagged tiles
+	 */
+	public int numFlagged() {
+		return numFlagged;
+	}
+
+	/**
+	 * Returns the number of mines that have been revealed by reveal().
+	 * 
+	 * @return The number of tripped mines
+	 */
+	public int numTripped() {
+		return numTripped;
+	}
+
+	/**
+	 * Sets or clears a state bit of a packed cell.
+	 * 
+	 * @param i   Index of the cell
+	 * @param bit The bit to change
+	 * @param on  Whether the bit should be set (true) or cleared (false)
+	 */
+	private void setBit(int i, int bit, boolean on) {
+		if (on) {
+			cells[i] |= bit;
+		} else {
+			cells[i] &= ~bit;
+		}
+	}
+
+	/**
+	 * Builds the list of in bounds tiles if the shape changed since it was last
+	 * built. Boards without out of bounds tiles do not need a list.
+	 */
+	private void indexShape() {
+		if (shapeIndexed) {
+			return;
+		}
+		shapeSize = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if ((cells[i] & IN_BOUNDS) != 0) {
+				shapeSize++;
+			}
+		}
+		shapeCells = null;
+		if (shapeSize < cells.length) {
+			shapeCells = new int[shapeSize];
+			for (int i = 0, k = 0; i < cells.length; i++) {
+				if ((cells[i] & IN_BOUNDS) != 0) {
+					shapeCells[k++] = i;
+				}
+			}
+		}
+		shapeIndexed = true;
+	}
+
+	/**
+	 * Fills the board with tiles. All tiles are in bounds and covered by default.
+	 */
+	private void fillBoard() {
+		Arrays.fill(cells, (byte) (IN_BOUNDS | COVERED));
+	}
+
+	/**
+	 * Returns the number of rows described by a shape file, or 13 if the file
+	 * cannot be read.
+	 * 
+	 * @param fn The filename to a shape file
+	 * @return Number of rows in the shape
+	 */
+	private static int shapeRows(String fn) {
+		try {
+			List<String> lines = Files.readAllLines(Paths.get(fn));
+			return lines.size() > 1 ? lines.size() - 1 : 13;
+		} catch (IOException e) {
+			return 13;
+		}
+	}
+
+	/**
+	 * Returns the number of columns described by a shape file, or 13 if the file
+	 * cannot be read.
+	 * 
+	 * @param fn The filename to a shape file
+	 * @return Number of columns in the shape
+	 */
+	private static int shapeCols(String fn) {
+		try {
+			List<String> lines = Files.readAllLines(Paths.get(fn));
+			return lines.size() > 1 ? lines.get(1).split(" ").length : 13;
+		} catch (IOException e) {
+			return 13;
+		}
+	}
+
 	/**
 	 * Saves the current board into a file named "save_game.dat"
 	 * 
@@ -223,15 +685,295 @@ public class MinesweeperBoard implements Serializable {
 	 * @param name a string representing the name of the player
 	 */
 	public void saveBoard(double time, String name) {
-		this.time = time;
-		this.playerName = name;
-		ObjectOutputStream oos;
+		saveBoard(time, name, "save_game.dat");
+	}
+
+	/**
+	 * Saves the current board into a file. The file starts with a header holding
+	 * the format version, the size of the board, the number of mines, the time,
+	 * the name of the player and a checksum, followed by the state of the tiles
+	 * packed two to a byte. Adjacent mine counts are not saved since they follow
+	 * from the mines. The file is written next to the old one and then moved over
+	 * it, so an interrupted save never leaves a broken file.
+	 * 
+	 * @param time a double representing the time that the game was stopped
+	 * @param name a string representing the name of the player
+	 * @param fn   the name of the file to save to
+	 */
+	public void saveBoard(double time, String name, String fn) {
 		try {
-			oos = new ObjectOutputStream(new FileOutputStream("save_game.dat"));
-			oos.writeObject(this);
-			oos.close();
+			writeBoard(time, name, fn);
 		} catch (IOException e) {
 			return;
 		}
 	}
+
+	/**
+	 * Saves the current board into a file like saveBoard(), and makes sure it is
+	 * on disk before returning.
+	 * 
+	 * @param time a double representing the time that the game was stopped
+	 * @param name a string representing the name of the player
+	 * @param fn   the name of the file to save to
+	 * @throws IOException if the file cannot be written
+	 */
+	void writeBoard(double time, String name, String fn) throws IOException {
+		this.time = time;
+		this.playerName = name;
+		ByteBuffer buffer = encode();
+
+		Path target = Paths.get(fn);
+		Path temp = Paths.get(fn + ".tmp");
+		FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		// The checksum is stored just before the packed cells
+		savedChecksum = buffer.getInt(buffer.limit() - (cells.length + 1) / 2 - 4);
+	}
+
+	/**
+	 * Returns the board in the format of a save file, with the time and name of
+	 * the player it holds.
+	 * 
+	 * @return the contents of a save file
+	 * @throws IOException if the name of the player is too long
+	 */
+	byte[] toByteArray() throws IOException {
+		return encode().array();
+	}
+
+	/**
+	 * Builds a board from the contents of a save file, checking every field like
+	 * loadBoard().
+	 * 
+	 * @param data the contents of a save file
+	 * @return the saved board
+	 * @throws IOException if the contents are not a valid save
+	 */
+	static MinesweeperBoard fromByteArray(byte[] data) throws IOException {
+		return decode(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Encodes the board in the format of a save file, with its time and the name
+	 * of its player.
+	 * 
+	 * @return the contents of the file, ready to be read
+	 * @throws IOException if the name of the player is too long
+	 */
+	private ByteBuffer encode() throws IOException {
+		String name = playerName;
+		byte[] nameBytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length >= NO_NAME) {
+			throw new IOException("Player name is too long");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + nameBytes.length + (cells.length + 1) / 2);
+		buffer.putInt(SAVE_MAGIC).putShort(SAVE_VERSION);
+		buffer.putInt(rows).putInt(cols).putInt(bombCount).putInt(numTripped).putDouble(time);
+		buffer.putShort((short) (name == null ? NO_NAME : nameBytes.length)).put(nameBytes);
+		int checksumAt = buffer.position();
+		buffer.position(checksumAt + 4);
+		// The state bits are the high nibble of a packed cell
+		int last = cells.length - 1;
+		for (int i = 0; i < last; i += 2) {
+			buffer.put((byte) (((cells[i] >> 4) & 0x0F) | (cells[i + 1] & 0xF0)));
+		}
+		if ((cells.length & 1) != 0) {
+			buffer.put((byte) ((cells[last] >> 4) & 0x0F));
+		}
+		buffer.putInt(checksumAt, checksum(buffer.array(), checksumAt));
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Returns the checksum of the file the board was last saved to or loaded from,
+	 * which identifies that version of the file.
+	 * 
+	 * @return the checksum, or 0 if the board was not saved or loaded
+	 */
+	int getSavedChecksum() {
+		return savedChecksum;
+	}
+
+	/**
+	 * Loads a board that was saved with saveBoard(). The file is checked before
+	 * the board is built: its size must match the size of the board in its
+	 * header, the checksum must match, and mines and flags may only be on in
+	 * bounds tiles, and the number of mines must match the header.
+	 * 
+	 * @param fn the name of the file to load from
+	 * @return the saved board
+	 * @throws IOException if the file cannot be read or is not a valid save
+	 */
+	public static MinesweeperBoard loadBoard(String fn) throws IOException {
+		return loadBoard(fn, null);
+	}
+
+	/**
+	 * Loads a board that was saved with saveBoard(), reporting how much of the
+	 * file has been read as it goes. The file is read a few megabytes at a time.
+	 * 
+	 * @param fn       the name of the file to load from
+	 * @param progress receives the fraction (0 to 1) of the board loaded so far,
+	 *                 or null
+	 * @return the saved board
+	 * @throws IOException if the file cannot be read or is not a valid save
+	 */
+	public static MinesweeperBoard loadBoard(String fn, DoubleConsumer progress) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fn), StandardOpenOption.READ);
+		ByteBuffer buffer;
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Save file is too large");
+			}
+			buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				// Reading in chunks also keeps the JDK from copying through a direct
+				// buffer as large as the whole file
+				buffer.limit(Math.min(buffer.capacity(), buffer.position() + READ_CHUNK));
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+				buffer.limit(buffer.capacity());
+				if (progress != null) {
+					// Decoding is counted as the last tenth
+					progress.accept(0.9 * buffer.position() / Math.max(1, size));
+				}
+			}
+		} finally {
+			channel.close();
+		}
+		buffer.flip();
+		MinesweeperBoard board = decode(buffer);
+		if (progress != null) {
+			progress.accept(1);
+		}
+		return board;
+	}
+
+	/**
+	 * Builds a board from the contents of a save file, checking every field.
+	 * 
+	 * @param buffer the contents of the file
+	 * @return the saved board
+	 * @throws IOException if the contents are not a valid save
+	 */
+	private static MinesweeperBoard decode(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < HEADER_SIZE + 4 || buffer.getInt() != SAVE_MAGIC) {
+			throw new IOException("Not a save file");
+		}
+		short version = buffer.getShort();
+		if (version != SAVE_VERSION) {
+			throw new IOException("Unsupported save version " + version);
+		}
+		int rows = buffer.getInt();
+		int cols = buffer.getInt();
+		int bombCount = buffer.getInt();
+		int tripped = buffer.getInt();
+		double time = buffer.getDouble();
+		int nameLength = buffer.getShort() & 0xFFFF;
+		if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE || bombCount < 0 || tripped < 0
+				|| !(time >= 0 && time < Double.POSITIVE_INFINITY)) {
+			throw new IOException("Corrupt save header");
+		}
+		int numCells = rows * cols;
+		long expected = HEADER_SIZE + (nameLength == NO_NAME ? 0 : nameLength) + (numCells + 1L) / 2;
+		if (buffer.limit() != expected) {
+			throw new IOException("Save file has the wrong size");
+		}
+		String name = null;
+		if (nameLength != NO_NAME) {
+			name = new String(buffer.array(), buffer.position(), nameLength, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + nameLength);
+		}
+		int checksumAt = buffer.position();
+		int checksum = buffer.getInt();
+		if (checksum != checksum(buffer.array(), checksumAt)) {
+			throw new IOException("Save file is corrupt");
+		}
+
+		byte[] packed = buffer.array();
+		int offset = buffer.position();
+		if ((numCells & 1) != 0 && (packed[packed.length - 1] & 0xF0) != 0) {
+			throw new IOException("Save file has invalid tiles");
+		}
+		// Counts the state of sixteen tiles at once, one per four bits of a long.
+		// Shifting a long moves bits into the neighbouring tile, where the masks
+		// leave them out.
+		int covered = 0;
+		int flagged = 0;
+		int mines = 0;
+		int revealedMines = 0;
+		long invalid = 0;
+		int k = offset;
+		for (; k + 8 <= packed.length; k += 8) {
+			long w = (long) LONGS.get(packed, k);
+			covered += Long.bitCount(w & (w << 2) & (SAVED_IN_BOUNDS * EVERY_NIBBLE));
+			flagged += Long.bitCount(w & (SAVED_FLAGGED * EVERY_NIBBLE));
+			mines += Long.bitCount(w & (SAVED_MINE * EVERY_NIBBLE));
+			revealedMines += Long.bitCount(w & ~(w >>> 1) & (SAVED_MINE * EVERY_NIBBLE));
+			// Mines and flags may only be on in bounds tiles
+			invalid |= w & ~(w >>> 3) & (SAVED_MINE * EVERY_NIBBLE);
+			invalid |= w & ~(w >>> 1) & (SAVED_FLAGGED * EVERY_NIBBLE);
+		}
+		for (; k < packed.length; k++) {
+			int w = packed[k] & 0xFF;
+			covered += Integer.bitCount(w & (w << 2) & (SAVED_IN_BOUNDS * 0x11));
+			flagged += Integer.bitCount(w & (SAVED_FLAGGED * 0x11));
+			mines += Integer.bitCount(w & (SAVED_MINE * 0x11));
+			revealedMines += Integer.bitCount(w & ~(w >>> 1) & (SAVED_MINE * 0x11));
+			invalid |= w & ~(w >>> 3) & (SAVED_MINE * 0x11);
+			invalid |= w & ~(w >>> 1) & (SAVED_FLAGGED * 0x11);
+		}
+		if (invalid != 0 || tripped > revealedMines) {
+			throw new IOException("Save file has invalid tiles");
+		}
+		if (mines != bombCount) {
+			throw new IOException("Save file has " + mines + " mines instead of " + bombCount);
+		}
+		MinesweeperBoard board = new MinesweeperBoard(rows, cols);
+		byte[] cells = board.cells;
+		// Each saved byte becomes two cells, the first in the low four bits
+		short[] unpack = UNPACK;
+		for (int j = 0, pairs = numCells >> 1; j < pairs; j++) {
+			SHORTS.set(cells, j << 1, unpack[packed[offset + j] & 0xFF]);
+		}
+		if ((numCells & 1) != 0) {
+			cells[numCells - 1] = (byte) (packed[packed.length - 1] << 4);
+		}
+		board.recountMines();
+		board.bombCount = bombCount;
+		board.time = time;
+		board.playerName = name;
+		board.numCovered = covered;
+		board.numFlagged = flagged;
+		board.numTripped = tripped;
+		board.savedChecksum = checksum;
+		return board;
+	}
+
+	/**
+	 * Returns the checksum of a save file, taken over every byte except the four
+	 * bytes of the checksum itself.
+	 * 
+	 * @param data       the contents of the file
+	 * @param checksumAt the position of the checksum
+	 * @return the checksum
+	 */
+	private static int checksum(byte[] data, int checksumAt) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, checksumAt);
+		crc.update(data, checksumAt + 4, data.length - checksumAt - 4);
+		return (int) crc.getValue();
+	}
 }
@@ -1,7 +1,8 @@
 package model;
 
-import java.util.Observable;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
 
 /**
  * A model to represent a minesweeper game. A model contains a MinesweeperBoard
@@ -10,23 +11,58 @@ import java.util.Random;
  * 
  * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
  */
-public class MinesweeperModel extends Observable {
+public class MinesweeperModel {
+	// Smallest and largest supported width or height of a custom board
+	public static final int MIN_SIZE = 9;
+	public static final int MAX_SIZE = 10000;
+	// Boards with at least one mine per this many tiles are recounted in one pass
+	// after placing the mines, rather than updating the numbers for every mine
+	private static final int BULK_PLACEMENT_RATIO = 32;
+	private static final GameListener[] NO_LISTENERS = new GameListener[0];
+
 	private MinesweeperBoard board;
 	private boolean firstMove;
 	private boolean save;
-	private boolean gameLost;
-	private Random rand;
+	private SplittableRandom rand;
+	// Replaced by a new array whenever a listener is added or removed, so that
+	// events are sent without locking or copying
+	private volatile GameListener[] listeners = NO_LISTENERS;
+	// Events held back until the end of a batch: uncovered and flagged tiles,
+	// and whether the whole board changed or the game ended
+	private int batchDepth;
+	private int[] batchCells = new int[0];
+	private int numBatchCells;
+	// Every tile flagged or unflagged in the batch once, as (cell << 1) | 1 if it
+	// was flagged before the batch, and the tiles already in the list
+	private int[] batchFlags = new int[0];
+	private int numBatchFlags;
+	private BitSet batchFlagged = new BitSet();
+	private boolean batchBoardChanged;
+	private int batchLostCell = -1;
+	private boolean batchWon;
+	// Time budget for generating a board that needs no guessing, 0 if disabled
+	private long noGuessBudget;
+	// Pool of boards generated ahead of time, and the shape they are kept by
+	private BoardPool pool;
+	private String shape = "";
+	// Saves every move as it is made, if the game is being saved
+	private MoveJournal journal;
+	// Records the game for checking its score, and whether the mines were placed
+	// from the seed alone
+	private GameRecording recording;
+	private boolean seededMines;
+	// Runs from the first reveal until the game ends
+	private GameClock clock = new GameClock();
 
 	/**
 	 * Constructs the Minesweeper model, initializes the bomb locations and checks
-	 * how many mines are nearby. Hardcodes a 13 by 13 board of tiles.
+	 * how many mines are nearby. Uses the classic 13 by 13 board with 20 mines.
 	 */
 	public MinesweeperModel() {
 		board = new MinesweeperBoard(13);
 		firstMove = true;
 		save = false;
-		gameLost = false;
-		rand = new Random();
+		rand = new SplittableRandom();
 		// setBombs(board.bombCount);
 	}
 
@@ -39,15 +75,52 @@ public class MinesweeperModel extends Observable {
 	 *              board.
 	 */
 	public MinesweeperModel(String shape) {
-		board = new MinesweeperBoard(13);
-		board.loadShapeFromFile("shapes/" + shape + ".txt");
+		board = new MinesweeperBoard("shapes/" + shape + ".txt");
+		this.shape = shape;
 		firstMove = true;
 		save = false;
-		gameLost = false;
-		rand = new Random();
+		rand = new SplittableRandom();
 		// setBombs(board.bombCount);
 	}
 
+	/**
+	 * Constructs the Minesweeper model with a rectangular board of a custom size
+	 * and number of mines. Both dimensions must be between MIN_SIZE and MAX_SIZE,
+	 * and the mines must leave room for the 3 by 3 square that is kept clear
+	 * around the first click.
+	 * 
+	 * @param rows      The number of rows (height) of the board
+	 * @param cols      The number of columns (width) of the board
+	 * @param mineCount The number of mines to place
+	 */
+	public MinesweeperModel(int rows, int cols, int mineCount) {
+		if (rows < MIN_SIZE || rows > MAX_SIZE || cols < MIN_SIZE || cols > MAX_SIZE) {
+			throw new IllegalArgumentException("Board must be between " + MIN_SIZE + " and " + MAX_SIZE
+					+ " tiles on each side: " + rows + "x" + cols);
+		}
+		if (mineCount < 0 || mineCount > rows * cols - 9) {
+			throw new IllegalArgumentException("Invalid number of mines for a " + rows + "x" + cols + " board: "
+					+ mineCount);
+		}
+		board = new MinesweeperBoard(rows, cols);
+		board.bombCount = mineCount;
+		firstMove = true;
+		save = false;
+		rand = new SplittableRandom();
+	}
+
+	/**
+	 * Constructs the Minesweeper model with a rectangular board of a custom size,
+	 * where the number of mines is given as a fraction of the tiles.
+	 * 
+	 * @param rows    The number of rows (height) of the board
+	 * @param cols    The number of columns (width) of the board
+	 * @param density The fraction of tiles (0 to 1) that should contain a mine
+	 */
+	public MinesweeperModel(int rows, int cols, double density) {
+		this(rows, cols, (int) Math.round((double) rows * cols * density));
+	}
+
 	/**
 	 * Constructs a model given a previously constructed minesweeper board.
 	 * 
@@ -57,30 +130,180 @@ public class MinesweeperModel extends Observable {
 		this.board = board;
 		firstMove = false;
 		save = true;
+		clock = new GameClock(board.time);
+	}
+
+	/**
+	 * Constructs a model for a new game on an empty board, such as a copy of a
+	 * shape that was loaded once. The mines are placed on the first move, using a
+	 * random number generator seeded with the given seed.
+	 * 
+	 * @param board An empty MinesweeperBoard instance
+	 * @param seed  A seed for placing the bombs
+	 */
+	public MinesweeperModel(MinesweeperBoard board, long seed) {
+		this.board = board;
+		firstMove = true;
+		save = false;
+		rand = new SplittableRandom(seed);
 	}
 
 	/**
-	 * Sets the bombs to random spots on the board. Uses logic to ensure that the
-	 * correct number of bombs are placed and that they are all at different
-	 * locations.
+	 * Sets the bombs to random spots on an empty board. Uses logic to ensure that
+	 * the correct number of bombs are placed and that they are all at different
+	 * in bounds locations.
 	 * 
 	 * @param bombCount The number of bombs to place
 	 */
 	public void setBombs(int bombCount) {
-		// Starting Positions
-		while (bombCount > 0) {
-			int x = rand.nextInt(13);
-			int y = rand.nextInt(13);
-			if (!board.getTile(x, y).inBounds) {
-				continue;
+		placeBombs(bombCount, new int[0]);
+	}
+
+	/**
+	 * Sets the bombs to random spots on an empty board, keeping the 3 by 3 square
+	 * around a location free. This is so that it ensures that the users first
+	 * input is always not a number but instead clears out space.
+	 * 
+	 * @param bombCount The number of bombs to place
+	 * @param x         A row coordinate.
+	 * @param y         A column coordinate.
+	 */
+	public void setBombs(int bombCount, int x, int y) {
+		int[] excluded = new int[9];
+		int e = 0;
+		for (int r = x - 1; r <= x + 1; r++) {
+			for (int c = y - 1; c <= y + 1; c++) {
+				if (board.inBounds(r, c)) {
+					excluded[e++] = board.inBoundsPosition(r * board.getCols() + c);
+				}
 			}
-			if (board.getTile(x, y).hasMine) {
-				continue;
+		}
+		placeBombs(bombCount, Arrays.copyOf(excluded, e));
+	}
+
+	/**
+	 * Places bombs on a random subset of the in bounds tiles, using Floyd's variant
+	 * of a partial Fisher-Yates shuffle. The mines already placed on the board
+	 * serve as the set of chosen tiles, so every bomb costs one random number and
+	 * no memory is needed for the tiles that are not picked.
+	 * 
+	 * Sparse boards update the numbers around each bomb as it is placed. Dense
+	 * boards place the bombs first and recount the whole board in one pass, and
+	 * when more than half of the tiles get a bomb the empty tiles are picked
+	 * instead and the board is inverted afterwards.
+	 * 
+	 * @param bombCount The number of bombs to place
+	 * @param excluded  Positions (see MinesweeperBoard.inBoundsPosition()) of tiles
+	 *                  that must not get a bomb
+	 */
+	private void placeBombs(int bombCount, int[] excluded) {
+		int n = board.numInBounds() - excluded.length;
+		if (bombCount > n) {
+			throw new IllegalArgumentException("Not enough tiles to place " + bombCount + " mines");
+		}
+		// Swap excluded tiles with tiles at the end of the order, so that positions
+		// 0 to n - 1 only refer to tiles that may get a bomb
+		Arrays.sort(excluded);
+		int[] from = new int[excluded.length];
+		int[] to = new int[excluded.length];
+		int swaps = 0;
+		int tail = n;
+		for (int p : excluded) {
+			if (p < n) {
+				while (Arrays.binarySearch(excluded, tail) >= 0) {
+					tail++;
+				}
+				from[swaps] = p;
+				to[swaps++] = tail++;
+			}
+		}
+		int cols = board.getCols();
+		boolean invert = bombCount > n / 2;
+		// Inverting the mines does not update the numbers, so the board is always
+		// recounted after it
+		boolean bulk = invert || bombCount >= (long) board.getRows() * cols / BULK_PLACEMENT_RATIO;
+		int picks = invert ? n - bombCount : bombCount;
+		for (int j = n - picks; j < n; j++) {
+			int cell = bombCell(rand.nextInt(j + 1), from, to, swaps);
+			if (board.hasMine(cell / cols, cell % cols)) {
+				cell = bombCell(j, from, to, swaps);
+			}
+			if (bulk) {
+				board.setMineUncounted(cell, true);
+			} else {
+				board.setMine(cell / cols, cell % cols, true);
+			}
+		}
+		if (invert) {
+			int[] excludedCells = new int[excluded.length];
+			for (int i = 0; i < excluded.length; i++) {
+				excludedCells[i] = board.inBoundsCell(excluded[i]);
+			}
+			board.invertMines(excludedCells);
+		}
+		if (bulk) {
+			board.recountMines();
+		}
+	}
+
+	/**
+	 * Returns the tile at a position in the order used by placeBombs().
+	 * 
+	 * @param position A position between 0 and the number of candidate tiles
+	 * @param from     Positions of excluded tiles that were swapped out
+	 * @param to       Positions the excluded tiles were swapped with
+	 * @param swaps    Number of swapped positions
+	 * @return The index (row * cols + col) of the tile
+	 */
+	private int bombCell(int position, int[] from, int[] to, int swaps) {
+		for (int i = 0; i < swaps; i++) {
+			if (from[i] == position) {
+				return board.inBoundsCell(to[i]);
 			}
-			board.setMine(x, y, true);
-			// System.out.println(x + " " + y);
-			bombCount -= 1;
 		}
+		return board.inBoundsCell(position);
+	}
+
+	/**
+	 * Moves the mines of the 3 by 3 square around a location to random in bounds
+	 * tiles outside of it, which do not have a mine yet. On a board whose mines
+	 * were placed uniformly at random, this gives the same layouts with the same
+	 * chances as placing the mines around the square in the first place.
+	 * 
+	 * @param x A row coordinate.
+	 * @param y A column coordinate.
+	 */
+	private void clearAround(int x, int y) {
+		int cols = board.getCols();
+		int n = board.numInBounds();
+		for (int r = x - 1; r <= x + 1; r++) {
+			for (int c = y - 1; c <= y + 1; c++) {
+				if (!board.inBounds(r, c) || !board.hasMine(r, c)) {
+					continue;
+				}
+				int cell = board.inBoundsCell(rand.nextInt(n));
+				// Guess a few times, then scan in case nearly every tile has a mine
+				for (int tries = 0; !canMoveTo(cell, x, y); tries++) {
+					cell = board.inBoundsCell(tries < 1000 ? rand.nextInt(n) : (board.inBoundsPosition(cell) + 1) % n);
+				}
+				board.setMine(r, c, false);
+				board.setMine(cell / cols, cell % cols, true);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a mine cleared by clearAround() can be moved to a tile.
+	 * 
+	 * @param cell The index (row * cols + col) of an in bounds tile
+	 * @param x    The row coordinate of the square being cleared
+	 * @param y    The column coordinate of the square being cleared
+	 * @return True if the tile has no mine and is outside of the square
+	 */
+	private boolean canMoveTo(int cell, int x, int y) {
+		int r = cell / board.getCols();
+		int c = cell % board.getCols();
+		return !board.hasMine(r, c) && (Math.abs(r - x) > 1 || Math.abs(c - y) > 1);
 	}
 
 	/**
@@ -89,7 +312,89 @@ public class MinesweeperModel extends Observable {
 	 * @param seed A seed
 	 */
 	public void setSeed(long seed) {
-		rand.setSeed(seed);
+		rand = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Makes the first move place the mines so that the board can be solved
+	 * without guessing. If no such board is found within the time budget, the
+	 * mines are placed as usual.
+	 * 
+	 * @param budgetMillis The time budget in milliseconds, or 0 to disable
+	 */
+	public void setNoGuess(long budgetMillis) {
+		noGuessBudget = budgetMillis;
+	}
+
+	/**
+	 * Makes the first move take its mines from a pool of boards generated ahead
+	 * of time, if the pool has one that fits, and asks the pool to keep boards
+	 * like this one. Call after setNoGuess().
+	 * 
+	 * @param pool A board pool, or null to always place the mines on the first move
+	 */
+	public void setBoardPool(BoardPool pool) {
+		this.pool = pool;
+		if (pool != null) {
+			pool.prepare(shape, board, noGuessBudget > 0);
+		}
+	}
+
+	/**
+	 * Saves every move of the game to a journal as it is made. See MoveJournal.
+	 * 
+	 * @param journal A journal, or null to stop saving moves
+	 */
+	public void setJournal(MoveJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Returns the journal that saves the moves of the game.
+	 * 
+	 * @return The journal, or null if moves are not saved
+	 */
+	public MoveJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Records every move of the game, so that its score can be checked by
+	 * replaying it. See GameRecording.start().
+	 * 
+	 * @param recording A recording, or null to stop recording moves
+	 */
+	public void setRecording(GameRecording recording) {
+		this.recording = recording;
+	}
+
+	/**
+	 * Returns the recording of the game.
+	 * 
+	 * @return The recording, or null if moves are not recorded
+	 */
+	public GameRecording getRecording() {
+		return recording;
+	}
+
+	/**
+	 * Returns the clock of the game. It is started by the first reveal, and by the
+	 * first reveal after the game was loaded, and stopped when the game ends.
+	 * 
+	 * @return The clock
+	 */
+	public GameClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Returns the name of the custom shape of the board.
+	 * 
+	 * @return The name of the shape file (excluding ".txt"), or an empty string for
+	 *         a rectangular board
+	 */
+	public String getShape() {
+		return shape;
 	}
 
 	/**
@@ -102,129 +407,519 @@ public class MinesweeperModel extends Observable {
 	}
 
 	/**
-	 * This method uses recursion to cave out the area of blank spaces done by a
-	 * click. It checks to make sure that it is in range, and if not then it does
-	 * nothing. It then checks if there is a bomb, which prompts the end of the
-	 * game. Next, if it is a covered spot and there are 0 bombs nearby it clears
-	 * itself and recursively calls again. The last condition is if it touches a
-	 * bomb, which is will just reveal the spot.
+	 * This method caves out the area of blank spaces done by a click. It checks to
+	 * make sure that it is in range, and if not then it does nothing. It then
+	 * checks if there is a bomb, which prompts the end of the game. Next, if it is
+	 * a covered spot and there are 0 bombs nearby it clears itself and the area of
+	 * blank spaces around it. The last condition is if it touches a bomb, which is
+	 * will just reveal the spot.
 	 * 
 	 * @param x A row coordinate.
 	 * @param y A column coordinate.
+	 * @return The state of the game and the tiles that were uncovered
 	 */
-	public void revealSpace(int x, int y) {
-		revealSpaceHelper(x, y);
-		notifyView();
+	public RevealResult revealSpace(int x, int y) {
+		boolean first = firstMove;
+		boolean playing = getOutcome() == RevealResult.Outcome.IN_PROGRESS;
+		if (playing && !clock.isRunning()) {
+			clock.start();
+		}
+		RevealResult result = revealSpaceHelper(x, y);
+		if (result.getOutcome() != RevealResult.Outcome.IN_PROGRESS) {
+			clock.pause();
+		}
+		// The move is recorded before the journal gets it, since a checkpoint saves
+		// the recording as it is
+		if (recording != null && (first || result.getRevealed().length > 0)) {
+			if (first && !seededMines) {
+				recording.setMines(board);
+			}
+			recording.record(Move.reveal(x * board.getCols() + y), clock.getMillis());
+		}
+		if (journal != null) {
+			// The first move places the mines, so the whole board is saved once
+			if (first) {
+				journal.checkpoint();
+			} else if (result.getRevealed().length > 0) {
+				journal.record(Move.reveal(x * board.getCols() + y));
+			}
+		}
+		fireCellsRevealed(result.getRevealed());
+		if (playing && result.hasWon()) {
+			fireGameWon();
+		} else if (playing && result.hasLost()) {
+			fireGameLost(x * board.getCols() + y);
+		}
+		return result;
 	}
 
 	/**
-	 * This method sets a square of bombs around a location to either be true or
-	 * false. This is so that it ensures that the users first input is always not a
-	 * number but instead clears out space.
+	 * Implements revealSpace without sending events (runtime optimization).
+	 * The area of blank spaces is dug out with an iterative flood fill, so there is
+	 * no limit on how large the area can be.
 	 * 
-	 * @param x   A row coordinate.
-	 * @param y   A column coordinate.
-	 * @param ans Boolean for setting bomb.
+	 * @param x A row coordinate.
+	 * @param y A column coordinate.
+	 * @return The state of the game and the tiles that were uncovered
 	 */
-	public void bombSquare(int x, int y, boolean ans) {
-		board.getTile(x, y).setHasMine(ans);
-		if (x > 0) {
-			board.getTile(x - 1, y).setHasMine(ans);
-			if (y < board.getSize() - 1)
-				board.getTile(x - 1, y + 1).setHasMine(ans);
-			if (y > 0)
-				board.getTile(x - 1, y - 1).setHasMine(ans);
-		}
-		if (y > 0) {
-			board.getTile(x, y - 1).setHasMine(ans);
-			if (x < board.getSize() - 1)
-				board.getTile(x + 1, y - 1).setHasMine(ans);
+	public RevealResult revealSpaceHelper(int x, int y) {
+		// On the first move, place the mines away from the clicked tile
+		if (firstMove) {
+			// System.out.println("First move");
+			firstMove = false;
+			MinesweeperBoard layout = null;
+			seededMines = noGuessBudget == 0 || !board.inBounds(x, y);
+			if (pool != null && board.inBounds(x, y)) {
+				BoardPool.Entry entry = pool.take(new BoardPool.Key(shape, board, noGuessBudget > 0, x, y), x, y);
+				layout = entry == null ? null : entry.getBoard();
+			}
+			if (layout == null && noGuessBudget > 0 && board.inBounds(x, y)) {
+				NoGuessGenerator generator = new NoGuessGenerator(board);
+				generator.setTimeBudget(noGuessBudget);
+				layout = generator.generate(x, y, rand.nextLong());
+			}
+			if (layout != null) {
+				seededMines = false;
+				board.copyMines(layout);
+				if (noGuessBudget == 0) {
+					clearAround(x, y);
+				}
+			} else {
+				setBombs(board.bombCount, x, y);
+			}
 		}
-		if (x < board.getSize() - 1)
-			board.getTile(x + 1, y).setHasMine(ans);
-		if (y < board.getSize() - 1)
-			board.getTile(x, y + 1).setHasMine(ans);
-		if (x < board.getSize() - 1 && y < board.getSize() - 1)
-			board.getTile(x + 1, y + 1).setHasMine(ans);
+		int[] revealed = dig(x, y);
+		return new RevealResult(getOutcome(), revealed);
 	}
 
 	/**
-	 * Private inner class that implements revealSpace without notifying observers
-	 * (runtime optimization).
+	 * Uncovers a tile, and the area of blank spaces around it if it is blank.
 	 * 
 	 * @param x A row coordinate.
 	 * @param y A column coordinate.
+	 * @return The indices (row * cols + col) of the tiles that were uncovered
 	 */
-	public void revealSpaceHelper(int x, int y) {
-		// If first move and mine is revealed, moves it to a different spot
-		if (firstMove) {
-			// System.out.println("First move");
-			firstMove = false;
-			bombSquare(x, y, true);
-			setBombs(board.bombCount);
-			bombSquare(x, y, false);
-			// Set display numbers for all tiles on first move
-			for (int i = 0; i < 13; i++) {
-				for (int j = 0; j < 13; j++) {
-					board.setDisplayNum(i, j, board.numMinesNearby(i, j));
+	private int[] dig(int x, int y) {
+		int cols = board.getCols();
+		// Do nothing if index out of bounds, tile is out of bounds, flagged or
+		// already uncovered
+		if (!board.inBounds(x, y) || board.isFlagged(x, y) || !board.isCovered(x, y)) {
+			return new int[0];
+		}
+		// If mine is revealed, the board counts it as tripped
+		if (board.hasMine(x, y)) {
+			board.reveal(x, y);
+			return new int[] { x * cols + y };
+		}
+		int[] revealed = new int[16];
+		board.reveal(x, y);
+		revealed[0] = x * cols + y;
+		return floodFill(revealed, 1);
+	}
+
+	/**
+	 * Digs out the area of blank spaces around tiles that were just uncovered.
+	 * The list of uncovered tiles doubles as the queue of the flood fill. Tiles
+	 * are uncovered as they are queued, so the covered bit of a tile marks
+	 * whether it has been visited.
+	 * 
+	 * @param revealed The tiles that were uncovered, none of them mines, with
+	 *                 room for more or not
+	 * @param count    The number of tiles in the array
+	 * @return The indices (row * cols + col) of all tiles that were uncovered
+	 */
+	private int[] floodFill(int[] revealed, int count) {
+		int cols = board.getCols();
+		for (int head = 0; head < count; head++) {
+			int r = revealed[head] / cols;
+			int c = revealed[head] % cols;
+			if (board.getDisplayNum(r, c) != 0) {
+				continue;
+			}
+			// Blank tile, so dig out all eight neighbors
+			for (int nr = r - 1; nr <= r + 1; nr++) {
+				for (int nc = c - 1; nc <= c + 1; nc++) {
+					if (board.inBounds(nr, nc) && board.isCovered(nr, nc) && !board.isFlagged(nr, nc)) {
+						board.reveal(nr, nc);
+						if (count == revealed.length) {
+							revealed = Arrays.copyOf(revealed, count * 2);
+						}
+						revealed[count++] = nr * cols + nc;
+					}
+				}
+			}
+		}
+		return count == revealed.length ? revealed : Arrays.copyOf(revealed, count);
+	}
+
+	/**
+	 * Chords on a revealed number: if as many of its neighbors are flagged as the
+	 * number says, every other covered neighbor is revealed, along with the areas
+	 * of blank spaces around them. The chord uncovers all of its tiles in one
+	 * flood fill and notifies the listeners once. If a flag was wrong, the chord
+	 * reveals a mine and the game is lost.
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 * @return The state of the game and the tiles that were uncovered, none if
+	 *         the tile cannot be chorded
+	 */
+	public RevealResult chordSpace(int row, int col) {
+		boolean playing = getOutcome() == RevealResult.Outcome.IN_PROGRESS;
+		// A loaded game may go on with a chord, which starts its clock like a reveal
+		if (playing && !firstMove && !clock.isRunning()) {
+			clock.start();
+		}
+		RevealResult result = chordSpaceHelper(row, col);
+		int[] revealed = result.getRevealed();
+		if (revealed.length == 0) {
+			return result;
+		}
+		if (result.getOutcome() != RevealResult.Outcome.IN_PROGRESS) {
+			clock.pause();
+		}
+		int move = Move.chord(row * board.getCols() + col);
+		if (recording != null) {
+			recording.record(move, clock.getMillis());
+		}
+		if (journal != null) {
+			journal.record(move);
+		}
+		fireCellsRevealed(revealed);
+		if (playing && result.hasWon()) {
+			fireGameWon();
+		} else if (playing && result.hasLost()) {
+			int cols = board.getCols();
+			for (int cell : revealed) {
+				if (board.hasMine(cell / cols, cell % cols)) {
+					fireGameLost(cell);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Implements chordSpace without recording the move or sending events.
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 * @return The state of the game and the tiles that were uncovered
+	 */
+	public RevealResult chordSpaceHelper(int row, int col) {
+		if (!canChord(row, col)) {
+			return new RevealResult(getOutcome(), new int[0]);
+		}
+		int cols = board.getCols();
+		// The neighbors start one flood fill together; mines revealed by a wrong
+		// flag are kept out of it and added at the end
+		int[] revealed = new int[16];
+		int count = 0;
+		int[] mines = new int[8];
+		int numMines = 0;
+		for (int nr = row - 1; nr <= row + 1; nr++) {
+			for (int nc = col - 1; nc <= col + 1; nc++) {
+				if (board.inBounds(nr, nc) && board.isCovered(nr, nc) && !board.isFlagged(nr, nc)) {
+					board.reveal(nr, nc);
+					if (board.hasMine(nr, nc)) {
+						mines[numMines++] = nr * cols + nc;
+					} else {
+						revealed[count++] = nr * cols + nc;
+					}
+				}
+			}
+		}
+		revealed = floodFill(revealed, count);
+		if (numMines > 0) {
+			int safe = revealed.length;
+			revealed = Arrays.copyOf(revealed, safe + numMines);
+			System.arraycopy(mines, 0, revealed, safe, numMines);
+		}
+		return new RevealResult(getOutcome(), revealed);
+	}
+
+	/**
+	 * Makes a sequence of moves, such as those of a bot or a replay, as one
+	 * batch: listeners hear about them once at the end. The moves stop as soon as
+	 * the game is won or lost.
+	 * 
+	 * @param moves  Moves encoded with Move
+	 * @param offset The index of the first move to make
+	 * @param length The number of moves to make
+	 * @return The state of the game after the last move made, every tile that
+	 *         was uncovered, and the number of moves made, which is less than
+	 *         length if the game ended first
+	 * @throws IllegalArgumentException if a move has an unknown type; the moves
+	 *                                  before it are kept
+	 */
+	public RevealResult applyMoves(int[] moves, int offset, int length) {
+		int cols = board.getCols();
+		int[] revealed = new int[64];
+		int count = 0;
+		int made = 0;
+		beginBatch();
+		try {
+			for (; made < length && getOutcome() == RevealResult.Outcome.IN_PROGRESS; made++) {
+				int move = moves[offset + made];
+				int row = Move.cell(move) / cols;
+				int col = Move.cell(move) % cols;
+				int[] cells;
+				if (Move.type(move) == Move.FLAG) {
+					flagSpace(row, col);
+					continue;
+				} else if (Move.type(move) == Move.REVEAL) {
+					cells = revealSpace(row, col).getRevealed();
+				} else if (Move.type(move) == Move.CHORD) {
+					cells = chordSpace(row, col).getRevealed();
+				} else {
+					throw new IllegalArgumentException("Unknown move type " + Move.type(move));
+				}
+				if (count + cells.length > revealed.length) {
+					revealed = Arrays.copyOf(revealed, Math.max(revealed.length * 2, count + cells.length));
 				}
+				System.arraycopy(cells, 0, revealed, count, cells.length);
+				count += cells.length;
+			}
+		} finally {
+			endBatch();
+		}
+		return new RevealResult(getOutcome(), Arrays.copyOf(revealed, count), made);
+	}
+
+	/**
+	 * Returns whether a tile can be chorded: the game is in progress, the tile is
+	 * a revealed number, and as many of its neighbors are flagged as the number
+	 * says.
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 * @return True if chording on the tile would reveal its other neighbors
+	 */
+	public boolean canChord(int row, int col) {
+		if (firstMove || !board.inBounds(row, col) || board.isCovered(row, col) || board.hasMine(row, col)
+				|| getOutcome() != RevealResult.Outcome.IN_PROGRESS) {
+			return false;
+		}
+		int number = board.getDisplayNum(row, col);
+		if (number == 0) {
+			return false;
+		}
+		int flags = 0;
+		for (int nr = row - 1; nr <= row + 1; nr++) {
+			for (int nc = col - 1; nc <= col + 1; nc++) {
+				if (board.inBounds(nr, nc) && board.isFlagged(nr, nc)) {
+					flags++;
+				}
+			}
+		}
+		return flags == number;
+	}
+
+	/**
+	 * Adds a listener to the events of the game. Adding and removing listeners
+	 * copies the array of listeners, so that sending an event does not lock.
+	 * 
+	 * @param listener The listener
+	 */
+	public synchronized void addListener(GameListener listener) {
+		GameListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+		added[listeners.length] = listener;
+		listeners = added;
+	}
+
+	/**
+	 * Removes a listener from the events of the game.
+	 * 
+	 * @param listener The listener
+	 */
+	public synchronized void removeListener(GameListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				GameListener[] removed = new GameListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, removed, 0, i);
+				System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+				listeners = removed.length == 0 ? NO_LISTENERS : removed;
+				return;
 			}
 		}
-		// Do nothing if index out of bounds
-		if (x < 0 || y < 0 || x >= board.getSize() || y >= board.getSize()) {
+	}
+
+	/**
+	 * Starts a batch of moves. Until the batch ends, events are held back, and
+	 * then sent together: all uncovered tiles in one event, each flag that
+	 * changed with its final state, and the end of the game. Batches can be
+	 * nested; events are sent when the outermost batch ends.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Ends a batch of moves and sends the events held back since it began.
+	 * 
+	 * @throws IllegalStateException if no batch was begun
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch to end");
+		}
+		if (--batchDepth > 0) {
 			return;
 		}
-		// Do nothing is tile is out of bounds
-		if (!board.getTile(x, y).inBounds) {
+		GameListener[] current = listeners;
+		try {
+			for (GameListener listener : current) {
+				if (batchBoardChanged) {
+					listener.boardChanged();
+					continue;
+				}
+				if (numBatchCells > 0) {
+					listener.cellsRevealed(Arrays.copyOf(batchCells, numBatchCells));
+				}
+				for (int i = 0; i < numBatchFlags; i++) {
+					int cell = batchFlags[i] >>> 1;
+					boolean flagged = board.isFlagged(cell / board.getCols(), cell % board.getCols());
+					// A flag that ended as it started did not change
+					if (flagged != ((batchFlags[i] & 1) != 0)) {
+						listener.cellFlagged(cell, flagged);
+					}
+				}
+			}
+			for (GameListener listener : current) {
+				if (batchWon) {
+					listener.gameWon(getTime());
+				} else if (batchLostCell >= 0) {
+					listener.gameLost(batchLostCell);
+				}
+			}
+		} finally {
+			// A listener that throws does not get the same events again next batch
+			for (int i = 0; i < numBatchFlags; i++) {
+				batchFlagged.clear(batchFlags[i] >>> 1);
+			}
+			numBatchCells = 0;
+			numBatchFlags = 0;
+			batchBoardChanged = false;
+			batchLostCell = -1;
+			batchWon = false;
+		}
+	}
+
+	/**
+	 * Tells the listeners that the whole board has changed, such as when they
+	 * should draw a board they have not seen yet.
+	 */
+	public void notifyView() {
+		GameListener[] current = listeners;
+		if (batchDepth > 0) {
+			batchBoardChanged = current.length > 0;
 			return;
 		}
-		if (board.getTile(x, y).isFlagged) {
+		for (GameListener listener : current) {
+			listener.boardChanged();
+		}
+	}
+
+	/**
+	 * Tells the listeners that tiles were uncovered. Nothing is sent if no tile
+	 * was, or if nobody is listening.
+	 * 
+	 * @param cells The indices (row * cols + col) of the uncovered tiles
+	 */
+	private void fireCellsRevealed(int[] cells) {
+		GameListener[] current = listeners;
+		if (cells.length == 0 || current.length == 0) {
 			return;
 		}
-		// If mine is revealed
-		else if (board.getTile(x, y).hasMine) {
-			board.reveal(x, y);
-			gameLost = true;
+		if (batchDepth > 0) {
+			if (numBatchCells + cells.length > batchCells.length) {
+				batchCells = Arrays.copyOf(batchCells, Math.max(batchCells.length * 2, numBatchCells + cells.length));
+			}
+			System.arraycopy(cells, 0, batchCells, numBatchCells, cells.length);
+			numBatchCells += cells.length;
+			return;
 		}
-		// Otherwise, recursively dig out neighbors
-		else if (board.numMinesNearby(x, y) == 0 && board.getTile(x, y).isCovered) {
-			board.getTile(x, y).isCovered = true;
-			board.reveal(x, y);
-			revealSpaceHelper(x + 1, y);
-			revealSpaceHelper(x - 1, y);
-			revealSpaceHelper(x, y + 1);
-			revealSpaceHelper(x, y - 1);
-			revealSpaceHelper(x + 1, y + 1);
-			revealSpaceHelper(x - 1, y + 1);
-			revealSpaceHelper(x + 1, y - 1);
-			revealSpaceHelper(x - 1, y - 1);
-		} else {
-			board.getTile(x, y).isCovered = true;
-			board.reveal(x, y);
+		for (GameListener listener : current) {
+			listener.cellsRevealed(cells);
 		}
 	}
 
 	/**
-	 * Notifies any observers that the model has changed.
+	 * Tells the listeners that a flag was placed or removed.
+	 * 
+	 * @param cell    The index (row * cols + col) of the tile
+	 * @param flagged True if the tile is now flagged
 	 */
-	public void notifyView() {
-		setChanged();
-		notifyObservers(board);
+	private void fireCellFlagged(int cell, boolean flagged) {
+		GameListener[] current = listeners;
+		if (current.length == 0) {
+			return;
+		}
+		if (batchDepth > 0) {
+			if (!batchFlagged.get(cell)) {
+				batchFlagged.set(cell);
+				if (numBatchFlags == batchFlags.length) {
+					batchFlags = Arrays.copyOf(batchFlags, Math.max(8, numBatchFlags * 2));
+				}
+				// The tile was toggled, so it started in the other state
+				batchFlags[numBatchFlags++] = cell << 1 | (flagged ? 0 : 1);
+			}
+			return;
+		}
+		for (GameListener listener : current) {
+			listener.cellFlagged(cell, flagged);
+		}
+	}
+
+	/**
+	 * Tells the listeners that the game was won.
+	 */
+	private void fireGameWon() {
+		GameListener[] current = listeners;
+		if (batchDepth > 0) {
+			batchWon = current.length > 0;
+			return;
+		}
+		for (GameListener listener : current) {
+			listener.gameWon(getTime());
+		}
+	}
+
+	/**
+	 * Tells the listeners that the game was lost.
+	 * 
+	 * @param cell The index (row * cols + col) of the mine that was revealed
+	 */
+	private void fireGameLost(int cell) {
+		GameListener[] current = listeners;
+		if (batchDepth > 0) {
+			batchLostCell = current.length > 0 ? cell : -1;
+			return;
+		}
+		for (GameListener listener : current) {
+			listener.gameLost(cell);
+		}
 	}
 
 	/**
-	 * This method flags the spot on the board when the user chooses to.
+	 * This method flags the spot on the board when the user chooses to. Only
+	 * covered tiles that are part of the board can be flagged.
 	 * 
 	 * @param row A row coordinate.
 	 * @param col A column coordinate.
 	 */
 	public void flagSpace(int row, int col) {
-		if (board.getTile(row, col).isFlagged) {
-			board.getTile(row, col).isFlagged = false;
-		} else {
-			board.getTile(row, col).isFlagged = true;
+		if (board.inBounds(row, col) && board.isCovered(row, col)) {
+			board.setFlagged(row, col, !board.isFlagged(row, col));
+			if (recording != null) {
+				recording.record(Move.flag(row * board.getCols() + col), clock.getMillis());
+			}
+			if (journal != null) {
+				journal.record(Move.flag(row * board.getCols() + col));
+			}
+			fireCellFlagged(row * board.getCols() + col, board.isFlagged(row, col));
 		}
-		notifyView();
 	}
 
 	/**
@@ -232,14 +927,7 @@ public class MinesweeperModel extends Observable {
 	 * clicks a mine.
 	 */
 	public void revealMines() {
-		for (int i = 0; i < 13; i++) {
-			for (int j = 0; j < 13; j++) {
-				if (board.getTile(i, j).isCovered && board.getTile(i, j).hasMine) {
-					board.reveal(i, j);
-				}
-			}
-		}
-		notifyView();
+		fireCellsRevealed(board.revealMines());
 	}
 
 	/**
@@ -261,7 +949,7 @@ public class MinesweeperModel extends Observable {
 	}
 
 	/**
-	 * Saves the game by serializing the board into a file named "save_game.dat"
+	 * Saves the game into a file named "save_game.dat"
 	 */
 	public void saveGame(double time, String name) {
 		board.saveBoard(time, name);
@@ -277,13 +965,13 @@ public class MinesweeperModel extends Observable {
 	}
 
 	/**
-	 * If the game has been previously saved, returns the time of the game when the
-	 * board was saved.
+	 * Returns the time of the game, which goes on from the time the board was
+	 * saved with if the game has been previously saved. See getClock().
 	 * 
-	 * @return The previous time
+	 * @return The time in seconds
 	 */
 	public double getTime() {
-		return board.time;
+		return clock.getSeconds();
 	}
 
 	/**
@@ -292,7 +980,29 @@ public class MinesweeperModel extends Observable {
 	 * @return whether the game has been lost
 	 */
 	public boolean getLost() {
-		return gameLost;
+		return board.numTripped() > 0;
+	}
+
+	/**
+	 * Returns whether the game has been won, meaning that the only covered tiles
+	 * left are the mines.
+	 * 
+	 * @return whether the game has been won
+	 */
+	public boolean getWon() {
+		return board.numTripped() == 0 && board.numCovered() == board.bombCount;
+	}
+
+	/**
+	 * Returns the current state of the game.
+	 * 
+	 * @return The outcome of the game so far
+	 */
+	public RevealResult.Outcome getOutcome() {
+		if (getLost()) {
+			return RevealResult.Outcome.LOST;
+		}
+		return getWon() ? RevealResult.Outcome.WON : RevealResult.Outcome.IN_PROGRESS;
 	}
 
 	/**
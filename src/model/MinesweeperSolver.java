@@ -0,0 +1,476 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A deduction engine that finds tiles which are certainly safe or certainly
+ * mines, using only what a player can see. The frontier is made of the revealed
+ * numbered tiles that still have unknown neighbours, where an unknown tile is a
+ * covered tile that has not been deduced to be safe or a mine. Two rules are
+ * applied to the frontier:
+ * 
+ * Single tile: if a number already touches as many deduced mines as it shows,
+ * its unknown neighbours are safe; if it needs as many more mines as it has
+ * unknown neighbours, they are all mines.
+ * 
+ * Pair subset: if the unknown neighbours of one number are a subset of those of
+ * a nearby number, the tiles only the second touches hold the difference of
+ * their remaining mines, which can make them all safe or all mines.
+ * 
+ * The solver is kept up to date by calling revealed() and flagged() after every
+ * move. Only the numbers around tiles that changed are examined again, so the
+ * cost of a move is proportional to the part of the frontier it changed rather
+ * than to the size of the board. Flags placed by the player are not trusted,
+ * since they can be wrong; they only decide whether a deduced mine still needs
+ * a flag.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class MinesweeperSolver {
+
+	private MinesweeperBoard board;
+	private int rows;
+	private int cols;
+	// Covered tiles deduced to be safe or to be mines
+	private BitSet safe = new BitSet();
+	private BitSet mines = new BitSet();
+	// Numbers waiting for the single tile rule, without duplicates. The queues are
+	// emptied and refilled all the time, so they are marked in fixed size bitsets:
+	// clearing the highest bit of a BitSet scans it for the new highest bit.
+	private long[] queued;
+	private int[] work = new int[64];
+	private int numWork;
+	// Numbers the single tile rule could not resolve, waiting for the pair rule
+	private long[] pairQueued;
+	private int[] pairWork = new int[64];
+	private int numPairWork;
+	// Deduced tiles the player has yet to act on; stale entries are skipped lazily
+	private int[] safeStack = new int[64];
+	private int numSafe;
+	private int[] mineStack = new int[64];
+	private int numMines;
+	// Scratch space for the unknown neighbours of two numbers
+	private int[] unknownA = new int[8];
+	private int[] unknownB = new int[8];
+
+	/**
+	 * Constructs a solver for a board, examining every number that is already
+	 * revealed, such as on a loaded game.
+	 * 
+	 * @param board The board of the game
+	 */
+	public MinesweeperSolver(MinesweeperBoard board) {
+		this.board = board;
+		this.rows = board.getRows();
+		this.cols = board.getCols();
+		this.queued = new long[(rows * cols + 63) >> 6];
+		this.pairQueued = new long[(rows * cols + 63) >> 6];
+		for (int k = 0; k < board.numInBounds(); k++) {
+			int cell = board.inBoundsCell(k);
+			if (!board.isCovered(cell / cols, cell % cols)) {
+				enqueue(cell);
+			}
+		}
+	}
+
+	/**
+	 * Updates the solver after tiles were revealed.
+	 * 
+	 * @param cells The indices (row * cols + col) of the revealed tiles, as
+	 *              returned by RevealResult.getRevealed()
+	 */
+	public void revealed(int[] cells) {
+		for (int cell : cells) {
+			enqueue(cell);
+			// A tile that was deduced already has had its neighbours examined
+			if (!safe.get(cell)) {
+				enqueueNeighbours(cell);
+			}
+		}
+	}
+
+	/**
+	 * Updates the solver after a flag was placed or removed. A deduced mine that
+	 * loses its flag is offered as a hint again, and so is a safe tile the player
+	 * had flagged by mistake.
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 */
+	public void flagged(int row, int col) {
+		int cell = row * cols + col;
+		if (mines.get(cell) && !board.isFlagged(row, col)) {
+			mineStack = push(mineStack, numMines++, cell);
+		} else if (safe.get(cell) && !board.isFlagged(row, col) && board.isCovered(row, col)) {
+			safeStack = push(safeStack, numSafe++, cell);
+		}
+	}
+
+	/**
+	 * Returns the next move the solver is certain of: revealing a safe tile if
+	 * there is one, otherwise flagging a mine that has no flag yet.
+	 * 
+	 * @return A move encoded with Move, or Move.NONE if a guess is needed
+	 */
+	public int hint() {
+		while (true) {
+			propagateSingle();
+			int move = nextMove();
+			if (move != Move.NONE || numPairWork == 0) {
+				return move;
+			}
+			int cell = pairWork[--numPairWork];
+			clearBit(pairQueued, cell);
+			applyPairs(cell);
+		}
+	}
+
+	/**
+	 * Returns the first deduction the player has yet to act on, dropping the ones
+	 * that were already played.
+	 * 
+	 * @return A move encoded with Move, or Move.NONE if there is none
+	 */
+	private int nextMove() {
+		while (numSafe > 0) {
+			int cell = safeStack[numSafe - 1];
+			// A safe tile the player flagged cannot be revealed until the flag is
+			// removed
+			if (board.isCovered(cell / cols, cell % cols) && !board.isFlagged(cell / cols, cell % cols)) {
+				return Move.reveal(cell);
+			}
+			numSafe--;
+		}
+		while (numMines > 0) {
+			int cell = mineStack[numMines - 1];
+			if (board.isCovered(cell / cols, cell % cols) && !board.isFlagged(cell / cols, cell % cols)) {
+				return Move.flag(cell);
+			}
+			numMines--;
+		}
+		return Move.NONE;
+	}
+
+	/**
+	 * Returns whether a tile has been deduced to be safe.
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 * @return True if the tile is certainly not a mine
+	 */
+	public boolean isSafe(int row, int col) {
+		propagate();
+		return safe.get(row * cols + col);
+	}
+
+	/**
+	 * Returns whether a tile has been deduced to be a mine.
+	 * 
+	 * @param row A row coordinate
+	 * @param col A column coordinate
+	 * @return True if the tile is certainly a mine
+	 */
+	public boolean isMine(int row, int col) {
+		propagate();
+		return mines.get(row * cols + col);
+	}
+
+	/**
+	 * Examines queued numbers until nothing more can be deduced from them.
+	 */
+	private void propagate() {
+		propagateSingle();
+		while (numPairWork > 0) {
+			int cell = pairWork[--numPairWork];
+			clearBit(pairQueued, cell);
+			applyPairs(cell);
+			propagateSingle();
+		}
+	}
+
+	/**
+	 * Applies the single tile rule to queued numbers until nothing more can be
+	 * deduced from it. Numbers it cannot resolve are queued for the pair rule,
+	 * which is much more expensive, so hint() only applies it when the single tile
+	 * rule has found no move.
+	 */
+	private void propagateSingle() {
+		while (numWork > 0) {
+			int cell = work[--numWork];
+			clearBit(queued, cell);
+			if (!applySingle(cell) && !getBit(pairQueued, cell)) {
+				setBit(pairQueued, cell);
+				pairWork = push(pairWork, numPairWork++, cell);
+			}
+		}
+	}
+
+	/**
+	 * Applies the single tile rule to a number.
+	 * 
+	 * @param cell The index of a revealed tile
+	 * @return True if something was deduced, or the number has nothing left to
+	 *         deduce
+	 */
+	private boolean applySingle(int cell) {
+		int unknown = unknownNeighbours(cell, unknownA);
+		if (unknown == 0) {
+			return true;
+		}
+		int need = remainingMines(cell);
+		if (need == 0) {
+			markAll(unknownA, unknown, false);
+			return true;
+		} else if (need == unknown) {
+			markAll(unknownA, unknown, true);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Applies the pair subset rule to a number and every number within two tiles
+	 * of it, which are the only numbers it can share unknown neighbours with.
+	 * 
+	 * @param cell The index of a revealed tile with unknown neighbours
+	 */
+	private void applyPairs(int cell) {
+		int r = cell / cols;
+		int c = cell % cols;
+		for (int i = r - 2; i <= r + 2; i++) {
+			for (int j = c - 2; j <= c + 2; j++) {
+				if ((i == r && j == c) || !board.inBounds(i, j) || board.isCovered(i, j)) {
+					continue;
+				}
+				// Earlier pairs may have resolved some neighbours of this number
+				int numA = unknownNeighbours(cell, unknownA);
+				if (numA == 0) {
+					return;
+				}
+				int other = i * cols + j;
+				int numB = unknownNeighbours(other, unknownB);
+				if (numB == 0) {
+					continue;
+				}
+				if (numA <= numB && contains(unknownB, numB, unknownA, numA)) {
+					markDifference(unknownB, numB, unknownA, numA, remainingMines(other) - remainingMines(cell));
+				} else if (numB < numA && contains(unknownA, numA, unknownB, numB)) {
+					markDifference(unknownA, numA, unknownB, numB, remainingMines(cell) - remainingMines(other));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the tiles of a larger set that are not in a smaller one, if the mines
+	 * left between them force them all to be safe or all to be mines.
+	 * 
+	 * @param larger    The tiles of the larger set
+	 * @param numLarge  The size of the larger set
+	 * @param smaller   The tiles of the smaller set
+	 * @param numSmall  The size of the smaller set
+	 * @param remaining The number of mines among the difference
+	 */
+	private void markDifference(int[] larger, int numLarge, int[] smaller, int numSmall, int remaining) {
+		int size = numLarge - numSmall;
+		if (size == 0 || (remaining != 0 && remaining != size)) {
+			return;
+		}
+		for (int k = 0; k < numLarge; k++) {
+			if (!contains(smaller, numSmall, larger[k])) {
+				mark(larger[k], remaining != 0);
+			}
+		}
+	}
+
+	/**
+	 * Marks a set of tiles as all safe or all mines.
+	 * 
+	 * @param cells The tiles to mark
+	 * @param count The number of tiles to read from cells
+	 * @param mine  True to mark them as mines, false to mark them as safe
+	 */
+	private void markAll(int[] cells, int count, boolean mine) {
+		for (int k = 0; k < count; k++) {
+			mark(cells[k], mine);
+		}
+	}
+
+	/**
+	 * Records a deduction and queues the numbers it affects.
+	 * 
+	 * @param cell The index of a covered tile
+	 * @param mine True if the tile is a mine, false if it is safe
+	 */
+	private void mark(int cell, boolean mine) {
+		if (safe.get(cell) || mines.get(cell)) {
+			return;
+		}
+		if (mine) {
+			mines.set(cell);
+			mineStack = push(mineStack, numMines++, cell);
+		} else {
+			safe.set(cell);
+			safeStack = push(safeStack, numSafe++, cell);
+		}
+		enqueueNeighbours(cell);
+	}
+
+	/**
+	 * Finds the unknown neighbours of a tile.
+	 * 
+	 * @param cell The index of a tile
+	 * @param out  An array of at least 8 to store the indices of the neighbours in
+	 * @return The number of unknown neighbours
+	 */
+	private int unknownNeighbours(int cell, int[] out) {
+		int r = cell / cols;
+		int c = cell % cols;
+		int count = 0;
+		for (int i = r - 1; i <= r + 1; i++) {
+			for (int j = c - 1; j <= c + 1; j++) {
+				int other = i * cols + j;
+				if (board.inBounds(i, j) && board.isCovered(i, j) && !safe.get(other) && !mines.get(other)) {
+					out[count++] = other;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns how many more mines a number needs besides the deduced mines around
+	 * it.
+	 * 
+	 * @param cell The index of a revealed tile
+	 * @return The number of mines among its unknown neighbours
+	 */
+	private int remainingMines(int cell) {
+		int r = cell / cols;
+		int c = cell % cols;
+		int need = board.getDisplayNum(r, c);
+		for (int i = Math.max(0, r - 1); i <= Math.min(rows - 1, r + 1); i++) {
+			for (int j = Math.max(0, c - 1); j <= Math.min(cols - 1, c + 1); j++) {
+				if (mines.get(i * cols + j)) {
+					need--;
+				}
+			}
+		}
+		return need;
+	}
+
+	/**
+	 * Queues a revealed number to be examined.
+	 * 
+	 * @param cell The index of a tile
+	 */
+	private void enqueue(int cell) {
+		int r = cell / cols;
+		int c = cell % cols;
+		if (getBit(queued, cell) || board.isCovered(r, c) || board.hasMine(r, c) || board.getDisplayNum(r, c) == 0) {
+			return;
+		}
+		setBit(queued, cell);
+		work = push(work, numWork++, cell);
+	}
+
+	/**
+	 * Queues the revealed numbers around a tile.
+	 * 
+	 * @param cell The index of a tile
+	 */
+	private void enqueueNeighbours(int cell) {
+		int r = cell / cols;
+		int c = cell % cols;
+		for (int i = r - 1; i <= r + 1; i++) {
+			for (int j = c - 1; j <= c + 1; j++) {
+				if (board.inBounds(i, j) && (i != r || j != c)) {
+					enqueue(i * cols + j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether every tile of a set is in another set.
+	 * 
+	 * @param set    The tiles of the containing set
+	 * @param numSet The size of the containing set
+	 * @param subset The tiles of the contained set
+	 * @param numSub The size of the contained set
+	 * @return True if subset is contained in set
+	 */
+	private static boolean contains(int[] set, int numSet, int[] subset, int numSub) {
+		for (int k = 0; k < numSub; k++) {
+			if (!contains(set, numSet, subset[k])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a set of tiles contains a tile.
+	 * 
+	 * @param set    The tiles of the set
+	 * @param numSet The size of the set
+	 * @param cell   The index of a tile
+	 * @return True if the tile is in the set
+	 */
+	private static boolean contains(int[] set, int numSet, int cell) {
+		for (int k = 0; k < numSet; k++) {
+			if (set[k] == cell) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a bit of a bitset.
+	 * 
+	 * @param bits The words of the bitset
+	 * @param bit  The index of the bit
+	 * @return True if the bit is set
+	 */
+	private static boolean getBit(long[] bits, int bit) {
+		return (bits[bit >> 6] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Sets a bit of a bitset.
+	 * 
+	 * @param bits The words of the bitset
+	 * @param bit  The index of the bit
+	 */
+	private static void setBit(long[] bits, int bit) {
+		bits[bit >> 6] |= 1L << bit;
+	}
+
+	/**
+	 * Clears a bit of a bitset.
+	 * 
+	 * @param bits The words of the bitset
+	 * @param bit  The index of the bit
+	 */
+	private static void clearBit(long[] bits, int bit) {
+		bits[bit >> 6] &= ~(1L << bit);
+	}
+
+	/**
+	 * Stores a value at the end of a stack, growing it if it is full.
+	 * 
+	 * @param stack The array holding the stack
+	 * @param size  The number of values in the stack
+	 * @param value The value to store
+	 * @return The array holding the stack, which may be a new array
+	 */
+	private static int[] push(int[] stack, int size, int value) {
+		if (size == stack.length) {
+			stack = Arrays.copyOf(stack, size * 2);
+		}
+		stack[size] = value;
+		return stack;
+	}
+}
@@ -0,0 +1,69 @@
+package model;
+
+/**
+ * Encodes moves on the board as single ints, so that sequences of moves can be
+ * stored and passed around as primitive arrays. The two lowest bits hold the
+ * type of the move and the remaining bits hold the index (row * cols + col) of
+ * the tile it applies to.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class Move {
+
+	public static final int REVEAL = 0;
+	public static final int FLAG = 1;
+	public static final int CHORD = 2;
+	// Returned instead of a move when there is no move to make
+	public static final int NONE = -1;
+
+	/**
+	 * Returns a move that reveals a tile.
+	 * 
+	 * @param cell The index (row * cols + col) of the tile
+	 * @return The encoded move
+	 */
+	public static int reveal(int cell) {
+		return cell << 2 | REVEAL;
+	}
+
+	/**
+	 * Returns a move that places or removes a flag on a tile.
+	 * 
+	 * @param cell The index (row * cols + col) of the tile
+	 * @return The encoded move
+	 */
+	public static int flag(int cell) {
+		return cell << 2 | FLAG;
+	}
+
+	/**
+	 * Returns a move that chords on a revealed number, revealing its neighbors
+	 * that are not flagged.
+	 * 
+	 * @param cell The index (row * cols + col) of the tile
+	 * @return The encoded move
+	 */
+	public static int chord(int cell) {
+		return cell << 2 | CHORD;
+	}
+
+	/**
+	 * Returns the type of a move.
+	 * 
+	 * @param move An encoded move
+	 * @return REVEAL, FLAG or CHORD
+	 */
+	public static int type(int move) {
+		return move & 3;
+	}
+
+	/**
+	 * Returns the tile a move applies to.
+	 * 
+	 * @param move An encoded move
+	 * @return The index (row * cols + col) of the tile
+	 */
+	public static int cell(int move) {
+		return move >>> 2;
+	}
+}
@@ -0,0 +1,545 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Saves a game as it is played. Rather than writing the whole board on every
+ * save, the journal keeps a checkpoint of the board in the save file and appends
+ * every move made since to a journal file next to it ("save_game.journal" for
+ * "save_game.dat"), a few bytes per move. Moves are buffered in memory and
+ * written out at least once a second, so a crash loses at most the last second
+ * of play. Once the journal has grown larger than the checkpoint, a new
+ * checkpoint is written and the journal starts over.
+ * 
+ * The journal starts with the checksum of the checkpoint it belongs to, so a
+ * journal is never replayed onto a different checkpoint. Every move is stored
+ * with the time of the game in milliseconds and a checksum, and replay stops at
+ * the first move that was only partly written.
+ * 
+ * If the game has a GameRecording, the recording is saved next to the
+ * checkpoint ("save_game.rec") and the journal header holds its number of
+ * moves. The journal holds the same moves the recording does, so recover()
+ * brings the recording up to date from the journal too.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class MoveJournal {
+
+	// Header: magic number, version, the checksum of the checkpoint and the
+	// number of moves of the recording saved with it (-1 if there is none)
+	private static final int MAGIC = 0x4D534A4E;
+	private static final short VERSION = 2;
+	private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+	// A move: the encoded move, the time of the game and a checksum
+	private static final int RECORD_SIZE = 4 + 4 + 4;
+	// A record that only holds the time of the game, written when closing
+	private static final int TIME = Move.NONE;
+	private static final long FLUSH_MILLIS = 1000;
+	// Smallest journal that is replaced by a checkpoint
+	private static final long MIN_CHECKPOINT_BYTES = 64 * 1024;
+	// Writes out the buffered moves of every journal
+	private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "journal-flush");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private MinesweeperModel model;
+	private String saveFile;
+	private File journalFile;
+	private String name;
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+	private CRC32 crc = new CRC32();
+	private byte[] record = new byte[8];
+	private ScheduledFuture<?> flushing;
+	// Writes checkpoints, and the checkpoint being written if there is one
+	private Executor executor = Runnable::run;
+	private CompletableFuture<Void> checkpointing;
+	// Size of the journal on disk and in the buffer, and of the checkpoint
+	private long journalBytes;
+	private long checkpointBytes;
+	private long checkpointAfter = MIN_CHECKPOINT_BYTES;
+
+	/**
+	 * Opens the journal of a game. For a new game the journal is started by the
+	 * checkpoint written after the first move. For a game loaded with recover(),
+	 * new moves are added to the end of its journal.
+	 * 
+	 * @param model    The game to save
+	 * @param saveFile The file that holds the checkpoint
+	 * @throws IOException if the journal cannot be opened
+	 */
+	public MoveJournal(MinesweeperModel model, String saveFile) throws IOException {
+		this.model = model;
+		this.saveFile = saveFile;
+		this.journalFile = journalFile(saveFile);
+		this.name = model.getName();
+		if (!model.getFirstMove()) {
+			int checksum = model.getBoard().getSavedChecksum();
+			channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			long end = replay(channel, checksum, null, null);
+			if (end < 0) {
+				// The journal belongs to another checkpoint, so none of its moves are played
+				GameRecording recording = model.getRecording();
+				writeHeader(checksum, recording == null ? -1 : recording.numMoves());
+				journalBytes = HEADER_SIZE;
+			} else {
+				// Drops a move that was only partly written
+				channel.truncate(end);
+				channel.position(end);
+				journalBytes = end;
+			}
+			checkpointBytes = new File(saveFile).length();
+		}
+		flushing = FLUSHER.scheduleWithFixedDelay(this::flushQuietly, FLUSH_MILLIS, FLUSH_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Loads a saved game: the checkpoint in the save file, and then every move of
+	 * its journal that was written completely. The recording saved with the
+	 * checkpoint, if there is one, gets the moves of the journal too and is set
+	 * on the game.
+	 * 
+	 * @param saveFile The file that holds the checkpoint
+	 * @return The game as it was after the last saved move
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	public static MinesweeperModel recover(String saveFile) throws IOException {
+		return recover(saveFile, null);
+	}
+
+	/**
+	 * Loads a saved game like recover(), reporting how much of the checkpoint has
+	 * been read as it goes.
+	 * 
+	 * @param saveFile The file that holds the checkpoint
+	 * @param progress Receives the fraction (0 to 1) of the game loaded so far, or
+	 *                 null
+	 * @return The game as it was after the last saved move
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	public static MinesweeperModel recover(String saveFile, DoubleConsumer progress) throws IOException {
+		MinesweeperBoard board = MinesweeperBoard.loadBoard(saveFile, progress);
+		MinesweeperModel model = new MinesweeperModel(board);
+		GameRecording recording = null;
+		File recordingFile = GameRecording.recordingFile(saveFile);
+		if (recordingFile.isFile()) {
+			try {
+				recording = GameRecording.read(recordingFile);
+			} catch (IOException e) {
+				// The game can still be played, but its score cannot be checked
+				e.printStackTrace();
+			}
+		}
+		long end = -1;
+		File journal = journalFile(saveFile);
+		if (journal.isFile()) {
+			FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.READ);
+			try {
+				end = replay(channel, board.getSavedChecksum(), model, recording);
+			} finally {
+				channel.close();
+			}
+		}
+		if (end < 0 && recording != null) {
+			// No moves were played from a journal, so the recording is as it was saved
+			recording.resume(model);
+		}
+		return model;
+	}
+
+	/**
+	 * Returns the journal file that belongs to a save file.
+	 * 
+	 * @param saveFile The file that holds the checkpoint
+	 * @return The journal file
+	 */
+	public static File journalFile(String saveFile) {
+		return new File(saveFile.endsWith(".dat") ? saveFile.substring(0, saveFile.length() - 4) + ".journal"
+				: saveFile + ".journal");
+	}
+
+	/**
+	 * Sets the executor that writes checkpoints. By default checkpoints are
+	 * written by the thread that makes the move. Moves made while a checkpoint is
+	 * written are kept in memory and written out after it.
+	 * 
+	 * @param executor The executor, such as GameStorage.getExecutor()
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the name of the player that is saved with the next checkpoint.
+	 * 
+	 * @param name The name of the player
+	 */
+	public synchronized void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Sets how large the journal may grow before it is replaced by a checkpoint.
+	 * The journal may always grow as large as the checkpoint itself.
+	 * 
+	 * @param bytes The size in bytes
+	 */
+	public synchronized void setCheckpointBytes(long bytes) {
+		this.checkpointAfter = bytes;
+	}
+
+	/**
+	 * Returns the time of the game in seconds, as kept by the clock of the model.
+	 * 
+	 * @return The time of the game
+	 */
+	public double getTime() {
+		return model.getTime();
+	}
+
+	/**
+	 * Adds a move to the journal. Moves made before the first checkpoint are not
+	 * kept, since the checkpoint holds them.
+	 * 
+	 * @param move A move encoded with Move
+	 */
+	public synchronized void record(int move) {
+		if (channel == null && checkpointing == null) {
+			return;
+		}
+		try {
+			append(move);
+			if (journalBytes > Math.max(checkpointAfter, checkpointBytes)) {
+				checkpoint();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			stop();
+		}
+	}
+
+	/**
+	 * Saves the whole board as a new checkpoint and starts an empty journal for
+	 * it. Called by the model after the first move, when the mines are placed. A
+	 * copy of the board is written by the executor, so the game can go on in the
+	 * meantime.
+	 */
+	public synchronized void checkpoint() {
+		if (flushing == null || checkpointing != null) {
+			return;
+		}
+		try {
+			// The old journal stays complete until the new checkpoint replaces it
+			flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			stop();
+			return;
+		}
+		MinesweeperBoard copy = new MinesweeperBoard(model.getBoard());
+		double time = getTime();
+		String player = name;
+		GameRecording recording = model.getRecording();
+		byte[] recorded = recording == null ? null : recording.toByteArray();
+		int recordedMoves = recording == null ? -1 : recording.numMoves();
+		CompletableFuture<Void> done = new CompletableFuture<Void>();
+		checkpointing = done;
+		journalBytes = HEADER_SIZE;
+		executor.execute(() -> {
+			try {
+				writeCheckpoint(copy, time, player, recorded, recordedMoves);
+			} finally {
+				done.complete(null);
+			}
+		});
+	}
+
+	/**
+	 * Writes the buffered moves to the journal file. Does nothing while a
+	 * checkpoint is being written.
+	 * 
+	 * @throws IOException if the journal cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		if (channel == null || checkpointing != null || buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Saves the time of the game, writes the buffered moves and closes the
+	 * journal, after the checkpoint being written if there is one. The game can
+	 * be loaded again with recover().
+	 */
+	public void close() {
+		awaitCheckpoint();
+		synchronized (this) {
+			try {
+				if (channel != null) {
+					append(TIME);
+					flush();
+					channel.force(false);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			stop();
+		}
+	}
+
+	/**
+	 * Closes the journal and deletes the save and its recording, for games that
+	 * are over.
+	 */
+	public void discard() {
+		awaitCheckpoint();
+		synchronized (this) {
+			stop();
+			journalFile.delete();
+			new File(saveFile).delete();
+			GameRecording.recordingFile(saveFile).delete();
+		}
+	}
+
+	/**
+	 * Writes a checkpoint and starts the journal over for it, followed by the
+	 * moves made while it was written.
+	 * 
+	 * @param copy          A copy of the board when the checkpoint was taken
+	 * @param time          The time of the game when the checkpoint was taken
+	 * @param player        The name of the player
+	 * @param recorded      The encoded recording of the game when the checkpoint
+	 *                      was taken, or null if it has none
+	 * @param recordedMoves The number of moves of the recording, or -1
+	 */
+	private void writeCheckpoint(MinesweeperBoard copy, double time, String player, byte[] recorded,
+			int recordedMoves) {
+		try {
+			// The recording is written first, so that it never has fewer moves than
+			// the checkpoint; recover() drops the moves the journal has again
+			if (recorded != null) {
+				GameRecording.write(GameRecording.recordingFile(saveFile), recorded);
+			}
+			copy.writeBoard(time, player, saveFile);
+			synchronized (this) {
+				if (flushing == null) {
+					return;
+				}
+				if (channel == null) {
+					channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE,
+							StandardOpenOption.READ, StandardOpenOption.WRITE);
+				}
+				writeHeader(copy.getSavedChecksum(), recordedMoves);
+				checkpointBytes = new File(saveFile).length();
+				checkpointing = null;
+				flush();
+			}
+		} catch (IOException e) {
+			synchronized (this) {
+				e.printStackTrace();
+				stop();
+			}
+		} finally {
+			synchronized (this) {
+				checkpointing = null;
+			}
+		}
+	}
+
+	/**
+	 * Waits until the checkpoint being written, if any, is done.
+	 */
+	private void awaitCheckpoint() {
+		CompletableFuture<Void> pending;
+		synchronized (this) {
+			pending = checkpointing;
+		}
+		if (pending != null) {
+			pending.join();
+		}
+	}
+
+	/**
+	 * Returns the time of the game in milliseconds.
+	 * 
+	 * @return The time of the game
+	 */
+	private long millis() {
+		return model.getClock().getMillis();
+	}
+
+	/**
+	 * Adds a record to the buffer, writing the buffer out first if it is full.
+	 * 
+	 * @param move A move encoded with Move, or TIME
+	 * @throws IOException if the journal cannot be written
+	 */
+	private void append(int move) throws IOException {
+		if (!buffer.hasRemaining()) {
+			if (checkpointing != null) {
+				// Moves wait in memory until the checkpoint is written
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+			} else {
+				flush();
+			}
+		}
+		int time = (int) Math.min(millis(), Integer.MAX_VALUE);
+		buffer.putInt(move).putInt(time).putInt(check(move, time));
+		journalBytes += RECORD_SIZE;
+	}
+
+	/**
+	 * Starts the journal over for a checkpoint and makes sure it is on disk.
+	 * 
+	 * @param checksum      The checksum of the checkpoint
+	 * @param recordedMoves The number of moves of the recording saved with the
+	 *                      checkpoint, or -1 if there is none
+	 * @throws IOException if the journal cannot be written
+	 */
+	private void writeHeader(int checksum, int recordedMoves) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putShort(VERSION).putInt(checksum).putInt(recordedMoves).flip();
+		channel.truncate(0);
+		channel.position(0);
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Writes the buffered moves, called once a second by the flushing thread.
+	 */
+	private synchronized void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			stop();
+		}
+	}
+
+	/**
+	 * Stops writing the journal and closes its file.
+	 */
+	private void stop() {
+		if (flushing != null) {
+			flushing.cancel(false);
+			flushing = null;
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Returns the checksum of a record.
+	 * 
+	 * @param move A move encoded with Move
+	 * @param time The time of the game in milliseconds
+	 * @return The checksum
+	 */
+	private int check(int move, int time) {
+		ByteBuffer.wrap(record).putInt(move).putInt(time);
+		crc.reset();
+		crc.update(record);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Reads a journal and plays its moves onto a game, stopping at the first
+	 * move that was only partly written. The moves are added to the recording
+	 * saved with the checkpoint, which is then set on the game; if the recording
+	 * does not have the moves the journal header says it had, the game is left
+	 * without one.
+	 * 
+	 * @param channel   The journal
+	 * @param checksum  The checksum of the checkpoint the game was loaded from
+	 * @param model     The game to play the moves on, or null to only read them
+	 * @param recording The recording saved with the checkpoint, or null
+	 * @return The length of the complete moves, or -1 if the journal belongs to
+	 *         another checkpoint
+	 * @throws IOException if the journal cannot be read
+	 */
+	private static long replay(FileChannel channel, int checksum, MinesweeperModel model, GameRecording recording)
+			throws IOException {
+		long size = channel.size();
+		ByteBuffer data = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+		while (data.hasRemaining()) {
+			if (channel.read(data, data.position()) < 0) {
+				break;
+			}
+		}
+		data.flip();
+		if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC || data.getShort() != VERSION
+				|| data.getInt() != checksum) {
+			return -1;
+		}
+		int recordedMoves = data.getInt();
+		if (model == null || recording == null || recordedMoves < 0 || !recording.truncate(recordedMoves)) {
+			recording = null;
+		}
+		CRC32 crc = new CRC32();
+		long time = -1;
+		while (data.remaining() >= RECORD_SIZE) {
+			int move = data.getInt();
+			int millis = data.getInt();
+			crc.reset();
+			crc.update(data.array(), data.position() - 8, 8);
+			if (data.getInt() != (int) crc.getValue()) {
+				data.position(data.position() - RECORD_SIZE);
+				break;
+			}
+			time = millis;
+			if (recording != null && move != TIME) {
+				recording.record(move, millis);
+			}
+			if (model != null && move != TIME) {
+				MinesweeperBoard board = model.getBoard();
+				int r = Move.cell(move) / board.getCols();
+				int c = Move.cell(move) % board.getCols();
+				if (Move.type(move) == Move.FLAG) {
+					model.flagSpace(r, c);
+				} else if (Move.type(move) == Move.CHORD) {
+					model.chordSpaceHelper(r, c);
+				} else {
+					model.revealSpaceHelper(r, c);
+				}
+			}
+		}
+		if (model != null && time >= 0) {
+			model.getBoard().time = time / 1000.0;
+			model.getClock().setNanos(time * 1_000_000);
+		}
+		if (recording != null) {
+			recording.resume(model);
+		}
+		return data.position();
+	}
+}
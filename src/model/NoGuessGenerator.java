@@ -0,0 +1,138 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates boards that can be solved from the first click without guessing.
+ * Candidate layouts are made the same way as for a regular game, and each one
+ * is played by the MinesweeperSolver from the first click; a candidate passes if
+ * the solver wins it. Candidates are tried on all cores at once, and the
+ * generator stops at the first one that passes or when its time budget runs
+ * out. Works on any board, including custom shapes.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class NoGuessGenerator {
+
+	private MinesweeperBoard template;
+	private int threads;
+	private long budgetMillis;
+	private long candidates;
+
+	/**
+	 * Constructs a generator for copies of an empty board. Flags on the board are
+	 * ignored.
+	 * 
+	 * @param board An empty board, whose bombCount gives the number of mines
+	 */
+	public NoGuessGenerator(MinesweeperBoard board) {
+		this.template = new MinesweeperBoard(board);
+		for (int r = 0; r < template.getRows(); r++) {
+			for (int c = 0; c < template.getCols(); c++) {
+				if (template.isFlagged(r, c)) {
+					template.setFlagged(r, c, false);
+				}
+			}
+		}
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.budgetMillis = 2000;
+	}
+
+	/**
+	 * Sets the number of threads that try candidates.
+	 * 
+	 * @param threads The number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets how long the generator may search before giving up.
+	 * 
+	 * @param budgetMillis The time budget in milliseconds
+	 */
+	public void setTimeBudget(long budgetMillis) {
+		this.budgetMillis = budgetMillis;
+	}
+
+	/**
+	 * Returns how many candidates the last call to generate() tried.
+	 * 
+	 * @return The number of candidates
+	 */
+	public long getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Searches for a board that can be solved without guessing when the first
+	 * click is at the given tile. Which passing board is found first depends on
+	 * the timing of the threads, unless a single thread is used.
+	 * 
+	 * @param row  A row coordinate of the first click
+	 * @param col  A column coordinate of the first click
+	 * @param seed A seed that the seeds of the candidates are derived from
+	 * @return A board with its mines placed and every tile covered, or null if
+	 *         none was found within the time budget
+	 */
+	public MinesweeperBoard generate(int row, int col, long seed) {
+		long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+		AtomicLong next = new AtomicLong();
+		AtomicReference<MinesweeperBoard> found = new AtomicReference<MinesweeperBoard>();
+		List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < threads; i++) {
+			workers.add(() -> {
+				while (found.get() == null && System.nanoTime() < deadline) {
+					MinesweeperBoard board = candidate(row, col, seed + next.getAndIncrement());
+					if (board != null) {
+						found.compareAndSet(null, board);
+					}
+				}
+				return null;
+			});
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invokeAll(workers);
+		} finally {
+			pool.shutdown();
+		}
+		candidates = next.get();
+		return found.get();
+	}
+
+	/**
+	 * Makes a candidate layout and plays it with the solver.
+	 * 
+	 * @param row  A row coordinate of the first click
+	 * @param col  A column coordinate of the first click
+	 * @param seed A seed for placing the mines
+	 * @return The candidate with every tile covered if the solver won it, or null
+	 */
+	public MinesweeperBoard candidate(int row, int col, long seed) {
+		MinesweeperBoard board = new MinesweeperBoard(template);
+		new MinesweeperModel(board, seed).setBombs(board.bombCount, row, col);
+		MinesweeperBoard layout = new MinesweeperBoard(board);
+		MinesweeperModel model = new MinesweeperModel(board);
+
+		MinesweeperSolver solver = new MinesweeperSolver(board);
+		solver.revealed(model.revealSpaceHelper(row, col).getRevealed());
+		int cols = board.getCols();
+		for (int move = solver.hint(); move != Move.NONE; move = solver.hint()) {
+			int cell = Move.cell(move);
+			if (Move.type(move) == Move.FLAG) {
+				// A flag does not change what the solver knows, and the board is thrown away
+				board.setFlagged(cell / cols, cell % cols, true);
+			} else {
+				solver.revealed(model.revealSpaceHelper(cell / cols, cell % cols).getRevealed());
+			}
+		}
+		return model.getWon() ? layout : null;
+	}
+}
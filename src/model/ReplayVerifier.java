@@ -0,0 +1,247 @@
+package model;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks scores by replaying the recordings of their games without a user
+ * interface. A score is accepted if its game replays to a win, its moves were
+ * not made faster than a person can click, and it is no lower than the time the
+ * recording took. Large batches are replayed on all cores with a fork-join
+ * pool, so a LeaderboardService can check thousands of scores per second.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class ReplayVerifier {
+
+	/**
+	 * Whether a score was accepted, or why it was not.
+	 */
+	public enum Verdict {
+		VALID, MALFORMED, NOT_WON, TOO_FAST, TIME_MISMATCH
+	}
+
+	// Number of recordings a single task replays before it is split no further
+	private static final int BATCH_SIZE = 64;
+
+	// Empty boards by description, so that games on the same board share one
+	private ConcurrentHashMap<String, MinesweeperBoard> templates = new ConcurrentHashMap<String, MinesweeperBoard>();
+	private long minMoveMillis = 25;
+	private int toleranceSeconds = 1;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Sets the shortest average time between moves that a person could keep up.
+	 * 
+	 * @param minMoveMillis The time in milliseconds
+	 */
+	public void setMinMoveMillis(long minMoveMillis) {
+		this.minMoveMillis = minMoveMillis;
+	}
+
+	/**
+	 * Sets how far below the time of its recording a score may be, to allow for
+	 * the rounding of the clock that shows the time.
+	 * 
+	 * @param toleranceSeconds The tolerance in seconds
+	 */
+	public void setToleranceSeconds(int toleranceSeconds) {
+		this.toleranceSeconds = toleranceSeconds;
+	}
+
+	/**
+	 * Sets the number of threads that replay large batches.
+	 * 
+	 * @param threads The number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Checks a single score.
+	 * 
+	 * @param recording The recording of the game, or null if it has none
+	 * @param score     The score, which is the time of the game in seconds
+	 * @return VALID if the score is plausible, otherwise the reason it is not
+	 */
+	public Verdict verify(GameRecording recording, int score) {
+		if (recording == null || recording.numMoves() == 0) {
+			return Verdict.MALFORMED;
+		}
+		MinesweeperModel model;
+		try {
+			model = replay(recording);
+		} catch (RuntimeException e) {
+			model = null;
+		}
+		if (model == null) {
+			return Verdict.MALFORMED;
+		}
+		if (!model.getWon()) {
+			return Verdict.NOT_WON;
+		}
+		long millis = recording.getMillis();
+		if (millis < (recording.numMoves() - 1) * minMoveMillis) {
+			return Verdict.TOO_FAST;
+		}
+		if ((score + toleranceSeconds) * 1000L < millis) {
+			return Verdict.TIME_MISMATCH;
+		}
+		return Verdict.VALID;
+	}
+
+	/**
+	 * Checks a batch of scores, replaying large batches in parallel.
+	 * 
+	 * @param recordings The recordings of the games
+	 * @param scores     The scores, in the same order
+	 * @return The verdict on every score, in the same order
+	 */
+	public Verdict[] verifyAll(GameRecording[] recordings, int[] scores) {
+		Verdict[] verdicts = new Verdict[recordings.length];
+		Batch all = new Batch(recordings, scores, verdicts, 0, recordings.length);
+		if (recordings.length <= BATCH_SIZE || threads <= 1) {
+			all.compute();
+			return verdicts;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(all);
+		} finally {
+			pool.shutdown();
+		}
+		return verdicts;
+	}
+
+	/**
+	 * Plays the moves of a recording on a copy of its board.
+	 * 
+	 * @param recording A recording
+	 * @return The model after the last move, or null if the recording does not
+	 *         describe a valid game, or has moves after the game ended
+	 */
+	public MinesweeperModel replay(GameRecording recording) {
+		MinesweeperBoard template = template(recording.getBoard());
+		if (template == null) {
+			return null;
+		}
+		MinesweeperBoard board = new MinesweeperBoard(template);
+		int cols = board.getCols();
+		int tiles = board.getRows() * cols;
+		MinesweeperModel model;
+		int[] mines = recording.getMines();
+		if (mines == null) {
+			model = new MinesweeperModel(board, recording.getSeed());
+		} else {
+			if (mines.length != board.bombCount) {
+				return null;
+			}
+			for (int cell : mines) {
+				if (cell >= tiles || !board.inBounds(cell / cols, cell % cols)) {
+					return null;
+				}
+				board.setMine(cell / cols, cell % cols, true);
+			}
+			board.recountMines();
+			model = new MinesweeperModel(board);
+		}
+		int[] moves = recording.getMoves();
+		for (int move : moves) {
+			if (Move.cell(move) >= tiles || Move.type(move) > Move.CHORD) {
+				return null;
+			}
+		}
+		// Moves after the end of the game are not made
+		if (model.applyMoves(moves, 0, moves.length).getMoves() < moves.length) {
+			return null;
+		}
+		return model;
+	}
+
+	/**
+	 * Returns the empty board a description refers to, reading shapes once.
+	 * 
+	 * @param board A description such as "30x16x99" or "shape:donut", see
+	 *              GameRecording.describe()
+	 * @return An empty board, which must not be changed, or null if the
+	 *         description is not valid
+	 */
+	public MinesweeperBoard template(String board) {
+		MinesweeperBoard template = templates.get(board);
+		if (template != null) {
+			return template;
+		}
+		try {
+			if (board.startsWith("shape:")) {
+				String shape = board.substring(6);
+				// Only names of files in the shapes folder, not paths
+				File file = new File("shapes/" + shape + ".txt");
+				if (!shape.matches("[\\w-]+") || !file.isFile()) {
+					return null;
+				}
+				template = new MinesweeperBoard(file.getPath());
+			} else {
+				String[] dims = board.split("x");
+				if (dims.length != 3) {
+					return null;
+				}
+				template = new MinesweeperModel(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]),
+						Integer.parseInt(dims[2])).getBoard();
+			}
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		MinesweeperBoard shared = templates.putIfAbsent(board, template);
+		return shared == null ? template : shared;
+	}
+
+	/**
+	 * A range of recordings, split in half until it is small enough to replay on
+	 * one thread.
+	 */
+	private class Batch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private GameRecording[] recordings;
+		private int[] scores;
+		private Verdict[] verdicts;
+		private int from;
+		private int to;
+
+		/**
+		 * Constructs a batch of the recordings numbered from (inclusive) to to
+		 * (exclusive).
+		 * 
+		 * @param recordings All recordings
+		 * @param scores     All scores
+		 * @param verdicts   Receives the verdicts
+		 * @param from       The first recording
+		 * @param to         The recording after the last
+		 */
+		Batch(GameRecording[] recordings, int[] scores, Verdict[] verdicts, int from, int to) {
+			this.recordings = recordings;
+			this.scores = scores;
+			this.verdicts = verdicts;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Replays the recordings of the batch, or splits it and replays both halves.
+		 */
+		@Override
+		protected void compute() {
+			if (to - from <= BATCH_SIZE) {
+				for (int i = from; i < to; i++) {
+					verdicts[i] = verify(recordings[i], scores[i]);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Batch(recordings, scores, verdicts, from, mid),
+					new Batch(recordings, scores, verdicts, mid, to));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package model;
+
+/**
+ * The result of revealing a space on the board. Holds the state of the game
+ * after the move and the tiles that the move uncovered, so that callers can
+ * react to the move without scanning the board.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class RevealResult {
+
+	/**
+	 * The state of the game after a move.
+	 */
+	public enum Outcome {
+		IN_PROGRESS, WON, LOST
+	}
+
+	private Outcome outcome;
+	private int[] revealed;
+	private int moves;
+
+	/**
+	 * Constructs a result given the outcome of a move and the tiles it uncovered.
+	 * 
+	 * @param outcome  The state of the game after the move
+	 * @param revealed The indices (row * cols + col) of the uncovered tiles
+	 */
+	public RevealResult(Outcome outcome, int[] revealed) {
+		this(outcome, revealed, 1);
+	}
+
+	/**
+	 * Constructs a result of several moves given the outcome of the last one and
+	 * the tiles they uncovered together.
+	 * 
+	 * @param outcome  The state of the game after the last move
+	 * @param revealed The indices (row * cols + col) of the uncovered tiles
+	 * @param moves    The number of moves made
+	 */
+	public RevealResult(Outcome outcome, int[] revealed, int moves) {
+		this.outcome = outcome;
+		this.revealed = revealed;
+		this.moves = moves;
+	}
+
+	/**
+	 * Returns the state of the game after the move.
+	 * 
+	 * @return The outcome of the move
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Returns the tiles uncovered by the move.
+	 * 
+	 * @return The indices (row * cols + col) of the uncovered tiles
+	 */
+	public int[] getRevealed() {
+		return revealed;
+	}
+
+	/**
+	 * Returns the number of moves the result is of, which is 1 unless several
+	 * moves were made at once.
+	 * 
+	 * @return The number of moves made
+	 */
+	public int getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Returns whether the move won the game.
+	 * 
+	 * @return True if the game has been won
+	 */
+	public boolean hasWon() {
+		return outcome == Outcome.WON;
+	}
+
+	/**
+	 * Returns whether the move lost the game.
+	 * 
+	 * @return True if the game has been lost
+	 */
+	public boolean hasLost() {
+		return outcome == Outcome.LOST;
+	}
+}
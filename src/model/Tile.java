@@ -1,13 +1,12 @@
 package model;
 
-import java.io.Serializable;
-
 /**
  * Class representing a tile within minesweeper board. Tiles can contain mines
- * or be empty.
+ * or be empty. The board stores its tiles as packed bytes, so instances of this
+ * class are snapshots of a single cell returned by MinesweeperBoard.getTile().
  * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
  */
-public class Tile implements Serializable {
+public class Tile {
 
 	// Whether a tile is part of the board (used for custom shapes)
 	public boolean inBounds;
@@ -17,7 +16,6 @@ public class Tile implements Serializable {
 	public boolean hasMine;
 	// Integer describing how many mines are nearby
 	public Integer displayNum;
-	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Constructs an instance of this class given inputs representing whether the
@@ -0,0 +1,416 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import controller.MinesweeperController;
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+import model.RevealResult;
+
+/**
+ * Serves minesweeper games over HTTP on the local machine, so that bots and
+ * thin clients can play without the JavaFX window. Every game is a Session in
+ * a SessionRegistry. Commands are sent as query parameters and answered with
+ * JSON:
+ * 
+ * <pre>
+ * POST   /games?rows=R&amp;cols=C&amp;mines=M[&amp;seed=S]  or  /games?shape=NAME
+ * POST   /games/ID/reveal?row=R&amp;col=C
+ * POST   /games/ID/flag?row=R&amp;col=C
+ * POST   /games/ID/chord?row=R&amp;col=C
+ * GET    /games/ID
+ * DELETE /games/ID
+ * GET    /stats
+ * </pre>
+ * 
+ * The state of a game lists its rows as strings with a character per tile: "#"
+ * covered, "F" flagged, "0" to "8" revealed, "*" a revealed mine and " " out of
+ * bounds. Requests are handled on a virtual thread each if the JVM has them
+ * (Java 21 and later), and on a pool of threads otherwise.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class GameServer {
+
+	public static final int DEFAULT_PORT = 8335;
+
+	static {
+		// Responses are small, so without TCP_NODELAY each one waits for the
+		// client's delayed ACK, which caps a connection at about 25 requests/s
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private SessionRegistry registry;
+	private HttpServer server;
+	private ExecutorService executor;
+	private int threads;
+
+	/**
+	 * Constructs a server on a port of the loopback address. The server is not
+	 * started until start() is called.
+	 * 
+	 * @param registry The sessions to serve
+	 * @param port     The port, or 0 for any free port
+	 * @param threads  The number of threads if virtual threads are not available
+	 * @throws IOException if the port cannot be bound
+	 */
+	public GameServer(SessionRegistry registry, int port, int threads) throws IOException {
+		this.registry = registry;
+		this.threads = threads;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		server.createContext("/", this::handle);
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 * 
+	 * @return The port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Starts serving requests and evicting idle sessions.
+	 */
+	public void start() {
+		executor = newExecutor(threads, "game-server");
+		server.setExecutor(executor);
+		registry.start();
+		server.start();
+	}
+
+	/**
+	 * Stops the server, waiting at most a second for requests being handled.
+	 */
+	public void stop() {
+		server.stop(1);
+		registry.stop();
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns an executor that runs every task on a virtual thread of its own if
+	 * the JVM has them, or a pool of daemon threads otherwise. Virtual threads are
+	 * looked up by reflection, so the game still builds for Java 17.
+	 * 
+	 * @param threads The number of threads of the pool
+	 * @param name    The name of the threads of the pool
+	 * @return The executor
+	 */
+	static ExecutorService newExecutor(int threads, String name) {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Answers a request, turning invalid parameters into 400 responses, a full
+	 * memory budget into 503 and any other failure into 500.
+	 * 
+	 * @param exchange The request and its response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = exchange.getRequestURI().getPath().split("/");
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			String method = exchange.getRequestMethod();
+			if (path.length == 2 && path[1].equals("stats") && method.equals("GET")) {
+				send(exchange, 200, stats());
+			} else if (path.length == 2 && path[1].equals("games") && method.equals("POST")) {
+				send(exchange, 200, newGame(params));
+			} else if (path.length >= 3 && path[1].equals("games")) {
+				Session session = registry.get(path[2]);
+				if (session == null) {
+					send(exchange, 404, error("No game " + path[2]));
+				} else if (path.length == 3 && method.equals("GET")) {
+					send(exchange, 200, state(session));
+				} else if (path.length == 3 && method.equals("DELETE")) {
+					registry.remove(session.getId());
+					send(exchange, 200, "{\"deleted\":\"" + session.getId() + "\"}");
+				} else if (path.length == 4 && method.equals("POST")) {
+					send(exchange, 200, move(session, path[3], params));
+				} else {
+					send(exchange, 404, error("Unknown command"));
+				}
+			} else {
+				send(exchange, 404, error("Unknown command"));
+			}
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, error(e.getMessage()));
+		} catch (IllegalStateException e) {
+			send(exchange, 503, error(e.getMessage()));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			send(exchange, 500, error("Internal error"));
+		}
+	}
+
+	/**
+	 * Starts a new game.
+	 * 
+	 * @param params The size and mines of the board, or its shape, and
+	 *               optionally a seed
+	 * @return The id and size of the game as JSON
+	 */
+	private String newGame(Map<String, String> params) {
+		// The memory of the game is reserved before its board is built, so that a
+		// game too large for the budget is never allocated
+		String shape = params.get("shape");
+		int rows = 0;
+		int cols = 0;
+		long cells;
+		if (shape != null) {
+			// Only names of files in the shapes folder, not paths
+			File file = new File("shapes/" + shape + ".txt");
+			if (!shape.matches("[\\w-]+") || !file.isFile()) {
+				throw new IllegalArgumentException("No shape " + shape);
+			}
+			// Every tile takes at least two characters of the file
+			cells = file.length() / 2;
+		} else {
+			rows = intParam(params, "rows", 13);
+			cols = intParam(params, "cols", rows);
+			if (rows < MinesweeperModel.MIN_SIZE || rows > MinesweeperModel.MAX_SIZE
+					|| cols < MinesweeperModel.MIN_SIZE || cols > MinesweeperModel.MAX_SIZE) {
+				throw new IllegalArgumentException("Board must be between " + MinesweeperModel.MIN_SIZE + " and "
+						+ MinesweeperModel.MAX_SIZE + " tiles on each side: " + rows + "x" + cols);
+			}
+			cells = (long) rows * cols;
+		}
+		long reserved = registry.reserve(Session.estimateBytes(cells));
+		MinesweeperModel model;
+		Session session;
+		try {
+			model = shape != null ? new MinesweeperModel(shape)
+					: new MinesweeperModel(rows, cols, intParam(params, "mines", 20));
+			if (params.containsKey("seed")) {
+				model.setSeed(Long.parseLong(params.get("seed")));
+			}
+			session = registry.create(model, reserved);
+		} catch (RuntimeException e) {
+			registry.release(reserved);
+			throw e;
+		}
+		MinesweeperBoard board = model.getBoard();
+		return "{\"id\":\"" + session.getId() + "\",\"rows\":" + board.getRows() + ",\"cols\":" + board.getCols()
+				+ ",\"mines\":" + board.bombCount + "}";
+	}
+
+	/**
+	 * Makes a move in a game.
+	 * 
+	 * @param session The game
+	 * @param command "reveal", "flag" or "chord"
+	 * @param params  The row and column of the tile
+	 * @return The outcome of the game and the tiles that changed as JSON
+	 */
+	private String move(Session session, String command, Map<String, String> params) {
+		int row = intParam(params, "row", -1);
+		int col = intParam(params, "col", -1);
+		MinesweeperController controller = session.getController();
+		int[] changed;
+		RevealResult.Outcome outcome;
+		synchronized (session) {
+			MinesweeperBoard board = session.getModel().getBoard();
+			if (row < 0 || row >= board.getRows() || col < 0 || col >= board.getCols()) {
+				throw new IllegalArgumentException("Tile out of range: " + row + "," + col);
+			}
+			if (command.equals("reveal")) {
+				changed = controller.revealSpace(row, col).getRevealed();
+			} else if (command.equals("chord")) {
+				changed = controller.chordSpace(row, col).getRevealed();
+			} else if (command.equals("flag")) {
+				boolean wasFlagged = board.isFlagged(row, col);
+				controller.flagSpace(row, col);
+				changed = board.isFlagged(row, col) == wasFlagged ? new int[0]
+						: new int[] { row * board.getCols() + col };
+			} else {
+				throw new IllegalArgumentException("Unknown command " + command);
+			}
+			outcome = session.getModel().getOutcome();
+		}
+		StringBuilder json = new StringBuilder(32 + 8 * changed.length);
+		json.append("{\"outcome\":\"").append(outcome).append("\",\"changed\":[");
+		for (int i = 0; i < changed.length; i++) {
+			json.append(i == 0 ? "" : ",").append(changed[i]);
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * Describes the state of a game.
+	 * 
+	 * @param session The game
+	 * @return The outcome, time and tiles of the game as JSON
+	 */
+	private String state(Session session) {
+		synchronized (session) {
+			MinesweeperModel model = session.getModel();
+			MinesweeperBoard board = model.getBoard();
+			StringBuilder json = new StringBuilder(64 + board.getRows() * (board.getCols() + 3));
+			json.append("{\"id\":\"").append(session.getId()).append("\",\"outcome\":\"").append(model.getOutcome())
+					.append("\",\"time\":").append(model.getTime()).append(",\"mines\":").append(board.bombCount)
+					.append(",\"flagged\":").append(board.numFlagged()).append(",\"tiles\":[");
+			for (int r = 0; r < board.getRows(); r++) {
+				json.append(r == 0 ? "\"" : ",\"");
+				for (int c = 0; c < board.getCols(); c++) {
+					if (!board.inBounds(r, c)) {
+						json.append(' ');
+					} else if (board.isFlagged(r, c)) {
+						json.append('F');
+					} else if (board.isCovered(r, c)) {
+						json.append('#');
+					} else if (board.hasMine(r, c)) {
+						json.append('*');
+					} else {
+						json.append((char) ('0' + board.getDisplayNum(r, c)));
+					}
+				}
+				json.append('"');
+			}
+			return json.append("]}").toString();
+		}
+	}
+
+	/**
+	 * Describes the sessions of the server.
+	 * 
+	 * @return The number of sessions, their memory and evictions as JSON
+	 */
+	private String stats() {
+		return "{\"sessions\":" + registry.size() + ",\"bytes\":" + registry.getBytes() + ",\"maxBytes\":"
+				+ registry.getMaxBytes() + ",\"evictions\":" + registry.getEvictions() + "}";
+	}
+
+	/**
+	 * Returns an error message as JSON. The message may hold anything a client
+	 * sent, so quotes, backslashes and control characters are escaped.
+	 * 
+	 * @param message The message
+	 * @return The error as JSON
+	 */
+	private static String error(String message) {
+		String text = String.valueOf(message);
+		StringBuilder json = new StringBuilder(text.length() + 16).append("{\"error\":\"");
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append("\"}").toString();
+	}
+
+	/**
+	 * Sends a JSON response and closes the exchange.
+	 * 
+	 * @param exchange The request and its response
+	 * @param status   The HTTP status code
+	 * @param json     The body of the response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	/**
+	 * Reads the parameters of a query string.
+	 * 
+	 * @param query The query string, or null
+	 * @return The parameters by name
+	 */
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Reads a whole number parameter.
+	 * 
+	 * @param params     The parameters
+	 * @param name       The name of the parameter
+	 * @param defaultVal The value if the parameter is missing
+	 * @return The value
+	 */
+	private static int intParam(Map<String, String> params, String name, int defaultVal) {
+		String value = params.get(name);
+		return value == null ? defaultVal : Integer.parseInt(value);
+	}
+
+	/**
+	 * Runs a server from the command line until it is killed. Options are given
+	 * as --name=value: --port, --max-mb (the memory budget of all games),
+	 * --idle-seconds (how long an unused game is kept) and --threads.
+	 * 
+	 * @param args The options of the server
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			if (arg.startsWith("--") && arg.contains("=")) {
+				options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+			}
+		}
+		SessionRegistry registry = new SessionRegistry(
+				Long.parseLong(options.getOrDefault("max-mb", "256")) * 1024 * 1024,
+				Long.parseLong(options.getOrDefault("idle-seconds", "600")) * 1000);
+		GameServer server = new GameServer(registry, Integer.parseInt(options.getOrDefault("port",
+				String.valueOf(DEFAULT_PORT))), Integer.parseInt(options.getOrDefault("threads",
+						String.valueOf(4 * Runtime.getRuntime().availableProcessors()))));
+		server.start();
+		System.out.println("Serving games on http://localhost:" + server.getPort() + "/games");
+	}
+}
@@ -0,0 +1,213 @@
+package server;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many requests per second a GameServer answers, and how long
+ * they take. Every client plays games one after another: it starts a game,
+ * reveals random tiles until the game is over and deletes it. The latency of
+ * every request is recorded, and the report gives the median, the 99th
+ * percentile and the slowest request.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class LoadTestClient {
+
+	private String url;
+	private int clients;
+	private long requests;
+	private String board;
+	private HttpClient http = HttpClient.newHttpClient();
+
+	/**
+	 * Constructs a load test.
+	 * 
+	 * @param url      The address of the server, such as "http://localhost:8335"
+	 * @param clients  The number of clients sending requests at once
+	 * @param requests The number of requests to send in total
+	 * @param board    The query that starts a game, such as
+	 *                 "rows=16&amp;cols=16&amp;mines=40"
+	 */
+	public LoadTestClient(String url, int clients, long requests, String board) {
+		this.url = url;
+		this.clients = clients;
+		this.requests = requests;
+		this.board = board;
+	}
+
+	/**
+	 * Runs the load test.
+	 * 
+	 * @return The report of the test
+	 * @throws Exception if a request fails
+	 */
+	public String run() throws Exception {
+		AtomicLong remaining = new AtomicLong(requests);
+		ExecutorService executor = GameServer.newExecutor(clients, "load-test");
+		long start = System.nanoTime();
+		Future<?>[] results = new Future<?>[clients];
+		long[][] latencies = new long[clients][];
+		for (int i = 0; i < clients; i++) {
+			int client = i;
+			results[i] = executor.submit(() -> {
+				latencies[client] = play(remaining, new SplittableRandom(client));
+				return null;
+			});
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+		long[] all = new long[0];
+		for (long[] latency : latencies) {
+			int from = all.length;
+			all = Arrays.copyOf(all, from + latency.length);
+			System.arraycopy(latency, 0, all, from, latency.length);
+		}
+		Arrays.sort(all);
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Requests:    %d by %d clients%n", all.length, clients));
+		report.append(String.format("Throughput:  %.0f requests/s%n", all.length / (elapsed / 1e9)));
+		report.append(String.format("Latency p50: %.3f ms%n", percentile(all, 0.50) / 1e6));
+		report.append(String.format("Latency p99: %.3f ms%n", percentile(all, 0.99) / 1e6));
+		report.append(String.format("Latency max: %.3f ms%n", all.length == 0 ? 0 : all[all.length - 1] / 1e6));
+		return report.toString();
+	}
+
+	/**
+	 * Plays games until the requests of the test have all been sent.
+	 * 
+	 * @param remaining The number of requests left to send by all clients
+	 * @param rand      Picks the tiles to reveal
+	 * @return The latency of every request sent, in nanoseconds
+	 * @throws Exception if a request fails
+	 */
+	private long[] play(AtomicLong remaining, SplittableRandom rand) throws Exception {
+		long[][] latencies = { new long[1024] };
+		int[] count = { 0 };
+		while (remaining.getAndDecrement() > 0) {
+			String game = send("POST", "/games?" + board, latencies, count);
+			String id = field(game, "id");
+			int rows = Integer.parseInt(field(game, "rows"));
+			int cols = Integer.parseInt(field(game, "cols"));
+			String outcome = "IN_PROGRESS";
+			while (outcome.equals("IN_PROGRESS") && remaining.getAndDecrement() > 0) {
+				String move = "/games/" + id + "/reveal?row=" + rand.nextInt(rows) + "&col=" + rand.nextInt(cols);
+				outcome = field(send("POST", move, latencies, count), "outcome");
+			}
+			send("DELETE", "/games/" + id, latencies, count);
+		}
+		return Arrays.copyOf(latencies[0], count[0]);
+	}
+
+	/**
+	 * Sends a request and records how long the response took.
+	 * 
+	 * @param method    The HTTP method
+	 * @param path      The path and query of the request
+	 * @param latencies Holds the array the latency is added to, which is grown
+	 *                  when it is full
+	 * @param count     Holds the number of latencies in the array
+	 * @return The body of the response
+	 * @throws Exception if the request fails or is not answered with 200
+	 */
+	private String send(String method, String path, long[][] latencies, int[] count) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+				.method(method, HttpRequest.BodyPublishers.noBody()).build();
+		long start = System.nanoTime();
+		HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+		long latency = System.nanoTime() - start;
+		if (count[0] == latencies[0].length) {
+			latencies[0] = Arrays.copyOf(latencies[0], count[0] * 2);
+		}
+		latencies[0][count[0]++] = latency;
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException(method + " " + path + ": " + response.body());
+		}
+		return response.body();
+	}
+
+	/**
+	 * Returns a field of a flat JSON object, for the fields this client reads.
+	 * 
+	 * @param json  The JSON object
+	 * @param field The name of the field
+	 * @return The value of the field without quotes, or null if it is missing
+	 */
+	static String field(String json, String field) {
+		int at = json.indexOf("\"" + field + "\":");
+		if (at < 0) {
+			return null;
+		}
+		int start = at + field.length() + 3;
+		if (json.charAt(start) == '"') {
+			return json.substring(start + 1, json.indexOf('"', start + 1));
+		}
+		int end = start;
+		while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}') {
+			end++;
+		}
+		return json.substring(start, end);
+	}
+
+	/**
+	 * Returns a percentile of sorted values.
+	 * 
+	 * @param sorted   The values in increasing order
+	 * @param fraction The percentile as a fraction, such as 0.99
+	 * @return The value, or 0 if there are none
+	 */
+	private static long percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+	}
+
+	/**
+	 * Runs a load test from the command line and prints its report. Options are
+	 * given as --name=value: --url, --clients, --requests, --rows, --cols and
+	 * --mines. If no --url is given, a server is started in this JVM.
+	 * 
+	 * @param args The options of the test
+	 * @throws Exception if the server cannot be started or a request fails
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			if (arg.startsWith("--") && arg.contains("=")) {
+				options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+			}
+		}
+		int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+		GameServer server = null;
+		String url = options.get("url");
+		if (url == null) {
+			server = new GameServer(new SessionRegistry(256L * 1024 * 1024, 600_000), 0, clients);
+			server.start();
+			url = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort();
+		}
+		String board = "rows=" + options.getOrDefault("rows", "16") + "&cols=" + options.getOrDefault("cols", "16")
+				+ "&mines=" + options.getOrDefault("mines", "40");
+		LoadTestClient test = new LoadTestClient(url, clients,
+				Long.parseLong(options.getOrDefault("requests", "100000")), board);
+		System.out.print(test.run());
+		if (server != null) {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package server;
+
+import controller.MinesweeperController;
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+
+/**
+ * A game hosted by the GameServer for a single client. Every session has its
+ * own model and controller, so sessions never share state. Commands on a
+ * session are made while holding its lock, since a client may send them from
+ * several connections at once.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class Session {
+
+	// Estimated bytes of a session besides its tiles: the model, controller,
+	// board and registry entry
+	private static final long OVERHEAD_BYTES = 1024;
+
+	private String id;
+	private MinesweeperModel model;
+	private MinesweeperController controller;
+	private long bytes;
+	private volatile long lastAccess;
+
+	/**
+	 * Constructs a session for a new game. Nothing listens to the model, so
+	 * moves send no events; the client asks for the state it needs.
+	 * 
+	 * @param id    The id clients refer to the session by
+	 * @param model The game
+	 */
+	public Session(String id, MinesweeperModel model) {
+		this.id = id;
+		this.model = model;
+		this.controller = new MinesweeperController(model);
+		this.bytes = estimateBytes(model.getBoard());
+		touch();
+	}
+
+	/**
+	 * Estimates the memory a session takes. A tile takes a byte on the board,
+	 * and up to four more in the index of in bounds tiles and the queue of a flood
+	 * fill.
+	 * 
+	 * @param board The board of the session
+	 * @return The estimated number of bytes
+	 */
+	public static long estimateBytes(MinesweeperBoard board) {
+		return estimateBytes((long) board.getRows() * board.getCols());
+	}
+
+	/**
+	 * Estimates the memory a session takes before its board is built, like
+	 * estimateBytes(MinesweeperBoard).
+	 * 
+	 * @param cells The number of tiles of the board
+	 * @return The estimated number of bytes
+	 */
+	public static long estimateBytes(long cells) {
+		return OVERHEAD_BYTES + 5L * cells;
+	}
+
+	/**
+	 * Returns the id of the session.
+	 * 
+	 * @return The id
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the game of the session.
+	 * 
+	 * @return The model
+	 */
+	public MinesweeperModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the controller that plays the game of the session.
+	 * 
+	 * @return The controller
+	 */
+	public MinesweeperController getController() {
+		return controller;
+	}
+
+	/**
+	 * Returns the estimated memory the session takes.
+	 * 
+	 * @return The number of bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns when the session was last used.
+	 * 
+	 * @return The System.nanoTime() of the last use
+	 */
+	public long getLastAccess() {
+		return lastAccess;
+	}
+
+	/**
+	 * Marks the session as used now, so it is not evicted for being idle.
+	 */
+	public void touch() {
+		lastAccess = System.nanoTime();
+	}
+}
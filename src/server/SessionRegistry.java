@@ -0,0 +1,232 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.MinesweeperModel;
+
+/**
+ * Holds the sessions of a GameServer. Sessions are looked up by id without
+ * locking, and the registry keeps count of the memory they take. Sessions that
+ * are not used for a while are evicted by a background thread, and when a new
+ * session does not fit in the memory budget the least recently used sessions
+ * are evicted to make room.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class SessionRegistry {
+
+	private ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+	private SecureRandom random = new SecureRandom();
+	private long maxBytes;
+	private long idleNanos;
+	private AtomicLong bytes = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Constructs an empty registry.
+	 * 
+	 * @param maxBytes   The memory budget of all sessions together, in bytes
+	 * @param idleMillis How long a session may go unused before it is evicted
+	 */
+	public SessionRegistry(long maxBytes, long idleMillis) {
+		this.maxBytes = maxBytes;
+		this.idleNanos = idleMillis * 1_000_000;
+	}
+
+	/**
+	 * Starts the background thread that evicts idle sessions. It looks for them
+	 * four times per idle period.
+	 */
+	public synchronized void start() {
+		if (evictor != null) {
+			return;
+		}
+		evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "session-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(idleNanos / 4, 1_000_000);
+		evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops the background thread that evicts idle sessions.
+	 */
+	public synchronized void stop() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+			evictor = null;
+		}
+	}
+
+	/**
+	 * Adds a session for a new game, evicting the least recently used sessions
+	 * if it does not fit in the memory budget otherwise.
+	 * 
+	 * @param model The game
+	 * @return The new session
+	 * @throws IllegalStateException if the game alone is larger than the budget
+	 */
+	public Session create(MinesweeperModel model) {
+		return create(model, reserve(Session.estimateBytes(model.getBoard())));
+	}
+
+	/**
+	 * Adds a session for a new game whose memory was reserved with reserve().
+	 * The reservation is replaced by the memory the session takes.
+	 * 
+	 * @param model    The game
+	 * @param reserved The number of bytes reserved for the game
+	 * @return The new session
+	 */
+	public Session create(MinesweeperModel model, long reserved) {
+		Session session = new Session(Long.toHexString(random.nextLong()), model);
+		bytes.addAndGet(session.getBytes() - reserved);
+		while (sessions.putIfAbsent(session.getId(), session) != null) {
+			session = new Session(Long.toHexString(random.nextLong()), model);
+		}
+		return session;
+	}
+
+	/**
+	 * Reserves memory for a game before it is built, evicting the least recently
+	 * used sessions if it does not fit in the memory budget otherwise. The
+	 * reservation must be passed to create(), or given back with release().
+	 * 
+	 * @param needed The estimated number of bytes of the game
+	 * @return The number of bytes reserved
+	 * @throws IllegalStateException if the game alone is larger than the budget
+	 */
+	public long reserve(long needed) {
+		if (needed > maxBytes) {
+			throw new IllegalStateException("Game needs " + needed + " bytes, more than the budget of " + maxBytes);
+		}
+		while (bytes.addAndGet(needed) > maxBytes) {
+			bytes.addAndGet(-needed);
+			if (!evictOldest()) {
+				// Other threads are adding sessions at the same time; try again
+				Thread.yield();
+			}
+		}
+		return needed;
+	}
+
+	/**
+	 * Gives back memory reserved for a game that was not created.
+	 * 
+	 * @param reserved The number of bytes reserved
+	 */
+	public void release(long reserved) {
+		bytes.addAndGet(-reserved);
+	}
+
+	/**
+	 * Returns a session and marks it as used.
+	 * 
+	 * @param id The id of the session
+	 * @return The session, or null if there is none with this id
+	 */
+	public Session get(String id) {
+		Session session = sessions.get(id);
+		if (session != null) {
+			session.touch();
+		}
+		return session;
+	}
+
+	/**
+	 * Removes a session.
+	 * 
+	 * @param id The id of the session
+	 * @return True if the session existed
+	 */
+	public boolean remove(String id) {
+		Session session = sessions.remove(id);
+		if (session == null) {
+			return false;
+		}
+		bytes.addAndGet(-session.getBytes());
+		return true;
+	}
+
+	/**
+	 * Evicts every session that was not used for the idle period.
+	 * 
+	 * @return The number of sessions evicted
+	 */
+	public int evictIdle() {
+		long now = System.nanoTime();
+		int evicted = 0;
+		for (Session session : sessions.values()) {
+			if (now - session.getLastAccess() > idleNanos && sessions.remove(session.getId(), session)) {
+				bytes.addAndGet(-session.getBytes());
+				evictions.incrementAndGet();
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Evicts the least recently used session.
+	 * 
+	 * @return True if a session was evicted
+	 */
+	private boolean evictOldest() {
+		Session oldest = null;
+		for (Session session : sessions.values()) {
+			if (oldest == null || session.getLastAccess() - oldest.getLastAccess() < 0) {
+				oldest = session;
+			}
+		}
+		if (oldest == null || !sessions.remove(oldest.getId(), oldest)) {
+			return false;
+		}
+		bytes.addAndGet(-oldest.getBytes());
+		evictions.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Returns the number of sessions.
+	 * 
+	 * @return The number of sessions
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * Returns the estimated memory all sessions take together.
+	 * 
+	 * @return The number of bytes
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * Returns the memory budget of all sessions together.
+	 * 
+	 * @return The number of bytes
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns how many sessions were evicted, for being idle or to make room.
+	 * 
+	 * @return The number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
@@ -0,0 +1,23 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+import model.MinesweeperModel;
+
+/**
+ * A strategy that decides the moves of a headless game. A new policy is created
+ * for every game, so implementations may keep state about the game they play.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public interface ClickPolicy {
+
+	/**
+	 * Returns the next move to make in a game.
+	 * 
+	 * @param model The model of the game
+	 * @param rand  A random number generator seeded for this game
+	 * @return A move encoded by model.Move, or Move.NONE to stop playing
+	 */
+	int nextMove(MinesweeperModel model, SplittableRandom rand);
+}
@@ -0,0 +1,48 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+import model.Move;
+
+/**
+ * A policy that reveals a random covered tile on every move. Used as a baseline
+ * and to exercise the model with as many different moves as possible.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class RandomClickPolicy implements ClickPolicy {
+
+	// Random guesses to try before scanning for a covered tile
+	private static final int ATTEMPTS = 64;
+
+	/**
+	 * Returns a move that reveals a random covered tile that is not flagged.
+	 * 
+	 * @param model The model of the game
+	 * @param rand  A random number generator seeded for this game
+	 * @return A reveal move, or Move.NONE if no tile is left to reveal
+	 */
+	@Override
+	public int nextMove(MinesweeperModel model, SplittableRandom rand) {
+		MinesweeperBoard board = model.getBoard();
+		int n = board.numInBounds();
+		int cols = board.getCols();
+		for (int i = 0; i < ATTEMPTS; i++) {
+			int cell = board.inBoundsCell(rand.nextInt(n));
+			if (board.isCovered(cell / cols, cell % cols) && !board.isFlagged(cell / cols, cell % cols)) {
+				return Move.reveal(cell);
+			}
+		}
+		// Few covered tiles are left, so look for one from a random start
+		int start = rand.nextInt(n);
+		for (int i = 0; i < n; i++) {
+			int cell = board.inBoundsCell((start + i) % n);
+			if (board.isCovered(cell / cols, cell % cols) && !board.isFlagged(cell / cols, cell % cols)) {
+				return Move.reveal(cell);
+			}
+		}
+		return Move.NONE;
+	}
+}
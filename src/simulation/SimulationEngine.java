@@ -0,0 +1,218 @@
+package simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import model.MinesweeperBoard;
+import model.MinesweeperModel;
+import model.Move;
+import model.RevealResult;
+
+/**
+ * Plays large numbers of minesweeper games without a user interface, spread
+ * over all cores with a fork-join pool. Every game gets its own model and a
+ * random number generator seeded from the game number, so a run gives the same
+ * results no matter how many threads play it. Used for capacity planning and
+ * for regression testing the model.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class SimulationEngine {
+
+	// Number of games a single task plays before it is split no further
+	private static final int BATCH_SIZE = 256;
+
+	private MinesweeperBoard template;
+	private Supplier<ClickPolicy> policy;
+	private long seed;
+	private int threads;
+
+	/**
+	 * Constructs an engine that plays rectangular boards.
+	 * 
+	 * @param rows      The number of rows (height) of the board
+	 * @param cols      The number of columns (width) of the board
+	 * @param mineCount The number of mines to place
+	 */
+	public SimulationEngine(int rows, int cols, int mineCount) {
+		this(new MinesweeperModel(rows, cols, mineCount).getBoard());
+	}
+
+	/**
+	 * Constructs an engine that plays a custom shape. The shape file is read once
+	 * and copied for every game.
+	 * 
+	 * @param shape A string referring to a file in the ./shapes/ folder
+	 */
+	public SimulationEngine(String shape) {
+		this(new MinesweeperBoard("shapes/" + shape + ".txt"));
+	}
+
+	/**
+	 * Constructs an engine that plays copies of an empty board.
+	 * 
+	 * @param template An empty board to copy for every game
+	 */
+	public SimulationEngine(MinesweeperBoard template) {
+		this.template = template;
+		this.policy = RandomClickPolicy::new;
+		this.seed = 0;
+		this.threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Sets the policy that plays the games. The supplier is called once per game.
+	 * 
+	 * @param policy A supplier of click policies
+	 */
+	public void setPolicy(Supplier<ClickPolicy> policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Sets the seed that the seeds of the games are derived from.
+	 * 
+	 * @param seed A seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the number of threads that play games.
+	 * 
+	 * @param threads The number of threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Plays a number of games and returns statistics about them.
+	 * 
+	 * @param games The number of games to play
+	 * @return The statistics of the games
+	 */
+	public SimulationStats run(long games) {
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			SimulationStats stats = pool.invoke(new Batch(0, games));
+			stats.setElapsedNanos(System.nanoTime() - start);
+			return stats;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays a single game to the end.
+	 * 
+	 * @param game  The number of the game, which determines its seed
+	 * @param stats The statistics to record the game in
+	 */
+	public void playGame(long game, SimulationStats stats) {
+		SplittableRandom rand = new SplittableRandom(seed + game);
+		MinesweeperModel model = new MinesweeperModel(new MinesweeperBoard(template), rand.nextLong());
+		ClickPolicy player = policy.get();
+		MinesweeperBoard board = model.getBoard();
+		int cols = board.getCols();
+		// Every useful move changes a tile, so this only stops policies that are stuck
+		long maxMoves = 2L * board.numInBounds();
+		for (long moves = 0; moves < maxMoves && model.getOutcome() == RevealResult.Outcome.IN_PROGRESS; moves++) {
+			int move = player.nextMove(model, rand);
+			if (move == Move.NONE) {
+				break;
+			}
+			int cell = Move.cell(move);
+			if (Move.type(move) == Move.FLAG) {
+				model.flagSpace(cell / cols, cell % cols);
+				stats.recordMove(0);
+			} else {
+				stats.recordMove(model.revealSpace(cell / cols, cell % cols).getRevealed().length);
+			}
+		}
+		stats.recordGame(model.getOutcome());
+	}
+
+	/**
+	 * A range of games, split in half until it is small enough to play on one
+	 * thread.
+	 */
+	private class Batch extends RecursiveTask<SimulationStats> {
+		private static final long serialVersionUID = 1L;
+		private long from;
+		private long to;
+
+		/**
+		 * Constructs a batch of the games numbered from (inclusive) to to
+		 * (exclusive).
+		 * 
+		 * @param from The first game
+		 * @param to   The game after the last
+		 */
+		Batch(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Plays the games of the batch, or splits it and merges the statistics of
+		 * both halves.
+		 * 
+		 * @return The statistics of the games
+		 */
+		@Override
+		protected SimulationStats compute() {
+			if (to - from <= BATCH_SIZE) {
+				SimulationStats stats = new SimulationStats();
+				for (long game = from; game < to; game++) {
+					playGame(game, stats);
+				}
+				return stats;
+			}
+			long mid = (from + to) >>> 1;
+			Batch left = new Batch(from, mid);
+			left.fork();
+			SimulationStats stats = new Batch(mid, to).compute();
+			stats.merge(left.join());
+			return stats;
+		}
+	}
+
+	/**
+	 * Runs a simulation from the command line and prints its statistics. Options
+	 * are given as --name=value: --games, --rows, --cols, --mines or --density,
+	 * --shape (instead of a size), --seed and --threads.
+	 * 
+	 * @param args The options of the simulation
+	 */
+	public static void main(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			if (arg.startsWith("--") && arg.contains("=")) {
+				options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+			}
+		}
+		SimulationEngine engine;
+		if (options.containsKey("shape")) {
+			engine = new SimulationEngine(options.get("shape"));
+		} else {
+			int rows = Integer.parseInt(options.getOrDefault("rows", "13"));
+			int cols = Integer.parseInt(options.getOrDefault("cols", String.valueOf(rows)));
+			int mines = options.containsKey("mines") ? Integer.parseInt(options.get("mines"))
+					: (int) Math.round(rows * cols * Double.parseDouble(options.getOrDefault("density", "0.12")));
+			engine = new SimulationEngine(rows, cols, mines);
+		}
+		engine.setSeed(Long.parseLong(options.getOrDefault("seed", "0")));
+		if (options.containsKey("threads")) {
+			engine.setThreads(Integer.parseInt(options.get("threads")));
+		}
+		long games = Long.parseLong(options.getOrDefault("games", "100000"));
+		System.out.print(engine.run(games).report());
+	}
+}
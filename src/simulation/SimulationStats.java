@@ -0,0 +1,175 @@
+package simulation;
+
+import model.RevealResult;
+
+/**
+ * Statistics gathered from a batch of headless games: how the games ended, how
+ * many moves they took and how large the cascades of revealed tiles were. Each
+ * worker thread fills its own instance, and the instances are merged at the end.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class SimulationStats {
+
+	private long games;
+	private long wins;
+	private long losses;
+	private long moves;
+	private long reveals;
+	private long revealedTiles;
+	private long maxCascade;
+	// Bucket k counts reveals that uncovered between 2^k and 2^(k+1) - 1 tiles
+	private long[] cascades = new long[32];
+	private long elapsedNanos;
+
+	/**
+	 * Records the end of a game. Games that are neither won nor lost were given up
+	 * by the policy.
+	 * 
+	 * @param outcome The state of the game when it ended
+	 */
+	public void recordGame(RevealResult.Outcome outcome) {
+		games++;
+		if (outcome == RevealResult.Outcome.WON) {
+			wins++;
+		} else if (outcome == RevealResult.Outcome.LOST) {
+			losses++;
+		}
+	}
+
+	/**
+	 * Records a move of a game.
+	 * 
+	 * @param revealed The number of tiles the move uncovered
+	 */
+	public void recordMove(int revealed) {
+		moves++;
+		if (revealed == 0) {
+			return;
+		}
+		reveals++;
+		revealedTiles += revealed;
+		maxCascade = Math.max(maxCascade, revealed);
+		cascades[31 - Integer.numberOfLeadingZeros(revealed)]++;
+	}
+
+	/**
+	 * Adds the statistics of another batch of games to this one.
+	 * 
+	 * @param other The statistics to add
+	 */
+	public void merge(SimulationStats other) {
+		games += other.games;
+		wins += other.wins;
+		losses += other.losses;
+		moves += other.moves;
+		reveals += other.reveals;
+		revealedTiles += other.revealedTiles;
+		maxCascade = Math.max(maxCascade, other.maxCascade);
+		for (int i = 0; i < cascades.length; i++) {
+			cascades[i] += other.cascades[i];
+		}
+	}
+
+	/**
+	 * Sets how long the games took to play.
+	 * 
+	 * @param elapsedNanos The wall clock time in nanoseconds
+	 */
+	public void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Returns the number of games played.
+	 * 
+	 * @return The number of games
+	 */
+	public long getGames() {
+		return games;
+	}
+
+	/**
+	 * Returns the number of games won.
+	 * 
+	 * @return The number of wins
+	 */
+	public long getWins() {
+		return wins;
+	}
+
+	/**
+	 * Returns the number of games lost.
+	 * 
+	 * @return The number of losses
+	 */
+	public long getLosses() {
+		return losses;
+	}
+
+	/**
+	 * Returns the number of moves made over all games.
+	 * 
+	 * @return The number of moves
+	 */
+	public long getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Returns the largest number of tiles uncovered by a single move.
+	 * 
+	 * @return The largest cascade
+	 */
+	public long getMaxCascade() {
+		return maxCascade;
+	}
+
+	/**
+	 * Returns the fraction of games that were won.
+	 * 
+	 * @return The win rate between 0 and 1
+	 */
+	public double winRate() {
+		return games == 0 ? 0.0 : (double) wins / games;
+	}
+
+	/**
+	 * Returns the average number of tiles uncovered by a move that uncovered any.
+	 * 
+	 * @return The mean cascade size
+	 */
+	public double meanCascade() {
+		return reveals == 0 ? 0.0 : (double) revealedTiles / reveals;
+	}
+
+	/**
+	 * Returns how many games were played per second of wall clock time.
+	 * 
+	 * @return The throughput in games per second
+	 */
+	public double gamesPerSecond() {
+		return elapsedNanos == 0 ? 0.0 : games * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Returns a readable summary of the statistics.
+	 * 
+	 * @return The summary
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("games:        %d in %.3f s (%.0f games/s)%n", games, elapsedNanos / 1e9,
+				gamesPerSecond()));
+		sb.append(String.format("won / lost:   %d / %d (win rate %.2f%%)%n", wins, losses, winRate() * 100));
+		sb.append(String.format("moves:        %d (%.2f per game, %.0f moves/s)%n", moves,
+				games == 0 ? 0.0 : (double) moves / games, elapsedNanos == 0 ? 0.0 : moves * 1e9 / elapsedNanos));
+		sb.append(String.format("cascades:     mean %.2f tiles, max %d tiles%n", meanCascade(), maxCascade));
+		for (int i = 0; i < cascades.length; i++) {
+			if (cascades[i] > 0) {
+				sb.append(String.format("  %9d-%-9d %d%n", 1L << i, (1L << (i + 1)) - 1, cascades[i]));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -2,21 +2,54 @@ package tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
 
 import controller.MinesweeperController;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import model.BoardPool;
+import model.GameListener;
+import model.GameRecording;
+import model.GameStorage;
 import model.Leaderboard;
+import model.LeaderboardService;
 import model.MinesweeperBoard;
 import model.MinesweeperModel;
+import model.Move;
+import model.MoveJournal;
+import model.NoGuessGenerator;
+import model.ReplayVerifier;
+import model.RevealResult;
+import server.GameServer;
+import server.Session;
+import server.SessionRegistry;
+import simulation.SimulationEngine;
+import simulation.SimulationStats;
 
 /**
  * A test class for the methods in the controller, model, board, tile,
@@ -45,22 +78,21 @@ public class MinesweeperTest {
 		controller.flagSpace(0, 0);
 		assertFalse(board.getTile(0, 0).isFlagged);
 		// Set bombs
-		model.setSeed((long) 10);
+		model.setSeed((long) 81);
 		controller.revealSpace(1, 2);
 		assertFalse(board.getTile(6, 3).isCovered || board.getTile(1, 0).isCovered);
 		assertEquals((Integer) board.getTile(1, 0).displayNum, (Integer) 1);
 		controller.printBoard();
 		// Save and load game
-		model.saveGame(999, "Daniel-Test");
-		File save = new File("save_game.dat");
 		try {
-			ObjectInputStream oos = new ObjectInputStream(new FileInputStream(save));
-			board = (MinesweeperBoard) oos.readObject();
-			oos.close();
+			File save = File.createTempFile("save_game", ".dat");
+			save.deleteOnExit();
+			board.saveBoard(999, "Daniel-Test", save.getPath());
+			board = MinesweeperBoard.loadBoard(save.getPath());
 			model = new MinesweeperModel(board);
 			controller = new MinesweeperController(model);
 
-		} catch (IOException | ClassNotFoundException e) {
+		} catch (IOException e) {
 			Alert alert = new Alert(AlertType.INFORMATION, "Save file not found!");
 			alert.showAndWait();
 		}
@@ -87,23 +119,970 @@ public class MinesweeperTest {
 		assertEquals(board.getSize(), 13);
 		// controller.printBoard();
 	}
+	/*
+	 * Tests that dense mines on a small shape in a large board leave every number
+	 * right, when more tiles get mines than not.
+	 */
+	@Test
+	void testDenseShapeNumbers() throws IOException {
+		File shape = File.createTempFile("dense", ".txt");
+		shape.deleteOnExit();
+		StringBuilder text = new StringBuilder("70\n");
+		for (int r = 0; r < 100; r++) {
+			for (int c = 0; c < 100; c++) {
+				text.append(c == 0 ? "" : " ").append(r < 10 && c < 10 ? 'o' : '_');
+			}
+			text.append('\n');
+		}
+		Files.write(shape.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+		MinesweeperBoard board = new MinesweeperBoard(shape.getPath());
+		MinesweeperModel model = new MinesweeperModel(board, 11);
+		model.setBombs(70, 5, 5);
+		int mines = 0;
+		for (int r = 0; r < 100; r++) {
+			for (int c = 0; c < 100; c++) {
+				mines += board.hasMine(r, c) ? 1 : 0;
+				if (!board.inBounds(r, c)) {
+					continue;
+				}
+				int count = 0;
+				for (int nr = r - 1; nr <= r + 1; nr++) {
+					for (int nc = c - 1; nc <= c + 1; nc++) {
+						if (board.inBounds(nr, nc) && (nr != r || nc != c) && board.hasMine(nr, nc)) {
+							count++;
+						}
+					}
+				}
+				assertEquals(board.getDisplayNum(r, c), count);
+			}
+		}
+		assertEquals(mines, 70);
+	}
+
+	/*
+	 * Tests rectangular boards with a custom number of mines.
+	 */
+	@Test
+	void testCustomSize() {
+		MinesweeperModel model = new MinesweeperModel(9, 30, 50);
+		MinesweeperBoard board = model.getBoard();
+		assertEquals(board.getRows(), 9);
+		assertEquals(board.getCols(), 30);
+		model.setSeed((long) 3);
+		model.revealSpace(4, 29);
+		int mines = 0;
+		for (int r = 0; r < board.getRows(); r++) {
+			for (int c = 0; c < board.getCols(); c++) {
+				if (board.hasMine(r, c)) {
+					mines++;
+				}
+			}
+		}
+		assertEquals(mines, 50);
+		assertFalse(board.isCovered(4, 29));
+		assertEquals(new MinesweeperModel(10, 10, 0.2).getMineCount(), 20);
+		assertThrows(IllegalArgumentException.class, () -> new MinesweeperModel(8, 9, 10));
+		assertThrows(IllegalArgumentException.class, () -> new MinesweeperModel(9, 9, 73));
+	}
+
+	/*
+	 * Tests that a cascade over a large open board does not overflow the stack and
+	 * reports every tile it uncovered.
+	 */
+	@Test
+	void testLargeCascade() {
+		MinesweeperModel model = new MinesweeperModel(1000, 1000, 0);
+		RevealResult result = model.revealSpace(500, 500);
+		assertEquals(result.getRevealed().length, 1000 * 1000);
+		assertEquals(result.getRevealed()[0], 500 * 1000 + 500);
+		assertEquals(model.getBoard().numCovered(), 0);
+		assertTrue(result.hasWon());
+	}
+
+	/*
+	 * Tests that saves keep the state of every tile, and that corrupt saves and
+	 * saves whose mines do not match their mine count are rejected.
+	 */
+	@Test
+	void testSaveFormat() throws Exception {
+		MinesweeperModel model = new MinesweeperModel("triangle");
+		model.setSeed(7);
+		model.revealSpace(10, 6);
+		MinesweeperBoard board = model.getBoard();
+		board.setFlagged(0, 6, true);
+		File save = File.createTempFile("save", ".dat");
+		save.deleteOnExit();
+		board.saveBoard(12.5, "Tester", save.getPath());
+		MinesweeperBoard loaded = MinesweeperBoard.loadBoard(save.getPath());
+		assertTrue(loaded.time == 12.5);
+		assertEquals(loaded.playerName, "Tester");
+		assertEquals(loaded.bombCount, board.bombCount);
+		assertEquals(loaded.numCovered(), board.numCovered());
+		assertEquals(loaded.numFlagged(), board.numFlagged());
+		for(int r = 0; r < board.getRows(); r++) {
+			for(int c = 0; c < board.getCols(); c++) {
+				assertEquals(loaded.inBounds(r, c), board.inBounds(r, c));
+				assertEquals(loaded.hasMine(r, c), board.hasMine(r, c));
+				assertEquals(loaded.isCovered(r, c), board.isCovered(r, c));
+				assertEquals(loaded.isFlagged(r, c), board.isFlagged(r, c));
+				assertEquals(loaded.getDisplayNum(r, c), board.getDisplayNum(r, c));
+			}
+		}
+		// Changing any byte is caught by the checksum
+		RandomAccessFile raf = new RandomAccessFile(save, "rw");
+		raf.seek(save.length() - 1);
+		int last = raf.read();
+		raf.seek(save.length() - 1);
+		raf.write(last ^ 0x01);
+		raf.close();
+		assertThrows(IOException.class, () -> MinesweeperBoard.loadBoard(save.getPath()));
+		// The mines of a new game are not placed yet
+		new MinesweeperModel(9, 9, 10).getBoard().saveBoard(0, null, save.getPath());
+		assertThrows(IOException.class, () -> MinesweeperBoard.loadBoard(save.getPath()));
+	}
+
+	/*
+	 * Tests that a game saved by its journal is recovered after a crash, up to
+	 * the last move that was written completely.
+	 */
+	@Test
+	void testJournal() throws Exception {
+		File save = File.createTempFile("journal", ".dat");
+		save.deleteOnExit();
+		MoveJournal.journalFile(save.getPath()).deleteOnExit();
+		MinesweeperModel model = new MinesweeperModel(30, 30, 150);
+		model.setSeed(3);
+		MoveJournal journal = new MoveJournal(model, save.getPath());
+		journal.setName("Tester");
+		model.setJournal(journal);
+		MinesweeperController controller = new MinesweeperController(model);
+		controller.revealSpace(15, 15);
+		controller.autoSolve();
+		for(int c = 0; c < 30; c++) {
+			if(model.getBoard().isCovered(0, c)) {
+				controller.flagSpace(0, c);
+			}
+		}
+		// A crash after the moves were written out, without closing the journal
+		journal.flush();
+		MinesweeperBoard board = model.getBoard();
+		MinesweeperBoard recovered = MoveJournal.recover(save.getPath()).getBoard();
+		assertEquals(recovered.playerName, "Tester");
+		assertEquals(recovered.numCovered(), board.numCovered());
+		assertEquals(recovered.numFlagged(), board.numFlagged());
+		for(int r = 0; r < 30; r++) {
+			for(int c = 0; c < 30; c++) {
+				assertEquals(recovered.isCovered(r, c), board.isCovered(r, c));
+				assertEquals(recovered.isFlagged(r, c), board.isFlagged(r, c));
+			}
+		}
+		// A move that was only partly written is left out
+		FileOutputStream out = new FileOutputStream(MoveJournal.journalFile(save.getPath()), true);
+		out.write(new byte[] { 1, 2, 3, 4, 5 });
+		out.close();
+		assertEquals(MoveJournal.recover(save.getPath()).getBoard().numFlagged(), board.numFlagged());
+		// Continuing a recovered game, with a checkpoint after every few moves
+		MinesweeperModel resumed = MoveJournal.recover(save.getPath());
+		MoveJournal resumedJournal = new MoveJournal(resumed, save.getPath());
+		resumedJournal.setCheckpointBytes(100);
+		resumed.setJournal(resumedJournal);
+		for(int i = 0; i < 90; i++) {
+			resumed.flagSpace(0, i % 30);
+		}
+		assertTrue(save.length() < 1000 && MoveJournal.journalFile(save.getPath()).length() < 1000);
+		resumedJournal.close();
+		assertEquals(MoveJournal.recover(save.getPath()).getBoard().numFlagged(), resumed.getBoard().numFlagged());
+		// A full save replaces the checkpoint, so the old journal is not played
+		assertFalse(resumed.getBoard().numFlagged() == board.numFlagged());
+		board.saveBoard(5, "Tester", save.getPath());
+		assertEquals(MoveJournal.recover(save.getPath()).getBoard().numFlagged(), board.numFlagged());
+	}
+
+	/*
+	 * Tests that the recording of a game survives a crash with its journal, both
+	 * before the game was ever closed and after it was closed and loaded again,
+	 * so that a win after recovering is still verified.
+	 */
+	@Test
+	void testJournalRecording() throws Exception {
+		File save = File.createTempFile("recorded", ".dat");
+		save.deleteOnExit();
+		MoveJournal.journalFile(save.getPath()).deleteOnExit();
+		GameRecording.recordingFile(save.getPath()).deleteOnExit();
+		MinesweeperModel model = new MinesweeperModel(16, 16, 40);
+		model.setNoGuess(5000);
+		GameRecording.start(model);
+		MoveJournal journal = new MoveJournal(model, save.getPath());
+		model.setJournal(journal);
+		model.revealSpace(8, 8);
+		model.flagSpace(0, 0);
+		model.flagSpace(0, 0);
+		// A crash before the game was ever closed
+		journal.flush();
+		MinesweeperModel recovered = MoveJournal.recover(save.getPath());
+		assertTrue(Arrays.equals(recovered.getRecording().getMoves(), model.getRecording().getMoves()));
+		// A crash after the game was closed and loaded again, with checkpoints on the way
+		journal.close();
+		MinesweeperModel resumed = MoveJournal.recover(save.getPath());
+		MoveJournal resumedJournal = new MoveJournal(resumed, save.getPath());
+		resumedJournal.setCheckpointBytes(100);
+		resumed.setJournal(resumedJournal);
+		new MinesweeperController(resumed).autoSolve();
+		assertTrue(resumed.getWon());
+		resumedJournal.flush();
+		GameRecording recording = MoveJournal.recover(save.getPath()).getRecording();
+		assertTrue(Arrays.equals(recording.getMoves(), resumed.getRecording().getMoves()));
+		ReplayVerifier verifier = new ReplayVerifier();
+		verifier.setMinMoveMillis(0);
+		assertEquals(verifier.verify(recording, (int) resumed.getTime()), ReplayVerifier.Verdict.VALID);
+		resumedJournal.discard();
+		assertFalse(GameRecording.recordingFile(save.getPath()).exists());
+	}
+
+	/*
+	 * Tests that saves and loads run in the background and hand their results to
+	 * the callback thread, and that moves made while a checkpoint is written are
+	 * saved too.
+	 */
+	@Test
+	void testGameStorage() throws Exception {
+		File save = File.createTempFile("storage", ".dat");
+		save.deleteOnExit();
+		MoveJournal.journalFile(save.getPath()).deleteOnExit();
+		ExecutorService ui = Executors.newSingleThreadExecutor(r -> new Thread(r, "ui"));
+		GameStorage storage = new GameStorage(ui);
+		MinesweeperModel model = new MinesweeperModel(200, 200, 6000);
+		model.setSeed(5);
+		MoveJournal journal = new MoveJournal(model, save.getPath());
+		journal.setExecutor(storage.getExecutor());
+		model.setJournal(journal);
+		MinesweeperController controller = new MinesweeperController(model);
+		controller.revealSpace(100, 100);
+		controller.autoSolve();
+		journal.close();
+		List<Double> progress = Collections.synchronizedList(new ArrayList<Double>());
+		// Holds the callback thread until the callback is attached, since a
+		// callback attached to a completed future runs on the calling thread
+		CountDownLatch attached = new CountDownLatch(1);
+		ui.execute(() -> {
+			try {
+				attached.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		CompletableFuture<String> thread = storage.load(save.getPath(), progress::add)
+				.thenApply(loaded -> {
+					assertEquals(loaded.getBoard().numCovered(), model.getBoard().numCovered());
+					assertEquals(loaded.getBoard().numFlagged(), model.getBoard().numFlagged());
+					assertTrue(loaded.getJournal() != null);
+					loaded.getJournal().close();
+					return Thread.currentThread().getName();
+				});
+		attached.countDown();
+		assertEquals(thread.get(), "ui");
+		assertFalse(progress.isEmpty());
+		assertThrows(ExecutionException.class, () -> storage.load(save.getPath() + ".missing", null).get());
+		storage.shutdown();
+		ui.shutdown();
+	}
+
+	/*
+	 * Tests that the clock of a game runs from the first reveal until the game
+	 * ends, and goes on from the saved time after loading with a reveal or a
+	 * chord.
+	 */
+	@Test
+	void testGameClock() throws Exception {
+		MinesweeperModel model = new MinesweeperModel(16, 16, 40);
+		model.flagSpace(0, 0);
+		model.flagSpace(0, 0);
+		assertFalse(model.getClock().isRunning());
+		model.revealSpace(8, 8);
+		assertTrue(model.getClock().isRunning());
+		Thread.sleep(20);
+		model.getClock().pause();
+		double paused = model.getTime();
+		assertTrue(paused >= 0.02);
+		Thread.sleep(10);
+		assertTrue(model.getTime() == paused);
+		MinesweeperBoard board = model.getBoard();
+		for(int r = 0; r < 16; r++) {
+			for(int c = 0; c < 16; c++) {
+				if(!board.hasMine(r, c) && board.isCovered(r, c)) {
+					model.revealSpace(r, c);
+				}
+			}
+		}
+		assertTrue(model.getWon() && !model.getClock().isRunning());
+		double end = model.getTime();
+		assertTrue(end > paused);
+		File save = File.createTempFile("clock", ".dat");
+		save.deleteOnExit();
+		board.saveBoard(end, "Clock", save.getPath());
+		MinesweeperModel loaded = new MinesweeperModel(MinesweeperBoard.loadBoard(save.getPath()));
+		assertEquals(loaded.getTime(), end, 1e-6);
+		loaded.getClock().start();
+		Thread.sleep(10);
+		assertTrue(loaded.getTime() > end);
+		// A loaded game that goes on with a chord starts its clock too; the mines
+		// in column 5 keep the chord from winning
+		MinesweeperBoard walled = new MinesweeperBoard(9, 9);
+		walled.setMine(0, 0, true);
+		walled.setMine(0, 2, true);
+		for(int r = 0; r < 9; r++) {
+			walled.setMine(r, 5, true);
+		}
+		walled.recountMines();
+		walled.bombCount = 11;
+		MinesweeperModel walledModel = new MinesweeperModel(walled);
+		walledModel.revealSpace(1, 1);
+		walledModel.flagSpace(0, 0);
+		walledModel.flagSpace(0, 2);
+		walled.saveBoard(5, "Clock", save.getPath());
+		MinesweeperModel resumed = new MinesweeperModel(MinesweeperBoard.loadBoard(save.getPath()));
+		assertFalse(resumed.getClock().isRunning());
+		assertTrue(resumed.chordSpace(1, 1).getRevealed().length > 0);
+		assertEquals(resumed.getOutcome(), RevealResult.Outcome.IN_PROGRESS);
+		assertTrue(resumed.getClock().isRunning());
+	}
+
+	/*
+	 * Tests that listeners receive typed events for moves, that batches send
+	 * their events together, and that removed listeners hear nothing.
+	 */
+	@Test
+	void testGameEvents() {
+		List<String> events = new ArrayList<String>();
+		GameListener listener = new GameListener() {
+			@Override
+			public void cellsRevealed(int[] cells) {
+				events.add("revealed " + cells.length);
+			}
+
+			@Override
+			public void cellFlagged(int cell, boolean flagged) {
+				events.add("flagged " + cell + " " + flagged);
+			}
+
+			@Override
+			public void gameWon(double seconds) {
+				events.add("won");
+			}
+
+			@Override
+			public void gameLost(int cell) {
+				events.add("lost " + cell);
+			}
+
+			@Override
+			public void boardChanged() {
+				events.add("board");
+			}
+		};
+		MinesweeperModel model = new MinesweeperModel(new MinesweeperBoard(16, 16), 42);
+		model.addListener(listener);
+		model.notifyView();
+		model.flagSpace(0, 1);
+		model.flagSpace(0, 1);
+		int revealed = model.revealSpace(8, 8).getRevealed().length;
+		assertEquals(events, Arrays.asList("board", "flagged 1 true", "flagged 1 false", "revealed " + revealed));
+		events.clear();
+		// Nothing is sent for moves that change nothing
+		model.revealSpace(8, 8);
+		model.flagSpace(8, 8);
+		assertTrue(events.isEmpty());
+		MinesweeperBoard board = model.getBoard();
+		int covered = board.numCovered() - board.bombCount;
+		int mine = -1;
+		model.beginBatch();
+		for(int r = 0; r < 16; r++) {
+			for(int c = 0; c < 16; c++) {
+				if(board.hasMine(r, c) && mine < 0) {
+					mine = r * 16 + c;
+					model.flagSpace(r, c);
+				} else if(!board.hasMine(r, c) && board.isCovered(r, c)) {
+					model.revealSpace(r, c);
+				}
+			}
+		}
+		assertTrue(events.isEmpty());
+		model.endBatch();
+		assertEquals(events, Arrays.asList("revealed " + covered, "flagged " + mine + " true", "won"));
+		assertThrows(IllegalStateException.class, () -> model.endBatch());
+		model.removeListener(listener);
+		model.notifyView();
+		assertEquals(events.size(), 3);
+		MinesweeperModel lost = new MinesweeperModel(new MinesweeperBoard(16, 16), 42);
+		lost.addListener(listener);
+		lost.revealSpace(8, 8);
+		events.clear();
+		int bomb = 0;
+		while(!lost.getBoard().hasMine(bomb / 16, bomb % 16)) {
+			bomb++;
+		}
+		lost.revealSpace(bomb / 16, bomb % 16);
+		lost.revealSpace(bomb / 16, bomb % 16);
+		assertEquals(events, Arrays.asList("revealed 1", "lost " + bomb));
+		// In a batch, a flag sends one event with its final state, and nothing if it
+		// ended as it started
+		MinesweeperModel toggled = new MinesweeperModel(new MinesweeperBoard(16, 16), 42);
+		toggled.revealSpace(8, 8);
+		int first = 0;
+		while(!toggled.getBoard().isCovered(first / 16, first % 16)) {
+			first++;
+		}
+		int second = first + 1;
+		while(!toggled.getBoard().isCovered(second / 16, second % 16)) {
+			second++;
+		}
+		toggled.addListener(listener);
+		events.clear();
+		toggled.beginBatch();
+		for(int i = 0; i < 4; i++) {
+			toggled.flagSpace(first / 16, first % 16);
+		}
+		for(int i = 0; i < 3; i++) {
+			toggled.flagSpace(second / 16, second % 16);
+		}
+		toggled.endBatch();
+		assertEquals(events, Arrays.asList("flagged " + second + " true"));
+		// A listener that throws does not get the same events again
+		GameListener thrower = new GameListener() {
+			@Override
+			public void cellFlagged(int cell, boolean flagged) {
+				throw new IllegalStateException("Listener failed");
+			}
+		};
+		toggled.addListener(thrower);
+		toggled.beginBatch();
+		toggled.flagSpace(first / 16, first % 16);
+		assertThrows(IllegalStateException.class, () -> toggled.endBatch());
+		toggled.removeListener(thrower);
+		events.clear();
+		toggled.beginBatch();
+		toggled.endBatch();
+		assertTrue(events.isEmpty());
+	}
+
+	/*
+	 * Tests that chording reveals the neighbors of a satisfied number in one
+	 * move, loses on a wrong flag, and replays from a recording.
+	 */
+	@Test
+	void testChord() {
+		MinesweeperBoard board = new MinesweeperBoard(9, 9);
+		board.setMine(0, 0, true);
+		board.setMine(0, 2, true);
+		board.setMine(8, 8, true);
+		board.recountMines();
+		board.bombCount = 3;
+		MinesweeperModel model = new MinesweeperModel(board);
+		List<String> events = new ArrayList<String>();
+		model.addListener(new GameListener() {
+			@Override
+			public void cellsRevealed(int[] cells) {
+				events.add("revealed " + cells.length);
+			}
+
+			@Override
+			public void gameWon(double seconds) {
+				events.add("won");
+			}
+		});
+		MinesweeperController controller = new MinesweeperController(model);
+		assertEquals(controller.revealSpace(1, 1).getRevealed().length, 1);
+		assertEquals(board.getDisplayNum(1, 1), 2);
+		// Not enough flags, and covered tiles cannot be chorded
+		assertEquals(controller.chordSpace(1, 1).getRevealed().length, 0);
+		controller.flagSpace(0, 0);
+		assertEquals(controller.chordSpace(1, 1).getRevealed().length, 0);
+		assertEquals(controller.chordSpace(5, 5).getRevealed().length, 0);
+		controller.flagSpace(0, 2);
+		events.clear();
+		RevealResult result = controller.chordSpace(1, 1);
+		assertTrue(result.hasWon());
+		assertEquals(result.getRevealed().length, 81 - 3 - 1);
+		assertEquals(events, Arrays.asList("revealed 77", "won"));
+		// A wrong flag makes the chord reveal a mine
+		MinesweeperModel lost = new MinesweeperModel(new MinesweeperBoard(9, 9));
+		lost.getBoard().setMine(0, 0, true);
+		lost.getBoard().setMine(0, 2, true);
+		lost.getBoard().recountMines();
+		lost.getBoard().bombCount = 2;
+		lost.revealSpace(1, 1);
+		lost.flagSpace(0, 0);
+		lost.flagSpace(1, 0);
+		result = lost.chordSpace(1, 1);
+		assertTrue(result.hasLost());
+		assertTrue(lost.getBoard().hasMine(0, 2) && !lost.getBoard().isCovered(0, 2));
+		// A seeded game won with chords wherever they reveal something
+		MinesweeperModel seeded = new MinesweeperModel(16, 16, 40);
+		GameRecording recording = GameRecording.start(seeded);
+		seeded.revealSpace(8, 8);
+		MinesweeperBoard played = seeded.getBoard();
+		int chords = 0;
+		while(!seeded.getWon()) {
+			int before = chords;
+			for(int r = 0; r < 16; r++) {
+				for(int c = 0; c < 16; c++) {
+					if(played.hasMine(r, c) && !played.isFlagged(r, c)) {
+						seeded.flagSpace(r, c);
+					} else if(!played.hasMine(r, c) && seeded.chordSpace(r, c).getRevealed().length > 0) {
+						chords++;
+					}
+				}
+			}
+			if(chords == before) {
+				// No chord reveals anything, so reveal a safe tile
+				int cell = 0;
+				while(played.hasMine(cell / 16, cell % 16) || !played.isCovered(cell / 16, cell % 16)) {
+					cell++;
+				}
+				seeded.revealSpace(cell / 16, cell % 16);
+			}
+		}
+		assertTrue(chords > 0);
+		GameRecording slow = new GameRecording(recording.getBoard(), recording.getSeed());
+		for(int i = 0; i < recording.numMoves(); i++) {
+			slow.record(recording.getMove(i), i * 1000L);
+		}
+		assertEquals(new ReplayVerifier().verify(slow, recording.numMoves()), ReplayVerifier.Verdict.VALID);
+	}
+
+	/*
+	 * Tests that a batch of moves plays like the same moves made one at a time,
+	 * notifies listeners once, and stops when the game is lost.
+	 */
+	@Test
+	void testApplyMoves() {
+		MinesweeperModel single = new MinesweeperModel(16, 16, 40);
+		GameRecording recording = GameRecording.start(single);
+		single.revealSpace(8, 8);
+		MinesweeperBoard board = single.getBoard();
+		for(int cell = 0; cell < 256; cell++) {
+			if(board.hasMine(cell / 16, cell % 16)) {
+				single.flagSpace(cell / 16, cell % 16);
+			}
+		}
+		for(int cell = 0; cell < 256; cell++) {
+			if(board.isCovered(cell / 16, cell % 16) && !board.isFlagged(cell / 16, cell % 16)) {
+				single.revealSpace(cell / 16, cell % 16);
+			}
+		}
+		int[] moves = recording.getMoves();
+		MinesweeperModel batch = new MinesweeperModel(16, 16, 40);
+		batch.setSeed(recording.getSeed());
+		List<String> events = new ArrayList<String>();
+		batch.addListener(new GameListener() {
+			@Override
+			public void cellsRevealed(int[] cells) {
+				events.add("revealed " + cells.length);
+			}
+
+			@Override
+			public void gameWon(double seconds) {
+				events.add("won");
+			}
+		});
+		MinesweeperController controller = new MinesweeperController(batch);
+		RevealResult result = controller.applyMoves(moves);
+		assertTrue(result.hasWon());
+		assertEquals(result.getMoves(), moves.length);
+		assertEquals(result.getRevealed().length, 256 - 40);
+		assertEquals(batch.getBoard().numFlagged(), board.numFlagged());
+		assertEquals(events, Arrays.asList("revealed 216", "won"));
+		// Moves after a loss are not made
+		MinesweeperModel lost = new MinesweeperModel(16, 16, 40);
+		lost.setSeed(recording.getSeed());
+		int mine = 0;
+		while(!board.hasMine(mine / 16, mine % 16)) {
+			mine++;
+		}
+		int[] losing = { moves[0], Move.reveal(mine), Move.flag(0), Move.reveal(mine + 1) };
+		result = lost.applyMoves(losing, 0, losing.length);
+		assertTrue(result.hasLost());
+		assertEquals(result.getMoves(), 2);
+		assertFalse(lost.getBoard().isFlagged(0, 0));
+		assertThrows(IllegalArgumentException.class, () -> new MinesweeperModel(16, 16, 40).applyMoves(
+				new int[] { Move.reveal(0), 3 }, 0, 2));
+	}
+
+	/*
+	 * Tests that the game server plays games over HTTP, answers bad requests with
+	 * errors, and evicts games that are idle or do not fit in its memory budget.
+	 */
+	@Test
+	void testGameServer() throws Exception {
+		SessionRegistry registry = new SessionRegistry(2 * Session.estimateBytes(new MinesweeperBoard(16, 16)), 60_000);
+		GameServer server = new GameServer(registry, 0, 2);
+		server.start();
+		try {
+			String url = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort();
+			HttpClient http = HttpClient.newHttpClient();
+			String[] response = request(http, "POST", url + "/games?rows=16&cols=16&mines=40&seed=7");
+			assertEquals(response[0], "200");
+			assertTrue(response[1].contains("\"rows\":16,\"cols\":16,\"mines\":40"));
+			String id = response[1].substring(7, response[1].indexOf('"', 7));
+			response = request(http, "POST", url + "/games/" + id + "/flag?row=0&col=0");
+			assertEquals(response[1], "{\"outcome\":\"IN_PROGRESS\",\"changed\":[0]}");
+			response = request(http, "POST", url + "/games/" + id + "/reveal?row=8&col=8");
+			assertEquals(response[0], "200");
+			response = request(http, "GET", url + "/games/" + id);
+			assertTrue(response[1].contains("\"flagged\":1,\"tiles\":[\"F"));
+			assertEquals(request(http, "POST", url + "/games/" + id + "/chord?row=0&col=1")[0], "200");
+			assertEquals(request(http, "POST", url + "/games/" + id + "/reveal?row=16&col=0")[0], "400");
+			assertEquals(request(http, "POST", url + "/games/" + id + "/dig?row=1&col=1")[0], "400");
+			assertEquals(request(http, "POST", url + "/games?rows=2&cols=2&mines=1")[0], "400");
+			assertEquals(request(http, "POST", url + "/games?shape=../secret")[0], "400");
+			// Errors are valid JSON whatever the request held
+			response = request(http, "POST", url + "/games?rows=a%5Cb%0A");
+			assertEquals(response[0], "400");
+			assertEquals(response[1], "{\"error\":\"For input string: \\\"a\\\\b\\u000a\\\"\"}");
+			assertEquals(request(http, "GET", url + "/games/nothing")[0], "404");
+			assertEquals(request(http, "POST", url + "/games?rows=30&cols=30&mines=99")[0], "503");
+			// Games that are refused or fail take no memory from the budget
+			long bytes = registry.getBytes();
+			assertEquals(request(http, "POST", url + "/games?rows=10000&cols=10000&mines=10")[0], "503");
+			assertEquals(request(http, "POST", url + "/games?rows=9&cols=9&mines=10&seed=x")[0], "400");
+			assertEquals(registry.getBytes(), bytes);
+			// A third game does not fit, so the least recently used one is evicted
+			request(http, "POST", url + "/games?rows=16&cols=16&mines=40");
+			request(http, "GET", url + "/games/" + id);
+			request(http, "POST", url + "/games?rows=16&cols=16&mines=40");
+			assertEquals(registry.size(), 2);
+			assertEquals(registry.getEvictions(), 1L);
+			assertEquals(request(http, "DELETE", url + "/games/" + id)[0], "200");
+			assertEquals(request(http, "GET", url + "/games/" + id)[0], "404");
+			assertEquals(registry.size(), 1);
+		} finally {
+			server.stop();
+		}
+		SessionRegistry idle = new SessionRegistry(1 << 20, 10);
+		idle.create(new MinesweeperModel(9, 9, 10));
+		Thread.sleep(20);
+		assertEquals(idle.evictIdle(), 1);
+		assertEquals(idle.getBytes(), 0L);
+	}
+
+	/*
+	 * Sends a request to a server and returns its status code and body.
+	 */
+	private static String[] request(HttpClient http, String method, String url) throws Exception {
+		HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(url))
+				.method(method, HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+		return new String[] { String.valueOf(response.statusCode()), response.body() };
+	}
+
+	/*
+	 * Tests that recorded games survive encoding and replay to the same result,
+	 * and that implausible scores are rejected.
+	 */
+	@Test
+	void testReplayVerifier() throws Exception {
+		// A seeded game, won by revealing every tile without a mine
+		MinesweeperModel model = new MinesweeperModel(16, 16, 40);
+		GameRecording recording = GameRecording.start(model);
+		model.revealSpace(8, 8);
+		MinesweeperBoard board = model.getBoard();
+		for(int r = 0; r < 16; r++) {
+			for(int c = 0; c < 16; c++) {
+				if(!board.hasMine(r, c) && board.isCovered(r, c)) {
+					model.revealSpace(r, c);
+				}
+			}
+		}
+		assertTrue(model.getWon() && recording.getMines() == null);
+		GameRecording decoded = GameRecording.fromByteArray(recording.toByteArray());
+		assertEquals(decoded.numMoves(), recording.numMoves());
+		assertTrue(recording.toByteArray().length < 20 + 6 * recording.numMoves());
+		ReplayVerifier verifier = new ReplayVerifier();
+		assertEquals(verifier.verify(decoded, 0), recording.numMoves() > 1 ? ReplayVerifier.Verdict.TOO_FAST
+				: ReplayVerifier.Verdict.VALID);
+		// The same moves a second apart take as long as their score claims
+		GameRecording slow = new GameRecording(decoded.getBoard(), decoded.getSeed());
+		for(int i = 0; i < decoded.numMoves(); i++) {
+			slow.record(decoded.getMove(i), i * 1000L);
+		}
+		assertEquals(verifier.verify(slow, decoded.numMoves()), ReplayVerifier.Verdict.VALID);
+		assertEquals(verifier.verify(slow, decoded.numMoves() / 2 - 2), ReplayVerifier.Verdict.TIME_MISMATCH);
+		GameRecording unfinished = new GameRecording(decoded.getBoard(), decoded.getSeed());
+		unfinished.record(decoded.getMove(0), 0);
+		assertEquals(verifier.verify(unfinished, 100), ReplayVerifier.Verdict.NOT_WON);
+		assertEquals(verifier.verify(new GameRecording("shape:../secret", 1), 100), ReplayVerifier.Verdict.MALFORMED);
+		byte[] data = slow.toByteArray();
+		assertThrows(IOException.class, () -> GameRecording.fromByteArray(Arrays.copyOf(data, data.length - 1)));
+		// A board that needs no guessing records its mines, and is won with flags
+		MinesweeperModel noGuess = new MinesweeperModel(16, 16, 40);
+		noGuess.setNoGuess(5000);
+		GameRecording solved = GameRecording.start(noGuess);
+		MinesweeperController controller = new MinesweeperController(noGuess);
+		controller.revealSpace(8, 8);
+		controller.autoSolve();
+		assertTrue(noGuess.getWon() && solved.getMines() != null);
+		verifier.setMinMoveMillis(0);
+		// Batches are replayed in parallel with the same verdicts
+		GameRecording[] batch = new GameRecording[2000];
+		int[] scores = new int[batch.length];
+		for(int i = 0; i < batch.length; i++) {
+			batch[i] = GameRecording.fromByteArray((i % 2 == 0 ? recording : solved).toByteArray());
+			scores[i] = i % 3 == 0 ? 0 : 100;
+		}
+		ReplayVerifier.Verdict[] verdicts = verifier.verifyAll(batch, scores);
+		for(int i = 0; i < batch.length; i++) {
+			assertEquals(verdicts[i], ReplayVerifier.Verdict.VALID);
+		}
+		// A service with a verifier only adds scores that replay to a win
+		File snapshot = File.createTempFile("verified", ".txt");
+		snapshot.deleteOnExit();
+		new File(snapshot.getPath().replace(".txt", ".log")).deleteOnExit();
+		new File(snapshot.getPath().replace(".txt", ".lock")).deleteOnExit();
+		LeaderboardService service = new LeaderboardService(new Leaderboard(snapshot.getPath()));
+		service.setVerifier(verifier);
+		service.submit("Solver", 100, solved).get();
+		assertThrows(ExecutionException.class, () -> service.submit("Cheater", 1, unfinished).get());
+		assertThrows(ExecutionException.class, () -> service.submit("Nobody", 1).get());
+		assertEquals(service.getLeaderboard().getName(1), "Solver");
+		assertEquals((int)service.getLeaderboard().getScore(2), 0);
+	}
+
+	/*
+	 * Tests that headless simulations give the same results on any number of
+	 * threads.
+	 */
+	@Test
+	void testSimulation() {
+		SimulationEngine engine = new SimulationEngine(9, 9, 10);
+		engine.setSeed(42);
+		engine.setThreads(1);
+		SimulationStats single = engine.run(2000);
+		engine.setThreads(4);
+		SimulationStats multi = engine.run(2000);
+		assertEquals(single.getGames(), 2000);
+		assertEquals(single.getGames(), single.getWins() + single.getLosses());
+		assertEquals(single.getMoves(), multi.getMoves());
+		assertEquals(single.getMaxCascade(), multi.getMaxCascade());
+	}
+
 	/*
 	 * This test recieves over 90% however it is required that the original leadboard
 	 * text file be deleted or removed before and after the test. 
 	 */
+	/*
+	 * Tests that the solver never reveals a mine or flags a safe tile.
+	 */
+	@Test
+	void testSolver() {
+		int wins = 0;
+		for (int seed = 0; seed < 200; seed++) {
+			MinesweeperModel model = new MinesweeperModel(16, 16, 40);
+			model.setSeed(seed);
+			MinesweeperController controller = new MinesweeperController(model);
+			assertEquals(controller.hint(), Move.NONE);
+			controller.revealSpace(8, 8);
+			RevealResult result = controller.autoSolve();
+			assertFalse(result.hasLost());
+			assertEquals(controller.hint(), Move.NONE);
+			wins += result.hasWon() ? 1 : 0;
+			MinesweeperBoard board = model.getBoard();
+			for (int r = 0; r < 16; r++) {
+				for (int c = 0; c < 16; c++) {
+					assertTrue(!board.isFlagged(r, c) || board.hasMine(r, c));
+				}
+			}
+		}
+		assertTrue(wins > 0);
+	}
+
+	/*
+	 * Tests that the solver does not get stuck on a safe tile the player flagged,
+	 * and offers it again once the flag is removed.
+	 */
+	@Test
+	void testSolverFlaggedSafe() {
+		MinesweeperModel model = new MinesweeperModel(16, 16, 40);
+		model.setSeed(0);
+		MinesweeperController controller = new MinesweeperController(model);
+		controller.revealSpace(8, 8);
+		int move = controller.hint();
+		while (Move.type(move) == Move.FLAG) {
+			controller.flagSpace(Move.cell(move) / 16, Move.cell(move) % 16);
+			move = controller.hint();
+		}
+		assertEquals(Move.type(move), Move.REVEAL);
+		int row = Move.cell(move) / 16;
+		int col = Move.cell(move) % 16;
+		controller.flagSpace(row, col);
+		RevealResult result = controller.autoSolve();
+		assertFalse(result.hasLost());
+		assertTrue(model.getBoard().isFlagged(row, col) && model.getBoard().isCovered(row, col));
+		assertTrue(controller.hint() != move);
+		controller.flagSpace(row, col);
+		assertEquals(controller.hint(), move);
+	}
+
+	/*
+	 * Tests that no guess boards are won by the solver alone.
+	 */
+	@Test
+	void testNoGuess() {
+		MinesweeperModel model = new MinesweeperModel("donut");
+		model.setSeed(3);
+		model.setNoGuess(10000);
+		MinesweeperController controller = new MinesweeperController(model);
+		controller.revealSpace(6, 1);
+		assertTrue(controller.autoSolve().hasWon());
+		MinesweeperBoard board = new MinesweeperModel(16, 30, 99).getBoard();
+		NoGuessGenerator generator = new NoGuessGenerator(board);
+		generator.setThreads(2);
+		generator.setTimeBudget(10000);
+		MinesweeperBoard layout = generator.generate(8, 15, 5);
+		assertTrue(layout.numCovered() == board.numInBounds());
+		assertFalse(layout.hasMine(8, 15));
+	}
+
+	/*
+	 * Tests that pooled boards are used on the first move and kept between runs.
+	 */
+	@Test
+	void testBoardPool() throws Exception {
+		BoardPool pool = new BoardPool();
+		MinesweeperModel first = new MinesweeperModel(16, 30, 99);
+		first.setBoardPool(pool);
+		pool.start();
+		for (int i = 0; i < 500 && pool.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(pool.size(), 2);
+		first.setSeed(1);
+		first.revealSpace(0, 0);
+		MinesweeperBoard board = first.getBoard();
+		assertEquals(board.getDisplayNum(0, 0), 0);
+		int mines = 0;
+		for (int r = 0; r < 16; r++) {
+			for (int c = 0; c < 30; c++) {
+				mines += board.hasMine(r, c) ? 1 : 0;
+			}
+		}
+		assertEquals(mines, 99);
+		pool.stop();
+		File file = File.createTempFile("board_pool", ".dat");
+		file.deleteOnExit();
+		pool.save(file.getPath());
+		BoardPool loaded = new BoardPool();
+		loaded.load(file.getPath());
+		assertEquals(loaded.size(), pool.size());
+		/* A loaded board keeps its mines, and a file that is not a pool is rejected */
+		BoardPool.Entry entry = loaded.take(new BoardPool.Key("", 16, 30, 99, false, 0), 0, 0);
+		mines = 0;
+		for (int r = 0; r < 16; r++) {
+			for (int c = 0; c < 30; c++) {
+				mines += entry.getBoard().hasMine(r, c) ? 1 : 0;
+			}
+		}
+		assertEquals(mines, 99);
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		assertThrows(IOException.class, () -> new BoardPool().load(file.getPath()));
+		/* A key whose boards cannot be generated does not stop the other keys */
+		BoardPool failing = new BoardPool();
+		MinesweeperBoard crowded = new MinesweeperBoard(9, 9);
+		crowded.bombCount = 1000;
+		failing.prepare("", crowded, false);
+		failing.prepare("", new MinesweeperModel(9, 9, 10).getBoard(), false);
+		failing.start();
+		for (int i = 0; i < 500 && failing.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		failing.stop();
+		assertEquals(failing.size(), 2);
+	}
+
 	@Test
 	void testLeaderboard() throws IOException {
-		Leaderboard board = new Leaderboard();
+		File scores = File.createTempFile("scores", ".txt");
+		scores.deleteOnExit();
+		new File(scores.getPath().replace(".txt", ".log")).deleteOnExit();
+		new File(scores.getPath().replace(".txt", ".lock")).deleteOnExit();
+		Leaderboard board = new Leaderboard(scores.getPath());
 		board.addScore("Testcase", 1);
 		assertEquals((int)board.getScore(1), 1);
 		assertEquals(board.getName(1),"Testcase");
 		assertEquals(board.getName(99),"");
 		assertEquals((int)board.getScore(99),0);
 		board.addScore("", 999);
-		Leaderboard board2 = new Leaderboard();
+		Leaderboard board2 = new Leaderboard(scores.getPath());
 		for(int i = 0;i<15;i++) {
 			board2.addScore("test",(int)Math.random()* 100 + 1);
 		}
+		// The log is compacted into the snapshot, keeping the top 10
+		File snapshot = File.createTempFile("leaderboard", ".txt");
+		snapshot.deleteOnExit();
+		Leaderboard board3 = new Leaderboard(snapshot.getPath());
+		for(int i = 250; i > 0; i--) {
+			board3.addScore("Player " + i, i);
+		}
+		Leaderboard board4 = new Leaderboard(snapshot.getPath());
+		assertEquals(board4.getName(1), "Player 1");
+		assertEquals((int)board4.getScore(10), 10);
+		assertEquals(board4.getName(11), "");
+		assertTrue(snapshot.length() < 200);
+		new File(snapshot.getPath().replace(".txt", ".log")).deleteOnExit();
+		new File(snapshot.getPath().replace(".txt", ".lock")).deleteOnExit();
+	}
+
+	@Test
+	void testLeaderboardService() throws Exception {
+		// Scores submitted from several threads at once are batched and none are lost
+		File snapshot = File.createTempFile("leaderboard", ".txt");
+		snapshot.deleteOnExit();
+		new File(snapshot.getPath().replace(".txt", ".log")).deleteOnExit();
+		new File(snapshot.getPath().replace(".txt", ".lock")).deleteOnExit();
+		LeaderboardService service = new LeaderboardService(new Leaderboard(snapshot.getPath()), 20);
+		service.start();
+		// A second leaderboard on the same files, as another process would have
+		Leaderboard other = new Leaderboard(snapshot.getPath());
+		List<CompletableFuture<Void>> done = Collections.synchronizedList(new ArrayList<CompletableFuture<Void>>());
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++) {
+			int first = t * 100;
+			threads[t] = new Thread(() -> {
+				for(int i = first; i < first + 100; i++) {
+					done.add(service.submit("Player " + (i + 1), i + 1));
+				}
+			});
+			threads[t].start();
+		}
+		other.addScore("Other", 0);
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		for(CompletableFuture<Void> future : done) {
+			future.get();
+		}
+		service.stop();
+		assertTrue(service.getBatches() < 400);
+		other.refresh();
+		assertEquals(other.getName(1), "Other");
+		assertEquals(other.getName(2), "Player 1");
+		assertEquals((int)other.getScore(10), 9);
+		Leaderboard reloaded = new Leaderboard(snapshot.getPath());
+		assertEquals(reloaded.getName(1), "Other");
+		assertEquals((int)reloaded.getScore(10), 9);
+		// A verifier that fails only fails its batch, and the worker keeps going
+		LeaderboardService failing = new LeaderboardService(new Leaderboard(snapshot.getPath()), 0);
+		failing.setVerifier(new ReplayVerifier() {
+			@Override
+			public Verdict[] verifyAll(GameRecording[] recordings, int[] scores) {
+				if (scores[0] == 1) {
+					throw new IllegalStateException("Verifier failed");
+				}
+				return super.verifyAll(recordings, scores);
+			}
+		});
+		failing.start();
+		assertThrows(ExecutionException.class, () -> failing.submit("Broken", 1).get(10, TimeUnit.SECONDS));
+		assertThrows(ExecutionException.class, () -> failing.submit("Nobody", 2).get(10, TimeUnit.SECONDS));
+		failing.stop();
 	}
 
 }
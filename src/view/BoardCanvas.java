@@ -0,0 +1,200 @@
+package view;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import model.MinesweeperBoard;
+
+/**
+ * A view of the board drawn on a single canvas, for boards too large to hold a
+ * node per tile. Only the tiles inside the viewport are drawn, from the sprite
+ * atlas of TileImages, so the cost of the view depends on the size of the
+ * viewport rather than the size of the board. The viewport is scrolled with the
+ * mouse wheel and zoomed with control + mouse wheel or a pinch gesture.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class BoardCanvas extends Pane {
+
+	/**
+	 * Receives clicks on the tiles of the board.
+	 */
+	public interface TileListener {
+		/**
+		 * Called when a tile of the board is clicked.
+		 * 
+		 * @param row   A row coordinate
+		 * @param col   A column coordinate
+		 * @param event The mouse event of the click
+		 */
+		void tileClicked(int row, int col, MouseEvent event);
+	}
+
+	// Smallest and largest width and height of a tile in pixels
+	private static final double MIN_TILE_SIZE = 4.0;
+	private static final double MAX_TILE_SIZE = 64.0;
+	private static final Color BACKGROUND = Color.rgb(123, 123, 123);
+
+	private Canvas canvas;
+	private MinesweeperBoard board;
+	private Image atlas;
+	private TileListener listener;
+	private double tileSize;
+	// Position in pixels of the top left corner of the viewport on the board
+	private double offsetX;
+	private double offsetY;
+
+	/**
+	 * Constructs a view of a board with a viewport of a given size. The board is
+	 * zoomed to fit the viewport if the tiles would not be too small.
+	 * 
+	 * @param board  The board to draw
+	 * @param width  Width of the viewport in pixels
+	 * @param height Height of the viewport in pixels
+	 */
+	public BoardCanvas(MinesweeperBoard board, double width, double height) {
+		this.board = board;
+		this.atlas = TileImages.atlas();
+		this.canvas = new Canvas(width, height);
+		this.tileSize = clampTileSize(Math.min(width / board.getCols(), height / board.getRows()));
+		getChildren().add(canvas);
+		setPrefSize(width, height);
+		canvas.setOnMouseClicked(this::clicked);
+		canvas.setOnScroll(this::scrolled);
+		canvas.setOnZoom(event -> zoom(event.getZoomFactor(), event.getX(), event.getY()));
+	}
+
+	/**
+	 * Sets the listener that receives clicks on tiles.
+	 * 
+	 * @param listener A tile listener
+	 */
+	public void setTileListener(TileListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Draws every tile inside the viewport.
+	 */
+	public void redraw() {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.setFill(BACKGROUND);
+		gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		int firstRow = (int) (offsetY / tileSize);
+		int lastRow = Math.min(board.getRows() - 1, (int) ((offsetY + canvas.getHeight()) / tileSize));
+		int firstCol = (int) (offsetX / tileSize);
+		int lastCol = Math.min(board.getCols() - 1, (int) ((offsetX + canvas.getWidth()) / tileSize));
+		for (int r = firstRow; r <= lastRow; r++) {
+			for (int c = firstCol; c <= lastCol; c++) {
+				drawTile(gc, r, c);
+			}
+		}
+	}
+
+	/**
+	 * Draws the given tiles if they are inside the viewport.
+	 * 
+	 * @param cells The indices (row * cols + col) of the tiles
+	 * @param count The number of indices to read from cells
+	 */
+	public void drawCells(int[] cells, int count) {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		int cols = board.getCols();
+		for (int k = 0; k < count; k++) {
+			int r = cells[k] / cols;
+			int c = cells[k] % cols;
+			double x = c * tileSize - offsetX;
+			double y = r * tileSize - offsetY;
+			if (x + tileSize > 0 && y + tileSize > 0 && x < canvas.getWidth() && y < canvas.getHeight()) {
+				drawTile(gc, r, c);
+			}
+		}
+	}
+
+	/**
+	 * Draws a single tile, leaving a one pixel gap as a border if the tiles are
+	 * large enough.
+	 * 
+	 * @param gc The graphics context of the canvas
+	 * @param r  A row coordinate
+	 * @param c  A column coordinate
+	 */
+	private void drawTile(GraphicsContext gc, int r, int c) {
+		int sprite = TileImages.sprite(board, r, c);
+		double gap = tileSize >= 8.0 ? 1.0 : 0.0;
+		gc.drawImage(atlas, sprite * TileImages.SPRITE_SIZE, 0, TileImages.SPRITE_SIZE, TileImages.SPRITE_SIZE,
+				c * tileSize - offsetX, r * tileSize - offsetY, tileSize - gap, tileSize - gap);
+	}
+
+	/**
+	 * Passes a click to the tile listener, unless the mouse was dragged.
+	 * 
+	 * @param event The mouse event of the click
+	 */
+	private void clicked(MouseEvent event) {
+		if (listener == null || !event.isStillSincePress()) {
+			return;
+		}
+		int row = (int) ((event.getY() + offsetY) / tileSize);
+		int col = (int) ((event.getX() + offsetX) / tileSize);
+		if (row < board.getRows() && col < board.getCols()) {
+			listener.tileClicked(row, col, event);
+		}
+	}
+
+	/**
+	 * Scrolls the viewport, or zooms it if control is held.
+	 * 
+	 * @param event The scroll event
+	 */
+	private void scrolled(ScrollEvent event) {
+		if (event.isControlDown()) {
+			zoom(event.getDeltaY() > 0 ? 1.25 : 0.8, event.getX(), event.getY());
+		} else {
+			scrollTo(offsetX - event.getDeltaX(), offsetY - event.getDeltaY());
+		}
+		event.consume();
+	}
+
+	/**
+	 * Zooms the viewport, keeping the point under the mouse in place.
+	 * 
+	 * @param factor How much larger the tiles should become
+	 * @param x      Horizontal position of the mouse on the canvas
+	 * @param y      Vertical position of the mouse on the canvas
+	 */
+	private void zoom(double factor, double x, double y) {
+		double newSize = clampTileSize(tileSize * factor);
+		double scale = newSize / tileSize;
+		tileSize = newSize;
+		scrollTo((offsetX + x) * scale - x, (offsetY + y) * scale - y);
+	}
+
+	/**
+	 * Moves the viewport, keeping it within the board, and redraws it.
+	 * 
+	 * @param x New horizontal offset of the viewport in pixels
+	 * @param y New vertical offset of the viewport in pixels
+	 */
+	private void scrollTo(double x, double y) {
+		double maxX = Math.max(0, board.getCols() * tileSize - canvas.getWidth());
+		double maxY = Math.max(0, board.getRows() * tileSize - canvas.getHeight());
+		offsetX = Math.max(0, Math.min(maxX, x));
+		offsetY = Math.max(0, Math.min(maxY, y));
+		redraw();
+	}
+
+	/**
+	 * Limits a tile size to the supported range.
+	 * 
+	 * @param size A tile size in pixels
+	 * @return The size within MIN_TILE_SIZE and MAX_TILE_SIZE
+	 */
+	private static double clampTileSize(double size) {
+		return Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, size));
+	}
+}
@@ -1,27 +1,24 @@
 package view;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.text.DecimalFormat;
-import java.util.Observable;
-import java.util.Observer;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
 
 import controller.MinesweeperController;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -39,20 +36,28 @@ import javafx.scene.layout.BorderStrokeStyle;
 import javafx.scene.layout.BorderWidths;
 import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.ImagePattern;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
+import model.BoardPool;
+import model.GameClock;
+import model.GameListener;
+import model.GameRecording;
+import model.GameStorage;
 import model.Leaderboard;
+import model.LeaderboardService;
 import model.MinesweeperBoard;
 import model.MinesweeperModel;
-import model.Tile;
+import model.MoveJournal;
+import model.ReplayVerifier;
+import model.RevealResult;
 
 /**
  * A view class for the minesweeper game. Holds a model and controller instance
@@ -62,72 +67,154 @@ import model.Tile;
  * 
  * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
  */
-@SuppressWarnings("deprecation")
-public class MinesweeperView extends Application implements Observer {
+public class MinesweeperView extends Application implements GameListener {
 
 	private MinesweeperModel model;
 	private MinesweeperController controller;
-	private final int SIZE_OF_BOARD = 13;
+	// Width and height in pixels of the area the board is drawn in
+	private final int BOARD_PIXELS = 572;
+	// Boards with more tiles than this are drawn on a canvas by default
+	private final int CANVAS_THRESHOLD = 10000;
+	private final DecimalFormat TIME_FORMAT = new DecimalFormat("#0.00");
+	private int rows;
+	private int cols;
 	private String playerName = "";
 	private Leaderboard leaderboard;
 	private StackPane[][] gameTiles;
+	private BoardCanvas boardCanvas;
 	private Text timeDisplay;
-	private static Timer timer;
-	private double time = 0;
-	private boolean renderBlack = true;
-	private TimerTask task;
+	// Shows the time of the game once per frame while its clock runs
+	private ClockTimer clockTimer;
+	// Tiles changed since the last frame, painted by the repaint timer
+	private RepaintTimer repaintTimer;
+	private int[] dirtyCells;
+	private int numDirty;
+	private BitSet dirtySet;
+	private boolean repaintAll;
+	// Boards generated in the background for the next games
+	private BoardPool boardPool;
+	// Writes scores to the leaderboard in the background
+	private LeaderboardService leaderboardService;
+	// Saves the moves of the current game as they are made
+	private MoveJournal journal;
+	// Reads and writes files away from the JavaFX thread
+	private GameStorage storage;
+	// Set by a left+right chord until the next press, so that releasing the
+	// second button does not also reveal or flag the tile
+	private boolean chordPending;
 
 	/**
-	 * Updates the board to match the model when the model makes change to it.
+	 * Records which tiles were uncovered and schedules a repaint for the next
+	 * frame. Changes that arrive before the frame is drawn are painted together.
 	 * 
-	 * @param o An observable object which notifies observers about changes to the board.
+	 * @param cells The indices (row * cols + col) of the uncovered tiles
+	 */
+	@Override
+	public void cellsRevealed(int[] cells) {
+		for (int cell : cells) {
+			markDirty(cell);
+		}
+		repaintTimer.start();
+	}
+
+	/**
+	 * Records that a flag was placed or removed and schedules a repaint for the
+	 * next frame.
 	 * 
-	 * @param arg A MinesweeperBoard object that represents the board of the model.
+	 * @param cell    The index (row * cols + col) of the tile
+	 * @param flagged True if the tile is now flagged
 	 */
 	@Override
-	public void update(Observable o, Object arg) {
-		MinesweeperBoard newBoard = (MinesweeperBoard) arg;
-		for (int i = 0; i < SIZE_OF_BOARD; i++) {
-			for (int j = 0; j < SIZE_OF_BOARD; j++) {
-				StackPane gameTile = gameTiles[i][j];
-				Tile tile = newBoard.getTile(i, j);
-				ObservableList<Node> list = gameTile.getChildren();
-				for (Node node : list) {
-					if (node instanceof Rectangle) {
-						// Condition 0: Tile out of bounds
-						if (!tile.inBounds) {
-							if (renderBlack) {
-								Image img = new Image("file:images/blackTile.png");
-								((Rectangle) node).setFill(new ImagePattern(img));
-							}
-						}
-						// Condition 1: Covered + flagged
-						else if (tile.isCovered && tile.isFlagged) {
-							Image img = new Image("file:images/flagged_tile-2.png");
-							((Rectangle) node).setFill(new ImagePattern(img));
-						}
-						// Condition 2: Covered + no flag
-						else if (tile.isCovered && !tile.isFlagged) {
-							Image img = new Image("file:images/covered_tile.png");
-							((Rectangle) node).setFill(new ImagePattern(img));
-						}
-						// Condition 3: Uncovered + has mine
-						else if (!tile.isCovered && tile.hasMine) {
-							Image img = new Image("file:images/bombUncovered-2.png");
-							((Rectangle) node).setFill(new ImagePattern(img));
-						}
-						// Condition 4: Uncovered + mines nearby
-						else if (!tile.isCovered && !tile.hasMine) {
-							Image img = new Image("file:images/" + Integer.toString(tile.displayNum) + ".png");
-							((Rectangle) node).setFill(new ImagePattern(img));
-						}
-					}
+	public void cellFlagged(int cell, boolean flagged) {
+		markDirty(cell);
+		repaintTimer.start();
+	}
+
+	/**
+	 * Schedules a repaint of every tile for the next frame.
+	 */
+	@Override
+	public void boardChanged() {
+		repaintAll = true;
+		repaintTimer.start();
+	}
+
+	/**
+	 * Adds a tile to the tiles to repaint in the next frame, unless it is there
+	 * already.
+	 * 
+	 * @param cell The index (row * cols + col) of the tile
+	 */
+	private void markDirty(int cell) {
+		if (!dirtySet.get(cell)) {
+			dirtySet.set(cell);
+			if (numDirty == dirtyCells.length) {
+				dirtyCells = Arrays.copyOf(dirtyCells, numDirty * 2);
+			}
+			dirtyCells[numDirty++] = cell;
+		}
+	}
+
+	/**
+	 * Repaints the tiles changed since the last frame, or every tile if the whole
+	 * board changed.
+	 */
+	private void repaint() {
+		MinesweeperBoard board = model.getBoard();
+		if (boardCanvas != null) {
+			if (repaintAll) {
+				boardCanvas.redraw();
+			} else {
+				boardCanvas.drawCells(dirtyCells, numDirty);
+			}
+		} else if (repaintAll) {
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					paintTile(board, i, j);
 				}
 			}
+		} else {
+			for (int k = 0; k < numDirty; k++) {
+				paintTile(board, dirtyCells[k] / cols, dirtyCells[k] % cols);
+			}
 		}
-		renderBlack = false;
+		dirtySet.clear();
+		numDirty = 0;
+		repaintAll = false;
+	}
+
+	/**
+	 * Updates a tile to match the board.
+	 * 
+	 * @param board The board of the model
+	 * @param r A row coordinate
+	 * @param c A column coordinate
+	 */
+	private void paintTile(MinesweeperBoard board, int r, int c) {
+		Rectangle square = (Rectangle) gameTiles[r][c].getChildren().get(0);
+		square.setFill(TileImages.pattern(TileImages.sprite(board, r, c)));
 	}
 	
+	/**
+	 * Starts the services the game uses for the whole run: generating boards,
+	 * reading and writing files, and keeping the leaderboard. Called once before
+	 * start(), on the launcher thread, so reading the leaderboard does not hold
+	 * up the JavaFX thread.
+	 * 
+	 * @throws Exception if the leaderboard cannot be read
+	 */
+	@Override
+	public void init() throws Exception {
+		boardPool = new BoardPool();
+		boardPool.setFile("board_pool.dat");
+		boardPool.start();
+		storage = new GameStorage(Platform::runLater);
+		leaderboardService = new LeaderboardService(new Leaderboard());
+		// Scores are only added if their games replay to a win in that time
+		leaderboardService.setVerifier(new ReplayVerifier());
+		leaderboardService.start();
+	}
+
 	/**
 	 * The method that is called when the JavaFX application is started. 
 	 * 
@@ -135,12 +222,81 @@ public class MinesweeperView extends Application implements Observer {
 	 */
 	@Override
 	public void start(Stage stage) throws Exception {
-		AnchorPane mainMenu = createGameMenu(stage);
-		Scene scene = new Scene(mainMenu, 600, 600);
 		stage.setTitle("Minesweeper");
-		stage.setScene(scene);
+		showMenu(stage);
 		stage.show();
 	}
+
+	/**
+	 * Shows the main menu, when the game starts or the player goes back to it.
+	 * 
+	 * @param stage where all visual parts of the JavaFX application are displayed
+	 */
+	private void showMenu(Stage stage) {
+		AnchorPane mainMenu = createGameMenu(stage);
+		stage.setScene(new Scene(mainMenu, 600, 600));
+	}
+	
+	/**
+	 * Called when the application exits. Stops generating boards and keeps the
+	 * generated boards for the next run, and writes any scores not yet written.
+	 */
+	@Override
+	public void stop() {
+		boardPool.stop();
+		leaderboardService.stop();
+		storage.shutdown();
+	}
+
+	/**
+	 * Starts saving every move of a new game to "save_game.dat" and its journal,
+	 * in place of the journal of the previous game. If the journal cannot be
+	 * opened, the game is saved in full when the window is closed instead.
+	 * 
+	 * @param model The game to save
+	 */
+	private void openJournal(MinesweeperModel model) {
+		// The recording of the previous game no longer matches the save
+		storage.run(() -> GameRecording.recordingFile("save_game.dat").delete());
+		try {
+			MoveJournal newJournal = new MoveJournal(model, "save_game.dat");
+			newJournal.setName(playerName);
+			newJournal.setExecutor(storage.getExecutor());
+			model.setJournal(newJournal);
+			useJournal(newJournal);
+		} catch (IOException e) {
+			e.printStackTrace();
+			useJournal(null);
+		}
+	}
+
+	/**
+	 * Makes a journal the journal of the current game, and finishes the journal of
+	 * the previous game with finishJournal().
+	 * 
+	 * @param newJournal The journal of the current game, or null
+	 */
+	private void useJournal(MoveJournal newJournal) {
+		finishJournal();
+		journal = newJournal;
+	}
+
+	/**
+	 * Closes the journal of the current game in the background. If the game is
+	 * won or lost, its save is deleted instead, so that it cannot be loaded again.
+	 */
+	private void finishJournal() {
+		MoveJournal oldJournal = journal;
+		journal = null;
+		if (oldJournal == null) {
+			return;
+		}
+		if (controller.hasWon() || controller.hasLost()) {
+			storage.run(oldJournal::discard);
+		} else {
+			storage.run(oldJournal::close);
+		}
+	}
 	
 	/**
 	 * This method creates the main menu that will be shown when the game
@@ -200,12 +356,29 @@ public class MinesweeperView extends Application implements Observer {
 	 * 
 	 */
 	private Scene launchNewGame(Stage stage, MinesweeperModel model) {
+		// The previous game stops counting before its journal is closed
+		stopClock();
 		// Initialize model and controller
+		if (this.model != null) {
+			this.model.removeListener(this);
+		}
 		this.model = model;
 		this.controller = new MinesweeperController(model);
+		this.rows = model.getBoard().getRows();
+		this.cols = model.getBoard().getCols();
+		if (repaintTimer != null) {
+			repaintTimer.stop();
+		}
+		this.repaintTimer = new RepaintTimer();
+		this.clockTimer = new ClockTimer();
+		this.dirtyCells = new int[64];
+		this.numDirty = 0;
+		this.dirtySet = new BitSet();
+		this.repaintAll = false;
 		
 		AnchorPane anchorPane = new AnchorPane();
 		Scene gameScene = new Scene(anchorPane, 619, 694);
+		gameScene.addEventFilter(MouseEvent.MOUSE_PRESSED, event -> chordPending = false);
 		// VBox to create a vertical layout
 		VBox layout = new VBox();
 		// Create timer and new game button at top
@@ -224,13 +397,8 @@ public class MinesweeperView extends Application implements Observer {
 		// Create timer text
 		if(controller.hasSave()) {
 			playerName = model.getName();
-			DecimalFormat f = new DecimalFormat("#0.00");
-			time = model.getTime();
-			timeDisplay = new Text("TIME: " + f.format(time));
-		}
-		else {
-			timeDisplay = new Text("TIME: 0.00");
 		}
+		timeDisplay = new Text("TIME: " + TIME_FORMAT.format(model.getTime()));
 		timeDisplay.setFont(new Font(18.0));
 		topBar.getChildren().add(timeDisplay);
 
@@ -243,14 +411,23 @@ public class MinesweeperView extends Application implements Observer {
 		topBar.getChildren().add(resetButton);
 		topBar.setPadding(new Insets(25.0, 25.0, 25.0, 25.0));
 		
-		// Create Grid
-		gameTiles = createGameTiles();
-		GridPane board = createGameBoard(gameTiles);
+		// Create Grid, or a canvas for large boards
 		layout.getChildren().add(topBar);
-		layout.getChildren().add(board);
+		if (useCanvas()) {
+			gameTiles = null;
+			boardCanvas = new BoardCanvas(model.getBoard(), gameScene.getWidth(),
+					gameScene.getHeight() - topBar.getPrefHeight());
+			boardCanvas.setTileListener((row, col, event) -> new TileClicked(row, col).handle(event));
+			layout.getChildren().add(boardCanvas);
+		} else {
+			boardCanvas = null;
+			gameTiles = createGameTiles();
+			GridPane board = createGameBoard(gameTiles);
+			layout.getChildren().add(board);
+		}
 		anchorPane.getChildren().add(layout);
 
-		this.model.addObserver(this);
+		this.model.addListener(this);
 		this.model.notifyView();
 
 
@@ -264,13 +441,11 @@ public class MinesweeperView extends Application implements Observer {
 	 * @param stage where all visual parts of the JavaFX application are displayed
 	 * 
 	 * @return Scene a scene representing the leaderboard
-	 * 
-	 * @throws IOException signals that an input/output exception has occurred
 	 */
-	private Scene leaderboardMenu(Stage stage) throws IOException {
+	private Scene leaderboardMenu(Stage stage) {
 		AnchorPane anchorPane = new AnchorPane();
 		// Initialize leaderboard and set background
-		leaderboard = new Leaderboard();
+		leaderboard = leaderboardService.getLeaderboard();
 		Image menuImage = new Image("file:images/leaderboard_menu.png");
 		ImageView imageView = new ImageView();
 		imageView.setImage(menuImage);
@@ -304,11 +479,7 @@ public class MinesweeperView extends Application implements Observer {
 
 			@Override
 			public void handle(ActionEvent arg0) {
-				try {
-					start(stage);
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
+				showMenu(stage);
 			}
 		});
 		anchorPane.getChildren().add(back);
@@ -368,11 +539,7 @@ public class MinesweeperView extends Application implements Observer {
 
 			@Override
 			public void handle(ActionEvent arg0) {
-				try {
-					start(stage);
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
+				showMenu(stage);
 			}
 		});
 		anchorPane.getChildren().add(back);
@@ -382,7 +549,7 @@ public class MinesweeperView extends Application implements Observer {
 	}
 	
 	/**
-	 * Creates a gridpane that will represent the 13x13 grid for the 
+	 * Creates a gridpane that will represent the grid for the 
 	 * minesweeper game.
 	 * 
 	 * @param gameTiles A nested array of stackpanes to act as game tiles.
@@ -396,27 +563,27 @@ public class MinesweeperView extends Application implements Observer {
 				new Background(new BackgroundFill(Color.rgb(189, 189, 189), CornerRadii.EMPTY, Insets.EMPTY)));
 		gameBoard.setPadding(new Insets(8, 8, 8, 8));
 		// Add tiles as children
-		for (int r = 0; r < 13; r++) {
-			for (int c = 0; c < 13; c++) {
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
 				gameBoard.add(gameTiles[r][c], c, r);
 			}
 		}
 		return gameBoard;
 	}
 	/**
-	 * Creates an 13 by 13 array of stackpanes to represent all tiles within the
-	 * board. Each stackpane contains rectangles and event handlers to respond to mouse
-	 * clicks.
+	 * Creates an array of stackpanes to represent all tiles within the board, with
+	 * the tiles scaled so that the whole board fits the window. Each stackpane
+	 * contains rectangles and event handlers to respond to mouse clicks.
 	 * 
-	 * @return An 13 by 13 nested array of stackpanes.
+	 * @return A rows by cols nested array of stackpanes.
 	 */
 	private StackPane[][] createGameTiles() {
-		StackPane[][] stackPanes = new StackPane[SIZE_OF_BOARD][SIZE_OF_BOARD];
-		for (int r = 0; r < SIZE_OF_BOARD; r++) {
-			for (int c = 0; c < SIZE_OF_BOARD; c++) {
-				Rectangle square = new Rectangle(44, 44);
-				Image img = new Image("file:images/covered_tile.png");
-				square.setFill(new ImagePattern(img));
+		StackPane[][] stackPanes = new StackPane[rows][cols];
+		double tileSize = Math.max(1.0, BOARD_PIXELS / (double) Math.max(rows, cols));
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				Rectangle square = new Rectangle(tileSize, tileSize);
+				square.setFill(TileImages.covered());
 				// Create stack pane and set padding and background
 				StackPane tile = new StackPane(square);
 				tile.setBorder(new Border(new BorderStroke(Color.rgb(123, 123, 123), BorderStrokeStyle.SOLID,
@@ -429,6 +596,42 @@ public class MinesweeperView extends Application implements Observer {
 		return stackPanes;
 	}
 
+	/**
+	 * Returns whether the board should be drawn on a canvas instead of a grid of
+	 * tiles. This is the case for boards larger than CANVAS_THRESHOLD tiles, unless
+	 * the application was launched with a --renderer parameter of "grid" or
+	 * "canvas".
+	 * 
+	 * @return True if the board should be drawn on a canvas
+	 */
+	private boolean useCanvas() {
+		String renderer = getParameters().getNamed().getOrDefault("renderer", "");
+		if (renderer.isEmpty()) {
+			return (long) rows * cols > CANVAS_THRESHOLD;
+		}
+		return renderer.equals("canvas");
+	}
+
+	/**
+	 * Creates the model for a regular game. The board is 13 by 13 with 20 mines
+	 * unless the application was launched with a custom size, given as --rows and
+	 * --cols parameters together with either --mines or --density.
+	 * 
+	 * @return MinesweeperModel the model for a new regular game
+	 */
+	private MinesweeperModel createRegularModel() {
+		Map<String, String> params = getParameters().getNamed();
+		if (!params.containsKey("rows") && !params.containsKey("cols")) {
+			return new MinesweeperModel();
+		}
+		int boardRows = Integer.parseInt(params.getOrDefault("rows", params.get("cols")));
+		int boardCols = Integer.parseInt(params.getOrDefault("cols", params.get("rows")));
+		if (params.containsKey("mines")) {
+			return new MinesweeperModel(boardRows, boardCols, Integer.parseInt(params.get("mines")));
+		}
+		return new MinesweeperModel(boardRows, boardCols, Double.parseDouble(params.getOrDefault("density", "0.12")));
+	}
+
 	/**
 	 * Event handler for when a new game is started.
 	 * 
@@ -475,14 +678,19 @@ public class MinesweeperView extends Application implements Observer {
         	getName.showAndWait();
             // set the text of the label
             playerName = getName.getEditor().getText();
+            MinesweeperModel newModel;
             if(shape.isEmpty()) {
-            	stage.setScene(launchNewGame(stage, new MinesweeperModel()));
+            	newModel = createRegularModel();
             }
             else {
-            	renderBlack = true;
-            	stage.setScene(launchNewGame(stage, new MinesweeperModel(shape)));
+            	newModel = new MinesweeperModel(shape);
             }
-			time = 0;
+            // Boards that need no guessing, if launched with --noguess=<milliseconds>
+            newModel.setNoGuess(Long.parseLong(getParameters().getNamed().getOrDefault("noguess", "0")));
+            newModel.setBoardPool(boardPool);
+            GameRecording.start(newModel);
+            openJournal(newModel);
+            stage.setScene(launchNewGame(stage, newModel));
 			stage.setOnCloseRequest(new GameClosed());
 		}
 	}
@@ -490,9 +698,9 @@ public class MinesweeperView extends Application implements Observer {
 	/**
 	 * Event handler for when the game window is closed.
 	 * 
-	 * When the game is closed, the old save file is deleted and a new one is created
-	 * if the game is not over and a move has been made. Information such as time and 
-	 * player name are saved.
+	 * When the game is closed, the save file is deleted if the game is over or no
+	 * move has been made. Otherwise the game is already saved by its journal, which
+	 * only needs its last moves and the time written out.
 	 * 
 	 * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
 	 */
@@ -504,19 +712,42 @@ public class MinesweeperView extends Application implements Observer {
 		 */
 		@Override
 		public void handle(WindowEvent event) {
-			// If file exists
-			File save = new File("save_game.dat");
-			if (save.isFile() && !save.isDirectory()) {
-				save.delete();
-			}
+			stopClock();
+			// The saves finish in the background before the application stops
+			MoveJournal closing = journal;
+			journal = null;
 			if (controller.hasWon() || controller.hasLost() || controller.isFirstMove()) {
+				storage.run(() -> {
+					if (closing != null) {
+						closing.discard();
+					}
+					// If file exists
+					File save = new File("save_game.dat");
+					if (save.isFile() && !save.isDirectory()) {
+						save.delete();
+					}
+					GameRecording.recordingFile("save_game.dat").delete();
+				});
 				return;
 			}
-			if(!(timer == null)) {
-				timer.cancel();
-				timer.purge();
+			if (closing != null) {
+				// Every move is already saved, only the last second needs writing out. The
+				// journal also keeps the recording, so the score can be checked once the game
+				// is won.
+				storage.run(closing::close);
+				return;
+			}
+			storage.save(model.getBoard(), model.getTime(), playerName, "save_game.dat");
+			GameRecording recording = model.getRecording();
+			if (recording != null) {
+				storage.run(() -> {
+					try {
+						recording.write(GameRecording.recordingFile("save_game.dat"));
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				});
 			}
-			model.saveGame(time, playerName);
 		}
 	}
 	
@@ -546,10 +777,7 @@ public class MinesweeperView extends Application implements Observer {
 		 */
 		@Override
 		public void handle(ActionEvent event) {
-			if(!(timer == null)) {
-				timer.cancel();
-				timer.purge();
-			}
+			stopClock();
 			stage.setScene(gamemodeMenu(stage));
 		}
 	}
@@ -581,12 +809,14 @@ public class MinesweeperView extends Application implements Observer {
 		 */
 		@Override
 		public void handle(ActionEvent event) {
-			try {
-				stage.setScene(leaderboardMenu(stage));
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-
+			// Reads the scores other games added in the background
+			storage.run(() -> {
+				try {
+					leaderboardService.getLeaderboard().refresh();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}).thenRun(() -> stage.setScene(leaderboardMenu(stage)));
 		}
 	}
 
@@ -616,68 +846,71 @@ public class MinesweeperView extends Application implements Observer {
 		}
 
 		/**
-		 * Handles the event when tile is clicked
+		 * Handles the event when tile is clicked. The primary button reveals the
+		 * tile and the secondary button flags it. The middle button, or both
+		 * primary and secondary together, chords on it.
 		 * 
 		 * @param event A mouse event object.
 		 */
 		@Override
 		public void handle(MouseEvent event) {
-			if (event.getButton() == MouseButton.PRIMARY) {
-				//Timer only starts when primary mouse button is clicked
-				if(controller.isFirstMove() || controller.hasSave()) {
-					timer = new Timer();
-					// A task can only be set once otherwise an exception will be thrown
-					task = new TimerTask() {
-						@Override
-						public void run() {
-							time += 0.01;
-							DecimalFormat f = new DecimalFormat("#0.00");
-							// Needed to prevent user interface from freezing
-							Platform.runLater(() -> {
-								timeDisplay.setText("TIME: " + f.format(time));
-							});
-						}
-					};
-					timer.scheduleAtFixedRate(task, 10, 10);
-				}
-				
-				controller.revealSpace(row, col);
-				if (controller.hasWon()) {
-					timer.cancel();
-					timer.purge();
-					disable();
-					try {
-						leaderboard = new Leaderboard();
-						try {
-							leaderboard.addScore(playerName, (int)time);
-						} catch (IOException e) {
-							e.printStackTrace();
-						}
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					Alert alert = new Alert(AlertType.INFORMATION, "You Won!");
-					alert.showAndWait();
-				}
-				else if (controller.hasLost()) {
-					timer.cancel();
-					timer.purge();
-					disable();
-					controller.revealMines();
-					Alert alert = new Alert(AlertType.INFORMATION, "You Lost!");
-					alert.showAndWait();
-				}
+			boolean bothButtons = event.getButton() == MouseButton.PRIMARY && event.isSecondaryButtonDown()
+					|| event.getButton() == MouseButton.SECONDARY && event.isPrimaryButtonDown();
+			if (bothButtons || event.getButton() == MouseButton.MIDDLE) {
+				// The second button of the chord is released later
+				chordPending = bothButtons;
+				RevealResult result = controller.chordSpace(row, col);
+				clockTimer.start();
+				ended(result);
+			} else if (chordPending) {
+				chordPending = false;
+			} else if (event.getButton() == MouseButton.PRIMARY) {
+				// The clock of the model only starts when a tile is revealed or chorded
+				RevealResult result = controller.revealSpace(row, col);
+				clockTimer.start();
+				ended(result);
 			} else if (event.getButton() == MouseButton.SECONDARY) {
 				controller.flagSpace(row, col);
 			}
 		}
+
+		/**
+		 * Ends the game if a move won or lost it.
+		 * 
+		 * @param result The result of the move
+		 */
+		private void ended(RevealResult result) {
+			if (result.hasWon()) {
+				disable();
+				leaderboardService.submit(playerName, (int)model.getTime(), model.getRecording()).exceptionally(e -> {
+					e.printStackTrace();
+					// The player is told, since the score is not on the leaderboard
+					Throwable cause = e.getCause() == null ? e : e.getCause();
+					Platform.runLater(() -> new Alert(AlertType.WARNING,
+							"Your score could not be added to the leaderboard: " + cause.getMessage()).show());
+					return null;
+				});
+				Alert alert = new Alert(AlertType.INFORMATION, "You Won!");
+				alert.showAndWait();
+			}
+			else if (result.hasLost()) {
+				disable();
+				controller.revealMines();
+				Alert alert = new Alert(AlertType.INFORMATION, "You Lost!");
+				alert.showAndWait();
+			}
+		}
 		
 		/**
 		 * Disables the tiles when the game has ended
 		 */
 		private void disable() {
-			for (int i = 0; i < SIZE_OF_BOARD; i++) {
-				for (int j = 0; j < SIZE_OF_BOARD; j++) {
+			if (boardCanvas != null) {
+				boardCanvas.setDisable(true);
+				return;
+			}
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
 					StackPane gameTile = gameTiles[i][j];
 					gameTile.setDisable(true);
 				}
@@ -685,6 +918,69 @@ public class MinesweeperView extends Application implements Observer {
 		}
 	}
 	
+	/**
+	 * Timer that repaints the changed tiles once per frame. It is started when the
+	 * model changes and stops itself after painting, so it does no work while the
+	 * board is idle.
+	 * 
+	 * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+	 */
+	private class RepaintTimer extends AnimationTimer {
+		/**
+		 * Paints the changes made since the last frame.
+		 * 
+		 * @param now The timestamp of the current frame in nanoseconds
+		 */
+		@Override
+		public void handle(long now) {
+			repaint();
+			stop();
+		}
+	}
+
+	/**
+	 * Timer that shows the time of the game on every frame while the clock of the
+	 * model runs. It is started by every click and stops itself once the clock is
+	 * stopped, so it does no work while the game is over or paused.
+	 * 
+	 * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+	 */
+	private class ClockTimer extends AnimationTimer {
+		// Hundredths of a second shown on the label
+		private long shown = -1;
+
+		/**
+		 * Shows the time of the game, if it changed since the last frame.
+		 * 
+		 * @param now The timestamp of the current frame in nanoseconds
+		 */
+		@Override
+		public void handle(long now) {
+			GameClock clock = model.getClock();
+			long hundredths = clock.getNanos() / 10_000_000;
+			if (hundredths != shown) {
+				shown = hundredths;
+				timeDisplay.setText("TIME: " + TIME_FORMAT.format(hundredths / 100.0));
+			}
+			if (!clock.isRunning()) {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Stops the clock of the current game and the timer that shows it, when the
+	 * game is left.
+	 */
+	private void stopClock() {
+		if (clockTimer != null) {
+			clockTimer.stop();
+		}
+		if (model != null) {
+			model.getClock().pause();
+		}
+	}
+
 	/**
 	 * Event handler for when load game is clicked on the menu.
 	 * 
@@ -711,19 +1007,29 @@ public class MinesweeperView extends Application implements Observer {
 		 */
 		@Override
 		public void handle(ActionEvent event) {
-			File save = new File("save_game.dat");
-			try {
-				ObjectInputStream oos = new ObjectInputStream(new FileInputStream(save));
-				MinesweeperBoard board = (MinesweeperBoard) oos.readObject();
-				oos.close();
-				MinesweeperModel model = new MinesweeperModel(board);
+			// Large saves take a while, so the game is loaded in the background with a
+			// progress bar on the menu
+			Pane menu = (Pane) stage.getScene().getRoot();
+			ProgressBar progressBar = new ProgressBar(0);
+			progressBar.setLayoutX(161.0);
+			progressBar.setLayoutY(515.0);
+			progressBar.setPrefWidth(278.0);
+			menu.getChildren().add(progressBar);
+			((Button) event.getSource()).setDisable(true);
+			// The previous game is finished first, since its save is the one loaded
+			finishJournal();
+			storage.load("save_game.dat", progressBar::setProgress).whenComplete((model, e) -> {
+				menu.getChildren().remove(progressBar);
+				((Button) event.getSource()).setDisable(false);
+				if (e != null) {
+					Alert alert = new Alert(AlertType.INFORMATION, "Save file not found!");
+					alert.showAndWait();
+					return;
+				}
+				useJournal(model.getJournal());
 				stage.setScene(launchNewGame(stage, model));
 				stage.setOnCloseRequest(new GameClosed());
-				
-			} catch (IOException | ClassNotFoundException e) {
-				Alert alert = new Alert(AlertType.INFORMATION, "Save file not found!");
-				alert.showAndWait();
-			}
+			});
 		}
 	}
 }
@@ -0,0 +1,119 @@
+package view;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.ImagePattern;
+import model.MinesweeperBoard;
+
+/**
+ * A cache of the images used to paint the tiles of the board. Every image is
+ * loaded from disk once, and the same ImagePattern is shared by all tiles that
+ * show it. Tiles are identified by a sprite number: 0-8 for uncovered tiles with
+ * that many adjacent mines, followed by the covered, flagged, bomb and out of
+ * bounds tiles.
+ * 
+ * @author Gary Li, Daniel S. Lee, Robert Schnell, Merle Crutchfield
+ */
+public class TileImages {
+
+	public static final int COVERED = 9;
+	public static final int FLAGGED = 10;
+	public static final int BOMB = 11;
+	public static final int BLACK = 12;
+	// Width and height in pixels of each sprite in the atlas
+	public static final int SPRITE_SIZE = 64;
+
+	private static final String[] FILES = { "0.png", "1.png", "2.png", "3.png", "4.png", "5.png", "6.png", "7.png",
+			"8.png", "covered_tile.png", "flagged_tile-2.png", "bombUncovered-2.png", "blackTile.png" };
+	private static final ImagePattern[] PATTERNS = new ImagePattern[FILES.length];
+
+	static {
+		for (int i = 0; i < FILES.length; i++) {
+			PATTERNS[i] = new ImagePattern(new Image("file:images/" + FILES[i]));
+		}
+	}
+
+	/**
+	 * Holds the sprite atlas, so that it is only built if a board is drawn on a
+	 * canvas.
+	 */
+	private static class Atlas {
+		private static final Image IMAGE = buildAtlas();
+	}
+
+	/**
+	 * Returns the sprite that shows a tile of the board.
+	 * 
+	 * @param board A board
+	 * @param r     A row coordinate
+	 * @param c     A column coordinate
+	 * @return The sprite number of the tile
+	 */
+	public static int sprite(MinesweeperBoard board, int r, int c) {
+		// Condition 0: Tile out of bounds
+		if (!board.inBounds(r, c)) {
+			return BLACK;
+		}
+		// Condition 1: Covered + flagged
+		else if (board.isCovered(r, c) && board.isFlagged(r, c)) {
+			return FLAGGED;
+		}
+		// Condition 2: Covered + no flag
+		else if (board.isCovered(r, c)) {
+			return COVERED;
+		}
+		// Condition 3: Uncovered + has mine
+		else if (board.hasMine(r, c)) {
+			return BOMB;
+		}
+		// Condition 4: Uncovered + mines nearby
+		return board.getDisplayNum(r, c);
+	}
+
+	/**
+	 * Returns the shared pattern that fills a shape with a sprite.
+	 * 
+	 * @param sprite A sprite number
+	 * @return The pattern of the sprite
+	 */
+	public static ImagePattern pattern(int sprite) {
+		return PATTERNS[sprite];
+	}
+
+	/**
+	 * Returns the image of a covered tile.
+	 * 
+	 * @return The image of the tile
+	 */
+	public static ImagePattern covered() {
+		return PATTERNS[COVERED];
+	}
+
+	/**
+	 * Returns a single image holding every sprite side by side, SPRITE_SIZE pixels
+	 * apart, in order of their sprite number.
+	 * 
+	 * @return The sprite atlas
+	 */
+	public static Image atlas() {
+		return Atlas.IMAGE;
+	}
+
+	/**
+	 * Loads every sprite scaled to SPRITE_SIZE and copies it into the atlas.
+	 * 
+	 * @return The sprite atlas
+	 */
+	private static Image buildAtlas() {
+		WritableImage atlas = new WritableImage(SPRITE_SIZE * FILES.length, SPRITE_SIZE);
+		PixelWriter writer = atlas.getPixelWriter();
+		for (int i = 0; i < FILES.length; i++) {
+			Image img = new Image("file:images/" + FILES[i], SPRITE_SIZE, SPRITE_SIZE, false, true);
+			if (!img.isError()) {
+				writer.setPixels(i * SPRITE_SIZE, 0, SPRITE_SIZE, SPRITE_SIZE, img.getPixelReader(), 0, 0);
+			}
+		}
+		return atlas;
+	}
+}